@@ -0,0 +1,57 @@
+package bench.dfa;
+
+import java.util.Arrays;
+import java.util.List;
+
+import fa.dfa.DFA;
+
+/**
+ * Compares matching a large batch of strings one at a time with accepts
+ * against the parallel acceptsAll, and reports the throughput per core.
+ */
+public class BatchAcceptBenchmark {
+
+    private static final int STATES = 1_000;
+    private static final int SIGMA = 16;
+    private static final int INPUTS = 200_000;
+    private static final int INPUT_LENGTH = 64;
+    private static final int ROUNDS = 10;
+
+    /** Keeps the results of accepts alive. */
+    static volatile int blackhole;
+
+    public static void main(String[] args) {
+        DFA dfa = Workloads.randomDfa(STATES, SIGMA, 1);
+        List<String> inputs = Arrays.asList(Workloads.randomInputs(INPUTS, INPUT_LENGTH, SIGMA, 2));
+        int cores = Runtime.getRuntime().availableProcessors();
+        long chars = (long) INPUTS * INPUT_LENGTH;
+
+        long sequential = Long.MAX_VALUE;
+        long batch = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long begin = System.nanoTime();
+            int accepted = 0;
+            for (String input : inputs) {
+                if (dfa.accepts(input)) {
+                    accepted++;
+                }
+            }
+            sequential = Math.min(sequential, System.nanoTime() - begin);
+
+            begin = System.nanoTime();
+            boolean[] results = dfa.acceptsAll(inputs);
+            batch = Math.min(batch, System.nanoTime() - begin);
+            blackhole = accepted + results.length;
+        }
+
+        System.out.printf("%-12s %12s %16s %16s%n", "mode", "ms", "Mchars/s", "Mchars/s/core");
+        print("accepts", sequential, chars, 1);
+        print("acceptsAll", batch, chars, cores);
+    }
+
+    private static void print(String mode, long nanos, long chars, int cores) {
+        double throughput = chars / (nanos / 1e9) / 1e6;
+        System.out.printf("%-12s %12.1f %16.1f %16.1f%n", mode, nanos / 1e6, throughput,
+                throughput / cores);
+    }
+}
@@ -0,0 +1,82 @@
+package bench.dfa;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import fa.dfa.FrozenDFA;
+
+/**
+ * Measures the throughput of accepts on a single FrozenDFA shared by a
+ * growing number of threads. With no locking the throughput should grow
+ * linearly up to the number of cores.
+ */
+public class ConcurrentAcceptBenchmark {
+
+    private static final int STATES = 1_000;
+    private static final int SIGMA = 16;
+    private static final int INPUT_LENGTH = 256;
+    private static final long DURATION_MS = 2_000;
+
+    /** Keeps the results of accepts alive. */
+    static volatile int blackhole;
+
+    public static void main(String[] args) throws InterruptedException {
+        FrozenDFA dfa = Workloads.randomDfa(STATES, SIGMA, 1).freeze();
+        String[] inputs = Workloads.randomInputs(4_096, INPUT_LENGTH, SIGMA, 2);
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        run(dfa, inputs, cores); // warm up
+        System.out.printf("%8s %16s %10s%n", "threads", "Mchars/s", "speedup");
+        double single = 0;
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            double throughput = run(dfa, inputs, threads);
+            if (threads == 1) {
+                single = throughput;
+            }
+            System.out.printf("%8d %16.1f %10.2f%n", threads, throughput / 1e6, throughput / single);
+        }
+    }
+
+    /**
+     * Runs accepts from several threads for a fixed time.
+     *
+     * @return the number of input symbols matched per second.
+     */
+    private static double run(FrozenDFA dfa, String[] inputs, int threads)
+            throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder matched = new LongAdder();
+        CountDownLatch ready = new CountDownLatch(threads);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t * 97;
+            Thread worker = new Thread(() -> {
+                long count = 0;
+                int accepted = 0;
+                ready.countDown();
+                for (int i = offset; running.get(); i++) {
+                    if (dfa.accepts(inputs[i % inputs.length])) {
+                        accepted++;
+                    }
+                    count++;
+                }
+                matched.add(count);
+                blackhole = accepted;
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        ready.await();
+        long begin = System.nanoTime();
+        Thread.sleep(DURATION_MS);
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        return matched.sum() * INPUT_LENGTH / seconds;
+    }
+}
@@ -0,0 +1,63 @@
+package bench.dfa;
+
+import fa.dfa.DFA;
+
+/**
+ * Measures how long it takes to build a DFA through addState, setStart,
+ * setFinal and addTransition as the number of states grows. The time per
+ * state should stay flat if construction scales linearly.
+ */
+public class ConstructionBenchmark {
+
+    private static final int[] SIZES = {25_000, 50_000, 100_000, 200_000};
+    private static final char[] SIGMA = {'0', '1', '2', '3'};
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        // Warm up so the JIT has compiled the construction path
+        for (int i = 0; i < ROUNDS; i++) {
+            build(SIZES[0]);
+        }
+
+        System.out.printf("%10s %12s %14s%n", "states", "ms", "ns/transition");
+        for (int n : SIZES) {
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < ROUNDS; i++) {
+                long begin = System.nanoTime();
+                DFA dfa = build(n);
+                best = Math.min(best, System.nanoTime() - begin);
+                if (!dfa.isStart("q0")) {
+                    throw new AssertionError("construction failed");
+                }
+            }
+            System.out.printf("%10d %12.1f %14.1f%n", n, best / 1e6,
+                    (double) best / ((long) n * SIGMA.length));
+        }
+    }
+
+    /**
+     * Builds a DFA with n states where every state has a transition on
+     * every symbol, spread over the whole automaton.
+     */
+    static DFA build(int n) {
+        DFA dfa = new DFA();
+        for (char symbol : SIGMA) {
+            dfa.addSigma(symbol);
+        }
+        for (int i = 0; i < n; i++) {
+            dfa.addState("q" + i);
+        }
+        dfa.setStart("q0");
+        for (int i = 0; i < n; i += 3) {
+            dfa.setFinal("q" + i);
+        }
+        for (int i = 0; i < n; i++) {
+            String from = "q" + i;
+            for (int s = 0; s < SIGMA.length; s++) {
+                int to = (int) (((long) i * (s + 2) + s) % n);
+                dfa.addTransition(from, "q" + to, SIGMA[s]);
+            }
+        }
+        return dfa;
+    }
+}
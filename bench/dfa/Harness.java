@@ -0,0 +1,149 @@
+package bench.dfa;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntFunction;
+
+/**
+ * A small benchmark harness: runs an operation in a loop on one or more
+ * threads for a number of warm-up and measurement iterations of fixed
+ * length, and reports the average time per operation. With allocation
+ * profiling on it also reports the bytes allocated per operation, read
+ * from the per-thread allocation counters of the JVM.
+ */
+final class Harness {
+
+    /**
+     * An operation to measure. The returned value is consumed so that the
+     * JIT cannot remove the work.
+     */
+    interface Operation {
+        long run();
+    }
+
+    /**
+     * The result of measuring an operation.
+     */
+    static final class Measurement {
+        final double nanosPerOp;
+        final double bytesPerOp;
+
+        Measurement(double nanosPerOp, double bytesPerOp) {
+            this.nanosPerOp = nanosPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+    }
+
+    private final int warmups;
+    private final int iterations;
+    private final long iterationMillis;
+    private final boolean profileAllocations;
+
+    /** Keeps the results of the operations alive. */
+    static volatile long blackhole;
+
+    Harness(int warmups, int iterations, long iterationMillis, boolean profileAllocations) {
+        this.warmups = warmups;
+        this.iterations = iterations;
+        this.iterationMillis = iterationMillis;
+        this.profileAllocations = profileAllocations && allocationCounter() != null;
+    }
+
+    /**
+     * Measures an operation.
+     *
+     * @param threads the number of threads running the operation at once.
+     * @param operations creates the operation run by the thread with a
+     * given index, so threads can share or own the data they work on.
+     * @return the average time and allocation per operation.
+     */
+    Measurement measure(int threads, IntFunction<Operation> operations) throws Exception {
+        Operation[] perThread = new Operation[threads];
+        for (int t = 0; t < threads; t++) {
+            perThread[t] = operations.apply(t);
+        }
+        long[] ops = new long[threads];
+        long[] bytes = new long[threads];
+        for (int i = 0; i < warmups; i++) {
+            runIteration(perThread, ops, bytes);
+        }
+        long totalOps = 0;
+        long totalBytes = 0;
+        long totalNanos = 0;
+        for (int i = 0; i < iterations; i++) {
+            totalNanos += runIteration(perThread, ops, bytes) * threads;
+            for (int t = 0; t < threads; t++) {
+                totalOps += ops[t];
+                totalBytes += bytes[t];
+            }
+        }
+        return new Measurement((double) totalNanos / totalOps,
+                profileAllocations ? (double) totalBytes / totalOps : Double.NaN);
+    }
+
+    /**
+     * Runs every thread for one iteration.
+     *
+     * @return the length of the iteration in nanoseconds.
+     */
+    private long runIteration(Operation[] perThread, long[] ops, long[] bytes) throws Exception {
+        int threads = perThread.length;
+        AtomicBoolean running = new AtomicBoolean(true);
+        CyclicBarrier start = new CyclicBarrier(threads + 1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int index = t;
+            Thread worker = new Thread(() -> {
+                Operation operation = perThread[index];
+                com.sun.management.ThreadMXBean counter = profileAllocations ? allocationCounter() : null;
+                long sum = 0;
+                long count = 0;
+                try {
+                    start.await();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                long allocated = counter != null ? counter.getCurrentThreadAllocatedBytes() : 0;
+                while (running.get()) {
+                    sum += operation.run();
+                    count++;
+                }
+                if (counter != null) {
+                    bytes[index] = counter.getCurrentThreadAllocatedBytes() - allocated;
+                }
+                ops[index] = count;
+                blackhole = sum;
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        start.await();
+        long begin = System.nanoTime();
+        Thread.sleep(iterationMillis);
+        running.set(false);
+        long elapsed = System.nanoTime() - begin;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return elapsed;
+    }
+
+    /**
+     * Gets the JVM's per-thread allocation counter, or null if this JVM
+     * does not have one.
+     */
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean bean =
+                    (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            if (bean.isThreadAllocatedMemorySupported()) {
+                bean.setThreadAllocatedMemoryEnabled(true);
+                return bean;
+            }
+        }
+        return null;
+    }
+}
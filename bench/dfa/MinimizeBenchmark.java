@@ -0,0 +1,33 @@
+package bench.dfa;
+
+import fa.dfa.FrozenDFA;
+
+/**
+ * Measures minimize on DFAs of 10^5 to 10^6 states that are made of
+ * several copies of a smaller random DFA. Hopcroft's algorithm should
+ * take about n·log n time, so the time per state should grow slowly.
+ */
+public class MinimizeBenchmark {
+
+    private static final int[] SIZES = {100_000, 250_000, 500_000, 1_000_000};
+    private static final int COPIES = 4;
+    private static final int SIGMA = 4;
+
+    public static void main(String[] args) {
+        // Warm up so the JIT has compiled the minimizer
+        for (int i = 0; i < 3; i++) {
+            Workloads.redundantDfa(SIZES[0], COPIES, SIGMA, i).freeze().minimize();
+        }
+
+        System.out.printf("%10s %12s %10s %14s%n", "states", "minimal", "ms", "ns/state");
+        for (int n : SIZES) {
+            FrozenDFA dfa = Workloads.redundantDfa(n, COPIES, SIGMA, n).freeze();
+            long begin = System.nanoTime();
+            FrozenDFA min = dfa.minimize();
+            long elapsed = System.nanoTime() - begin;
+            int states = min.toString().split("\n")[0].split(" ").length - 3;
+            System.out.printf("%10d %12d %10.1f %14.1f%n", n, states, elapsed / 1e6,
+                    (double) elapsed / n);
+        }
+    }
+}
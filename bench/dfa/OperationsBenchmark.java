@@ -0,0 +1,175 @@
+package bench.dfa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import fa.dfa.DFA;
+import fa.dfa.FrozenDFA;
+
+/**
+ * Measures the core DFA operations (accepts, addTransition, getState,
+ * swap and toString) for every combination of the given state counts,
+ * alphabet sizes, input lengths and thread counts.
+ *
+ * Options, each taking a comma separated list unless noted:
+ *   -op       operations to run (accepts, acceptsFrozen, addTransition,
+ *             getState, swap, swapMaterialized, toString)
+ *   -states   numbers of states
+ *   -sigma    alphabet sizes, at most 26
+ *   -length   input lengths for accepts
+ *   -t        thread counts
+ *   -i / -wi  measurement / warm-up iterations (single value)
+ *   -r        iteration length in milliseconds (single value)
+ *   -prof gc  also report the bytes allocated per operation
+ */
+public class OperationsBenchmark {
+
+    private static final int INPUTS = 1024;
+
+    public static void main(String[] args) throws Exception {
+        List<String> ops = Arrays.asList("accepts", "acceptsFrozen", "addTransition", "getState", "swap",
+                "swapMaterialized", "toString");
+        int[] states = {100, 10_000};
+        int[] sigmas = {2, 16};
+        int[] lengths = {16, 1024};
+        int[] threads = {1};
+        int iterations = 5;
+        int warmups = 3;
+        long millis = 500;
+        boolean profile = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-op":
+                    ops = Arrays.asList(args[++i].split(","));
+                    break;
+                case "-states":
+                    states = ints(args[++i]);
+                    break;
+                case "-sigma":
+                    sigmas = ints(args[++i]);
+                    break;
+                case "-length":
+                    lengths = ints(args[++i]);
+                    break;
+                case "-t":
+                    threads = ints(args[++i]);
+                    break;
+                case "-i":
+                    iterations = Integer.parseInt(args[++i]);
+                    break;
+                case "-wi":
+                    warmups = Integer.parseInt(args[++i]);
+                    break;
+                case "-r":
+                    millis = Long.parseLong(args[++i]);
+                    break;
+                case "-prof":
+                    profile = "gc".equals(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        Harness harness = new Harness(warmups, iterations, millis, profile);
+        System.out.printf("%-18s %9s %6s %7s %8s %14s %12s%n", "operation", "states", "sigma", "length",
+                "threads", "ns/op", "B/op");
+        for (String op : ops) {
+            for (int n : states) {
+                for (int sigma : sigmas) {
+                    // Only accepts depends on the input length
+                    int[] opLengths = op.startsWith("accepts") ? lengths : new int[] {0};
+                    for (int length : opLengths) {
+                        for (int t : threads) {
+                            Harness.Measurement m = harness.measure(t, operation(op, n, sigma, length));
+                            System.out.printf("%-18s %9d %6d %7s %8d %14.1f %12.1f%n", op, n, sigma,
+                                    length > 0 ? Integer.toString(length) : "-", t, m.nanosPerOp,
+                                    m.bytesPerOp);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the operation run by each thread. Operations that only read
+     * share one DFA, operations that change it give each thread its own.
+     */
+    private static java.util.function.IntFunction<Harness.Operation> operation(String op, int n, int sigma,
+                                                                               int length) {
+        char[] symbols = Workloads.sigma(sigma);
+        String[] names = new String[n];
+        for (int i = 0; i < n; i++) {
+            names[i] = "q" + i;
+        }
+        switch (op) {
+            case "accepts": {
+                DFA dfa = Workloads.randomDfa(n, sigma, n);
+                String[] inputs = Workloads.randomInputs(INPUTS, length, sigma, length);
+                return t -> new Harness.Operation() {
+                    private int i = t;
+
+                    @Override
+                    public long run() {
+                        return dfa.accepts(inputs[i++ & (INPUTS - 1)]) ? 1 : 0;
+                    }
+                };
+            }
+            case "acceptsFrozen": {
+                FrozenDFA dfa = Workloads.randomDfa(n, sigma, n).freeze();
+                String[] inputs = Workloads.randomInputs(INPUTS, length, sigma, length);
+                return t -> new Harness.Operation() {
+                    private int i = t;
+
+                    @Override
+                    public long run() {
+                        return dfa.accepts(inputs[i++ & (INPUTS - 1)]) ? 1 : 0;
+                    }
+                };
+            }
+            case "addTransition":
+                return t -> {
+                    DFA dfa = Workloads.randomDfa(n, sigma, n + t);
+                    Random random = new Random(t);
+                    return () -> dfa.addTransition(names[random.nextInt(n)], names[random.nextInt(n)],
+                            symbols[random.nextInt(sigma)]) ? 1 : 0;
+                };
+            case "getState": {
+                DFA dfa = Workloads.randomDfa(n, sigma, n);
+                return t -> new Harness.Operation() {
+                    private int i = t;
+
+                    @Override
+                    public long run() {
+                        return dfa.getState(names[i++ % n]).hashCode();
+                    }
+                };
+            }
+            case "swap": {
+                DFA dfa = Workloads.randomDfa(n, sigma, n);
+                return t -> () -> dfa.swap(symbols[0], symbols[sigma - 1]).hashCode();
+            }
+            case "swapMaterialized": {
+                DFA dfa = Workloads.randomDfa(n, sigma, n);
+                return t -> () -> dfa.swap(symbols[0], symbols[sigma - 1]).getState(names[0]).hashCode();
+            }
+            case "toString": {
+                DFA dfa = Workloads.randomDfa(n, sigma, n);
+                return t -> () -> dfa.toString().length();
+            }
+            default:
+                throw new IllegalArgumentException("Unknown operation " + op);
+        }
+    }
+
+    private static int[] ints(String list) {
+        List<Integer> values = new ArrayList<>();
+        for (String value : list.split(",")) {
+            values.add(Integer.parseInt(value.trim()));
+        }
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,100 @@
+package bench.dfa;
+
+import java.util.Random;
+
+import fa.dfa.DFA;
+import fa.dfa.FrozenDFA;
+import fa.dfa.SpecializedDFA;
+
+/**
+ * Compares matching with the transition table of a FrozenDFA against
+ * matching with the code generated by specialize, on random DFAs of
+ * growing size, and reports the time per input symbol of each.
+ *
+ * Two kinds of input are measured. On random symbols the generated code
+ * jumps to an unpredictable case on every symbol, which the branch
+ * predictor gets wrong most of the time, while the table only loads the
+ * next state. On input made of long runs of one symbol the path through
+ * the code repeats, and the jumps cost next to nothing. Past the state
+ * limit, or once the code gets too long, specialize falls back to the
+ * table, which the generated column shows.
+ */
+public class SpecializeBenchmark {
+
+    private static final int[] STATES = {2, 4, 8, 16, 32, 64, 128};
+    private static final int SIGMA = 4;
+    private static final int INPUTS = 10_000;
+    private static final int INPUT_LENGTH = 256;
+    private static final int MAX_RUN = 64;
+    private static final int ROUNDS = 20;
+
+    /** Keeps the results of accepts alive. */
+    static volatile int blackhole;
+
+    public static void main(String[] args) {
+        String[] random = Workloads.randomInputs(INPUTS, INPUT_LENGTH, SIGMA, 1);
+        String[] runs = runInputs(INPUTS, INPUT_LENGTH, SIGMA, 2);
+
+        System.out.printf("%-8s %8s %10s %14s %14s %10s%n", "input", "states", "generated",
+                "table ns/char", "code ns/char", "speedup");
+        for (String[] inputs : new String[][] {random, runs}) {
+            String name = inputs == random ? "random" : "runs";
+            for (int n : STATES) {
+                DFA dfa = Workloads.randomDfa(n, SIGMA, n);
+                measure(name, n, dfa.freeze(), dfa.specialize(STATES[STATES.length - 1]), inputs);
+            }
+        }
+    }
+
+    private static void measure(String name, int states, FrozenDFA frozen, SpecializedDFA specialized,
+            String[] inputs) {
+        long table = Long.MAX_VALUE;
+        long code = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long begin = System.nanoTime();
+            int accepted = 0;
+            for (String input : inputs) {
+                if (frozen.accepts(input)) {
+                    accepted++;
+                }
+            }
+            table = Math.min(table, System.nanoTime() - begin);
+
+            begin = System.nanoTime();
+            for (String input : inputs) {
+                if (specialized.accepts(input)) {
+                    accepted--;
+                }
+            }
+            code = Math.min(code, System.nanoTime() - begin);
+            if (accepted != 0) {
+                throw new IllegalStateException("The generated code disagrees with the table");
+            }
+            blackhole += accepted;
+        }
+        long chars = (long) inputs.length * INPUT_LENGTH;
+        System.out.printf("%-8s %8d %10s %14.2f %14.2f %10.2f%n", name, states, specialized.isGenerated(),
+                (double) table / chars, (double) code / chars, (double) table / code);
+    }
+
+    /**
+     * Creates strings over the first sigmaSize symbols made of runs of
+     * one symbol, each up to MAX_RUN long.
+     */
+    private static String[] runInputs(int count, int length, int sigmaSize, long seed) {
+        Random random = new Random(seed);
+        String[] inputs = new String[count];
+        char[] buffer = new char[length];
+        for (int i = 0; i < count; i++) {
+            int j = 0;
+            while (j < length) {
+                char symbol = (char) ('a' + random.nextInt(sigmaSize));
+                for (int run = 1 + random.nextInt(MAX_RUN); run > 0 && j < length; run--) {
+                    buffer[j++] = symbol;
+                }
+            }
+            inputs[i] = new String(buffer);
+        }
+        return inputs;
+    }
+}
@@ -0,0 +1,99 @@
+package bench.dfa;
+
+import java.util.Random;
+
+import fa.dfa.DFA;
+import fa.dfa.DFABuilder;
+
+/**
+ * Generates the automata and inputs shared by the benchmarks, here and
+ * in the JMH benchmarks of bench/jmh.
+ */
+public final class Workloads {
+
+    private Workloads() {
+    }
+
+    /**
+     * Creates the first sigmaSize symbols starting at 'a'.
+     */
+    public static char[] sigma(int sigmaSize) {
+        char[] sigma = new char[sigmaSize];
+        for (int i = 0; i < sigmaSize; i++) {
+            sigma[i] = (char) ('a' + i);
+        }
+        return sigma;
+    }
+
+    /**
+     * Creates a complete DFA with random transitions where about half of
+     * the states are final, so inputs over Sigma are never rejected early.
+     */
+    public static DFA randomDfa(int states, int sigmaSize, long seed) {
+        Random random = new Random(seed);
+        char[] sigma = sigma(sigmaSize);
+        DFABuilder builder = new DFABuilder(sigma);
+        for (int i = 0; i < states; i++) {
+            builder.addState("q" + i);
+        }
+        builder.setStart(0);
+        int[] row = new int[sigmaSize];
+        for (int i = 0; i < states; i++) {
+            for (int s = 0; s < sigmaSize; s++) {
+                row[s] = random.nextInt(states);
+            }
+            builder.setRow(i, row);
+            if (random.nextBoolean()) {
+                builder.setFinal(i);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Creates a complete DFA made of copies of a random DFA, where every
+     * transition leads to a random copy of its target. All copies of a
+     * state are equivalent, so the minimal DFA has states / copies states.
+     */
+    public static DFABuilder redundantDfa(int states, int copies, int sigmaSize, long seed) {
+        Random random = new Random(seed);
+        int base = states / copies;
+        int[] delta = new int[base * sigmaSize];
+        for (int i = 0; i < delta.length; i++) {
+            delta[i] = random.nextInt(base);
+        }
+        DFABuilder builder = new DFABuilder(sigma(sigmaSize));
+        for (int i = 0; i < base * copies; i++) {
+            builder.addState("q" + i);
+        }
+        builder.setStart(0);
+        int[] row = new int[sigmaSize];
+        for (int i = 0; i < base * copies; i++) {
+            int b = i / copies;
+            for (int s = 0; s < sigmaSize; s++) {
+                row[s] = delta[b * sigmaSize + s] * copies + random.nextInt(copies);
+            }
+            builder.setRow(i, row);
+            if (b % 2 == 0) {
+                builder.setFinal(i);
+            }
+        }
+        return builder;
+    }
+
+    /**
+     * Creates random strings over the first sigmaSize symbols.
+     */
+    public static String[] randomInputs(int count, int length, int sigmaSize, long seed) {
+        Random random = new Random(seed);
+        String[] inputs = new String[count];
+        char[] buffer = new char[length];
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < length; j++) {
+                buffer[j] = (char) ('a' + random.nextInt(sigmaSize));
+            }
+            inputs[i] = new String(buffer);
+        }
+        return inputs;
+    }
+}
@@ -0,0 +1,99 @@
+package bench.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import bench.dfa.Workloads;
+import fa.dfa.DFA;
+import fa.dfa.FrozenDFA;
+
+/**
+ * Measures accepts on a random complete DFA, the JMH counterpart of the
+ * accepts and acceptsFrozen operations of bench.dfa.OperationsBenchmark.
+ * All threads share one DFA and read their own sequence of inputs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+public class AcceptBenchmark {
+
+    private static final int INPUTS = 1024;
+
+    @Param({"100", "10000"})
+    public int states;
+
+    @Param({"2", "16"})
+    public int sigma;
+
+    @Param({"16", "1024"})
+    public int length;
+
+    private DFA dfa;
+    private FrozenDFA frozen;
+    private String[] inputs;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dfa = Workloads.randomDfa(states, sigma, states);
+        frozen = dfa.freeze();
+        inputs = Workloads.randomInputs(INPUTS, length, sigma, length);
+    }
+
+    /**
+     * The position of a thread in the inputs.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int i;
+
+        @Setup(Level.Trial)
+        public void setUp(ThreadParams thread) {
+            i = thread.getThreadIndex();
+        }
+
+        String next(String[] inputs) {
+            return inputs[i++ & (INPUTS - 1)];
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean accepts(Cursor cursor) {
+        return dfa.accepts(cursor.next(inputs));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean acceptsShared(Cursor cursor) {
+        return dfa.accepts(cursor.next(inputs));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean acceptsFrozen(Cursor cursor) {
+        return frozen.accepts(cursor.next(inputs));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean acceptsFrozenShared(Cursor cursor) {
+        return frozen.accepts(cursor.next(inputs));
+    }
+}
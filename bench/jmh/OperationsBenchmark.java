@@ -0,0 +1,109 @@
+package bench.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import bench.dfa.Workloads;
+import fa.dfa.DFA;
+
+/**
+ * Measures addTransition, getState, swap and toString on a random
+ * complete DFA, the JMH counterpart of bench.dfa.OperationsBenchmark.
+ * The operations that only read share one DFA, addTransition gives each
+ * thread its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+@Threads(1)
+public class OperationsBenchmark {
+
+    @Param({"100", "10000"})
+    public int states;
+
+    @Param({"2", "16"})
+    public int sigma;
+
+    private DFA dfa;
+    private char[] symbols;
+    private String[] names;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dfa = Workloads.randomDfa(states, sigma, states);
+        symbols = Workloads.sigma(sigma);
+        names = new String[states];
+        for (int i = 0; i < states; i++) {
+            names[i] = "q" + i;
+        }
+    }
+
+    /**
+     * The DFA a thread adds transitions to, and its position in the
+     * states it looks up.
+     */
+    @State(Scope.Thread)
+    public static class Owned {
+        private DFA dfa;
+        private Random random;
+        private int i;
+
+        @Setup(Level.Trial)
+        public void setUp(OperationsBenchmark shared, ThreadParams thread) {
+            dfa = Workloads.randomDfa(shared.states, shared.sigma, shared.states + thread.getThreadIndex());
+            random = new Random(thread.getThreadIndex());
+            i = thread.getThreadIndex();
+        }
+    }
+
+    @Benchmark
+    public boolean addTransition(Owned owned) {
+        Random random = owned.random;
+        return owned.dfa.addTransition(names[random.nextInt(states)], names[random.nextInt(states)],
+                symbols[random.nextInt(sigma)]);
+    }
+
+    @Benchmark
+    public fa.State getState(Owned owned) {
+        return dfa.getState(names[owned.i++ % states]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public fa.State getStateShared(Owned owned) {
+        return dfa.getState(names[owned.i++ % states]);
+    }
+
+    @Benchmark
+    public DFA swap() {
+        return dfa.swap(symbols[0], symbols[sigma - 1]);
+    }
+
+    @Benchmark
+    public fa.State swapMaterialized() {
+        return dfa.swap(symbols[0], symbols[sigma - 1]).getState(names[0]);
+    }
+
+    @Benchmark
+    public String dfaToString() {
+        return dfa.toString();
+    }
+}
@@ -0,0 +1,155 @@
+package bench.nfa;
+
+import java.util.Collections;
+import java.util.Random;
+
+import fa.FAInterface;
+import fa.dfa.DFA;
+import fa.nfa.NFA;
+
+/**
+ * Compares the two ways to run an NFA on NFAs of growing size: converting
+ * it to a DFA by the subset construction and running the DFA, against
+ * simulating the NFA directly on bitsets of states. Two families are
+ * measured: the NFAs of the strings whose k-th symbol from the end is a,
+ * whose DFA has 2^k states, and random NFAs, whose DFAs are usually small.
+ * For each it reports the time to convert, the DFA size, and the time per
+ * input symbol of both ways. Conversions that would pass MAX_DFA_STATES
+ * are given up, which is where simulation is the only choice.
+ */
+public class SubsetBenchmark {
+
+    private static final int[] K_FROM_END = {4, 8, 12, 16, 18, 24, 64, 256};
+    private static final int[] RANDOM_SIZES = {16, 64, 256, 1024};
+    private static final int MAX_DFA_STATES = 1 << 18;
+    private static final int INPUT_LENGTH = 1 << 20;
+    private static final int ROUNDS = 5;
+
+    /** Keeps the results of accepts alive. */
+    static volatile int blackhole;
+
+    public static void main(String[] args) {
+        String input = randomInput(INPUT_LENGTH, 1);
+
+        // Warm up so the JIT has compiled both ways
+        for (int i = 0; i < 3; i++) {
+            NFA nfa = kFromEnd(10);
+            blackhole += nfa.toDFA().accepts(input) ? 1 : 0;
+            blackhole += nfa.accepts(input) ? 1 : 0;
+        }
+
+        System.out.printf("%-12s %8s %12s %12s %14s %14s%n", "nfa", "states", "dfa states",
+                "convert ms", "dfa ns/char", "nfa ns/char");
+        for (int k : K_FROM_END) {
+            run("k=" + k, kFromEnd(k), input);
+        }
+        for (int n : RANDOM_SIZES) {
+            run("random", randomNfa(n, n), input);
+        }
+    }
+
+    private static void run(String name, NFA nfa, String input) {
+        int states = nfa.toString().split("\n")[0].split(" ").length - 4;
+        DFA dfa = null;
+        long convert = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS && convert != -1; round++) {
+            long begin = System.nanoTime();
+            try {
+                dfa = nfa.toDFA(MAX_DFA_STATES);
+                convert = Math.min(convert, System.nanoTime() - begin);
+            } catch (IllegalStateException e) {
+                convert = -1;
+            }
+        }
+
+        String dfaStates = "> " + MAX_DFA_STATES;
+        String convertMillis = "-";
+        String dfaNanos = "-";
+        if (convert != -1) {
+            dfaStates = String.valueOf(dfa.toString().split("\n")[0].split(" ").length - 4);
+            convertMillis = String.format("%.1f", convert / 1e6);
+            dfaNanos = String.format("%.2f", (double) best(dfa, input) / input.length());
+        }
+        double nfaNanos = (double) best(nfa, input) / input.length();
+        System.out.printf("%-12s %8d %12s %12s %14s %14.2f%n", name, states, dfaStates,
+                convertMillis, dfaNanos, nfaNanos);
+    }
+
+    /**
+     * Runs accepts on the input a few times and returns the fastest run
+     * in nanoseconds.
+     */
+    private static long best(FAInterface fa, String input) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long begin = System.nanoTime();
+            blackhole += fa.accepts(input) ? 1 : 0;
+            best = Math.min(best, System.nanoTime() - begin);
+        }
+        return best;
+    }
+
+    /**
+     * Creates the NFA of the strings over {a, b} whose k-th symbol from
+     * the end is a.
+     */
+    private static NFA kFromEnd(int k) {
+        NFA nfa = new NFA();
+        nfa.addSigma('a');
+        nfa.addSigma('b');
+        for (int i = 0; i <= k; i++) {
+            nfa.addState("s" + i);
+        }
+        nfa.setStart("s0");
+        nfa.setFinal("s" + k);
+        nfa.addTransition("s0", Collections.singleton("s0"), 'a');
+        nfa.addTransition("s0", Collections.singleton("s0"), 'b');
+        nfa.addTransition("s0", Collections.singleton("s1"), 'a');
+        for (int i = 1; i < k; i++) {
+            nfa.addTransition("s" + i, Collections.singleton("s" + (i + 1)), 'a');
+            nfa.addTransition("s" + i, Collections.singleton("s" + (i + 1)), 'b');
+        }
+        return nfa;
+    }
+
+    /**
+     * Creates an NFA over {a, b} in which every state moves to a random
+     * state on each symbol, a quarter of the states also move to a second
+     * one, a quarter have an epsilon transition, and a quarter are final.
+     */
+    private static NFA randomNfa(int states, long seed) {
+        Random random = new Random(seed);
+        NFA nfa = new NFA();
+        nfa.addSigma('a');
+        nfa.addSigma('b');
+        for (int i = 0; i < states; i++) {
+            nfa.addState("s" + i);
+            if (random.nextInt(4) == 0) {
+                nfa.setFinal("s" + i);
+            }
+        }
+        nfa.setStart("s0");
+        for (int i = 0; i < states; i++) {
+            String from = "s" + i;
+            nfa.addTransition(from, Collections.singleton("s" + random.nextInt(states)), 'a');
+            nfa.addTransition(from, Collections.singleton("s" + random.nextInt(states)), 'b');
+            if (random.nextInt(4) == 0) {
+                char symbol = random.nextBoolean() ? 'a' : 'b';
+                nfa.addTransition(from, Collections.singleton("s" + random.nextInt(states)), symbol);
+            }
+            if (random.nextInt(4) == 0) {
+                nfa.addTransition(from, Collections.singleton("s" + random.nextInt(states)), NFA.EPSILON);
+            }
+        }
+        return nfa;
+    }
+
+    private static String randomInput(int length, long seed) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(random.nextBoolean() ? 'a' : 'b');
+        }
+        return sb.toString();
+    }
+}
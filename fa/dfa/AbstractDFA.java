@@ -0,0 +1,163 @@
+package fa.dfa;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+/**
+ * The ways of matching shared by {@link DFA} and {@link FrozenDFA}, all
+ * of which work on the compiled form of the DFA. Each of them takes the
+ * compiled form as it is when it is called, so the matchers and copies
+ * they create do not see changes made to a {@link DFA} afterwards.
+ */
+abstract class AbstractDFA implements DFAInterface {
+
+    /**
+     * Gets the compiled form of this DFA as it is now.
+     *
+     * @return the compiled form of this DFA.
+     */
+    abstract CompiledDFA compiled();
+
+    /**
+     * Creates a matcher that simulates this DFA on input fed to it
+     * in pieces.
+     *
+     * @return a new matcher in the start state.
+     */
+    public DFAMatcher matcher() {
+        return new DFAMatcher(compiled());
+    }
+
+    /**
+     * Simulates this DFA on a single long string, reading parts of it
+     * in parallel on the common fork-join pool. The result is the same
+     * as that of {@link #accepts(String)}, which is used instead when the
+     * string is short or parallel reading would not pay off.
+     *
+     * @param s the input string, null is rejected.
+     * @return true if the DFA accepts s.
+     */
+    public boolean acceptsParallel(CharSequence s) {
+        return acceptsParallel(s, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Simulates this DFA on a single long string, reading parts of it
+     * in parallel on a fork-join pool, like
+     * {@link #acceptsParallel(CharSequence)}.
+     *
+     * @param s the input string, null is rejected.
+     * @param pool the pool to read the parts on.
+     * @return true if the DFA accepts s.
+     */
+    public boolean acceptsParallel(CharSequence s, ForkJoinPool pool) {
+        return s != null && ParallelMatcher.accepts(compiled(), s, pool);
+    }
+
+    /**
+     * Simulates this DFA on every string of a list, matching the strings
+     * in parallel. Each string is accepted or rejected exactly as
+     * {@link #accepts(String)} would.
+     *
+     * @param inputs the input strings, null strings are rejected.
+     * @return an array where index i is true if string i is accepted.
+     */
+    public boolean[] acceptsAll(List<? extends CharSequence> inputs) {
+        return BatchMatcher.acceptsAll(compiled(), inputs);
+    }
+
+    /**
+     * Simulates this DFA on every string of a list, matching the strings
+     * in parallel. Each string is accepted or rejected exactly as
+     * {@link #accepts(String)} would.
+     *
+     * @param inputs the input strings, null strings are rejected.
+     * @return a BitSet where bit i is set if string i is accepted.
+     */
+    public BitSet acceptsAllBits(List<? extends CharSequence> inputs) {
+        return BatchMatcher.acceptsAllBits(compiled(), inputs);
+    }
+
+    /**
+     * Filters a stream down to the strings this DFA accepts. The strings
+     * are matched in parallel if the stream is parallel.
+     *
+     * @param inputs the input strings, null strings are rejected.
+     * @return a stream of the accepted strings.
+     */
+    public Stream<String> filter(Stream<String> inputs) {
+        CompiledDFA snapshot = compiled();
+        return inputs.filter(s -> s != null && snapshot.accepts(s));
+    }
+
+    /**
+     * Creates a searcher that finds the substrings of a text this DFA
+     * accepts.
+     *
+     * @return a new searcher.
+     */
+    public DFASearcher searcher() {
+        return new DFASearcher(compiled());
+    }
+
+    /**
+     * Creates a DFA over the bytes of UTF-8 that accepts the encoding of
+     * exactly the strings this DFA accepts, so byte input can be matched
+     * without decoding it.
+     *
+     * @return a new ByteDFA.
+     */
+    public ByteDFA toByteDFA() {
+        return new ByteDFA(compiled());
+    }
+
+    /**
+     * Creates a matcher that keeps track of whether this DFA accepts a
+     * text while the text is edited, re-reading only a small part of the
+     * text after each edit.
+     *
+     * @param text the initial text.
+     * @return a new IncrementalMatcher.
+     */
+    public IncrementalMatcher incremental(CharSequence text) {
+        return new IncrementalMatcher(compiled(), text);
+    }
+
+    /**
+     * Generates a class that matches strings with the code of this DFA,
+     * if it has at most {@link SpecializedDFA#DEFAULT_MAX_STATES} live
+     * states, and otherwise matches them with its table.
+     *
+     * @return a new SpecializedDFA.
+     */
+    public SpecializedDFA specialize() {
+        return specialize(SpecializedDFA.DEFAULT_MAX_STATES);
+    }
+
+    /**
+     * Generates a class that matches strings with the code of this DFA,
+     * like {@link #specialize()}, if it has at most a number of live
+     * states.
+     *
+     * @param maxStates the most live states to generate code for, 0 to
+     * always match with the table.
+     * @return a new SpecializedDFA.
+     * @throws IllegalArgumentException if maxStates is negative.
+     */
+    public SpecializedDFA specialize(int maxStates) {
+        return new SpecializedDFA(compiled(), maxStates);
+    }
+
+    /**
+     * Creates an instrumented copy of this DFA that counts state visits,
+     * transitions, rejection reasons and latency for the inputs it is
+     * given, without slowing down this DFA.
+     *
+     * @return a new InstrumentedDFA with all counters at zero.
+     */
+    public InstrumentedDFA instrument() {
+        return new InstrumentedDFA(compiled());
+    }
+}
@@ -0,0 +1,32 @@
+package fa.dfa;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A JDK Flight Recorder event for one call to
+ * {@link InstrumentedDFA#accepts(CharSequence)}. It is only recorded while
+ * a recording with the event enabled is running; give it a threshold in
+ * the recording settings to only record slow calls.
+ */
+@Name("fa.dfa.Accept")
+@Label("DFA Accept")
+@Category("Automata")
+@Description("Simulation of a DFA on one input")
+final class AcceptEvent extends Event {
+    @Label("Input Length")
+    int inputLength;
+
+    @Label("Accepted")
+    boolean accepted;
+
+    @Label("Reject Reason")
+    @Description("Why the input was rejected, or null if it was accepted")
+    String rejectReason;
+
+    @Label("Symbols Read")
+    int symbolsRead;
+}
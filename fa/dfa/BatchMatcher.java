@@ -0,0 +1,126 @@
+package fa.dfa;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Simulates a compiled DFA on many input strings at once by splitting
+ * them into ranges that are matched in parallel on the common fork-join
+ * pool. Results are written into a shared array where every task owns a
+ * disjoint range, so no locking is needed.
+ */
+final class BatchMatcher {
+    /** Ranges with fewer strings than this are matched by a single task. */
+    private static final int SPLIT_THRESHOLD = 1024;
+
+    private BatchMatcher() {
+    }
+
+    /**
+     * Simulates a DFA on every string of a list.
+     *
+     * @param compiled the DFA to simulate.
+     * @param inputs the input strings, null strings are rejected.
+     * @return an array where index i is true if the DFA accepts string i.
+     */
+    static boolean[] acceptsAll(CompiledDFA compiled, List<? extends CharSequence> inputs) {
+        CharSequence[] strings = inputs.toArray(new CharSequence[0]);
+        boolean[] results = new boolean[strings.length];
+        ForkJoinPool.commonPool().invoke(new MatchTask(compiled, strings, results, 0, strings.length));
+        return results;
+    }
+
+    /**
+     * Simulates a DFA on every string of a list.
+     *
+     * @param compiled the DFA to simulate.
+     * @param inputs the input strings, null strings are rejected.
+     * @return a BitSet where bit i is set if the DFA accepts string i.
+     */
+    static BitSet acceptsAllBits(CompiledDFA compiled, List<? extends CharSequence> inputs) {
+        CharSequence[] strings = inputs.toArray(new CharSequence[0]);
+        long[] words = new long[(strings.length + 63) >>> 6];
+        ForkJoinPool.commonPool().invoke(new MatchBitsTask(compiled, strings, words, 0, words.length));
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * Matches strings [from, to) into an array of results, splitting the
+     * range while it is large.
+     */
+    private static final class MatchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final CompiledDFA compiled;
+        private final CharSequence[] strings;
+        private final boolean[] results;
+        private final int from;
+        private final int to;
+
+        MatchTask(CompiledDFA compiled, CharSequence[] strings, boolean[] results, int from, int to) {
+            this.compiled = compiled;
+            this.strings = strings;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SPLIT_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new MatchTask(compiled, strings, results, from, middle),
+                        new MatchTask(compiled, strings, results, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                results[i] = strings[i] != null && compiled.accepts(strings[i]);
+            }
+        }
+    }
+
+    /**
+     * Matches the strings of words [from, to) of a bitset, splitting the
+     * range while it is large. Each word holds the results of 64 strings,
+     * so tasks never share a word.
+     */
+    private static final class MatchBitsTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final CompiledDFA compiled;
+        private final CharSequence[] strings;
+        private final long[] words;
+        private final int from;
+        private final int to;
+
+        MatchBitsTask(CompiledDFA compiled, CharSequence[] strings, long[] words, int from, int to) {
+            this.compiled = compiled;
+            this.strings = strings;
+            this.words = words;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if ((to - from) * 64 > SPLIT_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new MatchBitsTask(compiled, strings, words, from, middle),
+                        new MatchBitsTask(compiled, strings, words, middle, to));
+                return;
+            }
+            for (int word = from; word < to; word++) {
+                long bits = 0;
+                int end = Math.min(strings.length, (word + 1) * 64);
+                for (int i = word * 64; i < end; i++) {
+                    if (strings[i] != null && compiled.accepts(strings[i])) {
+                        bits |= 1L << i;
+                    }
+                }
+                words[word] = bits;
+            }
+        }
+    }
+}
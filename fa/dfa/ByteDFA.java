@@ -0,0 +1,94 @@
+package fa.dfa;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A DFA over the bytes of UTF-8, created by {@link DFA#toByteDFA()}.
+ *
+ * A ByteDFA accepts the UTF-8 encoding of exactly the strings its DFA
+ * accepts, so input that arrives as bytes can be matched without
+ * decoding it into a String first. Characters outside of the Basic
+ * Multilingual Plane are read as the surrogate pair a String would hold.
+ * Malformed UTF-8 is always rejected, where decoding it into a String
+ * would have replaced it with U+FFFD.
+ *
+ * A ByteDFA is immutable and can be shared between threads.
+ */
+public final class ByteDFA {
+    private final CompiledDFA compiled;
+
+    /**
+     * Creates the byte-level form of a compiled DFA.
+     *
+     * @param compiled the DFA over chars.
+     */
+    ByteDFA(CompiledDFA compiled) {
+        this.compiled = Utf8Construction.of(compiled);
+    }
+
+    /**
+     * Simulates the DFA on the UTF-8 encoding of a string.
+     *
+     * @param bytes the input bytes.
+     * @return true if the bytes are well-formed UTF-8 and the DFA
+     * accepts the string they encode.
+     */
+    public boolean accepts(byte[] bytes) {
+        return bytes != null && accepts(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Simulates the DFA on part of an array of UTF-8 bytes.
+     *
+     * @param bytes the array holding the input.
+     * @param off the index of the first byte.
+     * @param len the number of bytes.
+     * @return true if the bytes are well-formed UTF-8 and the DFA
+     * accepts the string they encode.
+     * @throws IndexOutOfBoundsException if off and len are not a range of bytes.
+     */
+    public boolean accepts(byte[] bytes, int off, int len) {
+        if (off < 0 || len < 0 || len > bytes.length - off) {
+            throw new IndexOutOfBoundsException("Range [" + off + ", " + off + " + " + len
+                    + ") out of bounds for length " + bytes.length);
+        }
+        int state = compiled.start;
+        for (int i = off, end = off + len; i < end && state != compiled.sink; i++) {
+            state = compiled.next(state, (char) (bytes[i] & 0xFF));
+        }
+        return compiled.isFinal(state);
+    }
+
+    /**
+     * Simulates the DFA on the remaining UTF-8 bytes of a buffer, which
+     * may be a heap or a direct buffer. The position of the buffer is
+     * not changed.
+     *
+     * @param buffer the buffer holding the input between its position and limit.
+     * @return true if the bytes are well-formed UTF-8 and the DFA
+     * accepts the string they encode.
+     */
+    public boolean accepts(ByteBuffer buffer) {
+        if (buffer == null) {
+            return false;
+        }
+        if (buffer.hasArray()) {
+            return accepts(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        int state = compiled.start;
+        for (int i = buffer.position(), end = buffer.limit(); i < end && state != compiled.sink; i++) {
+            state = compiled.next(state, (char) (buffer.get(i) & 0xFF));
+        }
+        return compiled.isFinal(state);
+    }
+
+    /**
+     * Gets the number of states of the byte-level DFA, counting the
+     * states that sit between the bytes of a multi-byte character.
+     *
+     * @return the number of states, not counting the sink.
+     */
+    public int stateCount() {
+        return compiled.sink;
+    }
+}
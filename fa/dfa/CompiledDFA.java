@@ -0,0 +1,626 @@
+package fa.dfa;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dense, table-driven form of a {@link DFA} that is used to simulate
+ * the DFA on input strings.
+ *
+ * States are numbered with ints in the order they were added to the DFA,
+ * and every symbol of Sigma is mapped to a column of a flat transition
+ * table. Symbols that lead to the same state from every state share a
+ * column, so the table has one column per class of equivalent symbols
+ * rather than one per symbol. Column 0 is the class of symbols outside of
+ * Sigma, and one extra state (the sink) stands in for every missing
+ * transition, so a simulation is a single array lookup per symbol. The
+ * names of the states and the order of Sigma and of the final states are
+ * kept as well, so the compiled form describes the whole DFA. Instances
+ * are immutable.
+ *
+ * Every state is also classified as dead (no final state can be reached
+ * from it), universal (final, and every symbol of Sigma leads to another
+ * universal state) or neither. A simulation stops as soon as it reaches a
+ * dead state, and once it reaches a universal state it only has to check
+ * that the rest of the input is in Sigma.
+ */
+final class CompiledDFA {
+    /** Column used for every symbol that is not in Sigma. */
+    static final int REJECT_COLUMN = 0;
+
+    static final byte NORMAL = 0;
+    static final byte DEAD = 1;
+    static final byte UNIVERSAL = 2;
+
+    /** Maps a symbol to the column of its class, symbols beyond the array are rejected. */
+    private final int[] columnOf;
+    /** Number of columns in a row of the transition table, one per symbol class. */
+    final int stride;
+    /** Row-major transition table with one row per state, sink included. */
+    final int[] table;
+    /** Id of the start state, or the sink if the DFA has no start state. */
+    final int start;
+    /** Id of the implicit dead state, equal to the number of real states. */
+    final int sink;
+    /** Bitset of the final states. */
+    final long[] finals;
+    /** Names of the states indexed by id, the sink has no name. */
+    final String[] names;
+    /** Sigma in insertion order. */
+    final char[] symbols;
+    /** Ids of the final states in the order they were marked final. */
+    final int[] finalOrder;
+    /** Whether each state is {@link #NORMAL}, {@link #DEAD} or {@link #UNIVERSAL}. */
+    final byte[] kind;
+
+    private CompiledDFA(int[] columnOf, int stride, int[] table, int start, int sink,
+                        long[] finals, String[] names, char[] symbols, int[] finalOrder) {
+        this.columnOf = columnOf;
+        this.stride = stride;
+        this.table = table;
+        this.start = start;
+        this.sink = sink;
+        this.finals = finals;
+        this.names = names;
+        this.symbols = symbols;
+        this.finalOrder = finalOrder;
+        this.kind = classify();
+    }
+
+    /**
+     * Recreates a compiled DFA from its parts, as written by
+     * {@link DFAFormat}. The parts are used as they are, without
+     * compressing the table, and the states are classified again.
+     *
+     * @param symbols Sigma in insertion order.
+     * @param columns the column of each symbol of Sigma.
+     * @param stride the number of columns.
+     * @param table the transition table, sink included.
+     * @param start the id of the start state, or sink if there is none.
+     * @param sink the number of real states.
+     * @param finals the bitset of the final states.
+     * @param names the names of the states.
+     * @param finalOrder the final states in the order they were marked final.
+     * @return the compiled DFA.
+     */
+    static CompiledDFA restore(char[] symbols, int[] columns, int stride, int[] table, int start,
+                               int sink, long[] finals, String[] names, int[] finalOrder) {
+        return new CompiledDFA(columnMap(symbols, columns), stride, table, start, sink, finals,
+                names, symbols, finalOrder);
+    }
+
+    /**
+     * Maps every symbol of Sigma to its column, leaving every other
+     * symbol in {@link #REJECT_COLUMN}.
+     *
+     * @param symbols Sigma.
+     * @param columns the column of each symbol of Sigma.
+     * @return an array indexed by symbol.
+     */
+    static int[] columnMap(char[] symbols, int[] columns) {
+        int maxSymbol = -1;
+        for (char symbol : symbols) {
+            maxSymbol = Math.max(maxSymbol, symbol);
+        }
+        int[] columnOf = new int[maxSymbol + 1];
+        for (int i = 0; i < symbols.length; i++) {
+            columnOf[symbols[i]] = columns[i];
+        }
+        return columnOf;
+    }
+
+    /**
+     * Finds the dead and the universal states. Only the columns that a
+     * symbol of Sigma is mapped to are followed.
+     */
+    private byte[] classify() {
+        int[] columns = symbolColumns();
+        Arrays.sort(columns);
+        int distinct = 0;
+        for (int i = 0; i < columns.length; i++) {
+            if (i == 0 || columns[i] != columns[i - 1]) {
+                columns[distinct++] = columns[i];
+            }
+        }
+
+        // Reverse transitions: the predecessors of t are preds[predStart[t] .. predStart[t + 1])
+        int[] predStart = new int[sink + 2];
+        for (int state = 0; state < sink; state++) {
+            for (int c = 0; c < distinct; c++) {
+                predStart[table[state * stride + columns[c]] + 1]++;
+            }
+        }
+        for (int i = 1; i < predStart.length; i++) {
+            predStart[i] += predStart[i - 1];
+        }
+        int[] fill = Arrays.copyOf(predStart, predStart.length);
+        int[] preds = new int[sink * distinct];
+        for (int state = 0; state < sink; state++) {
+            for (int c = 0; c < distinct; c++) {
+                preds[fill[table[state * stride + columns[c]]]++] = state;
+            }
+        }
+
+        // A state is live if a final state can be reached from it
+        byte[] kinds = new byte[sink + 1];
+        Arrays.fill(kinds, DEAD);
+        int[] queue = new int[sink + 1];
+        int head = 0;
+        int tail = 0;
+        for (int state : finalOrder) {
+            kinds[state] = NORMAL;
+            queue[tail++] = state;
+        }
+        while (head < tail) {
+            int t = queue[head++];
+            for (int p = predStart[t]; p < predStart[t + 1]; p++) {
+                if (kinds[preds[p]] == DEAD) {
+                    kinds[preds[p]] = NORMAL;
+                    queue[tail++] = preds[p];
+                }
+            }
+        }
+
+        // Every final state is universal unless it can leave the final
+        // states, which takes it out along with its predecessors
+        head = 0;
+        tail = 0;
+        for (int state : finalOrder) {
+            kinds[state] = UNIVERSAL;
+        }
+        for (int state = 0; state <= sink; state++) {
+            if (kinds[state] != UNIVERSAL) {
+                queue[tail++] = state;
+            }
+        }
+        while (head < tail) {
+            int t = queue[head++];
+            for (int p = predStart[t]; p < predStart[t + 1]; p++) {
+                if (kinds[preds[p]] == UNIVERSAL) {
+                    kinds[preds[p]] = NORMAL;
+                    queue[tail++] = preds[p];
+                }
+            }
+        }
+        return kinds;
+    }
+
+    /**
+     * Compiles the given 5-tuple. The states must be the ones created
+     * by the owning DFA, whose ids match their position in the set.
+     *
+     * @param states the states of the DFA in insertion order.
+     * @param alphabet the alphabet of the DFA in insertion order.
+     * @param startState the start state, or null if there is none.
+     * @param finalStates the final states of the DFA.
+     * @return the compiled DFA.
+     */
+    static CompiledDFA of(Set<DFAState> states, Set<Character> alphabet, DFAState startState,
+                          Set<DFAState> finalStates) {
+        char[] symbols = new char[alphabet.size()];
+        int i = 0;
+        for (char symbol : alphabet) {
+            symbols[i++] = symbol;
+        }
+
+        int sink = states.size();
+        int stride = symbols.length + 1;
+        int[] table = newTable(sink, stride);
+        String[] names = new String[sink];
+        for (DFAState state : states) {
+            names[state.id] = state.getName();
+            int row = state.id * stride;
+            for (i = 0; i < symbols.length; i++) {
+                DFAState toState = state.getTransitionState(symbols[i]);
+                if (toState != null && toState.owner == state.owner) {
+                    table[row + i + 1] = toState.id;
+                }
+            }
+        }
+
+        long[] finals = new long[(sink >>> 6) + 1];
+        int[] finalOrder = new int[finalStates.size()];
+        i = 0;
+        for (DFAState state : finalStates) {
+            finals[state.id >>> 6] |= 1L << state.id;
+            finalOrder[i++] = state.id;
+        }
+        int start = startState != null ? startState.id : sink;
+        return compress(symbols, table, start, sink, finals, names, finalOrder);
+    }
+
+    /**
+     * Compiles a DFA given as arrays indexed by state id.
+     *
+     * @param symbols the alphabet of the DFA in insertion order.
+     * @param names the names of the states.
+     * @param stateCount the number of states.
+     * @param delta row-major transitions with one row per state and one
+     * column per symbol, -1 for a missing transition.
+     * @param startId the id of the start state, or -1 if there is none.
+     * @param finalIds the ids of the final states, in the order they
+     * were marked final.
+     * @return the compiled DFA.
+     */
+    static CompiledDFA of(char[] symbols, String[] names, int stateCount, int[] delta,
+                          int startId, int[] finalIds) {
+        int stride = symbols.length + 1;
+        int[] table = newTable(stateCount, stride);
+        for (int state = 0; state < stateCount; state++) {
+            int row = state * stride;
+            int deltaRow = state * symbols.length;
+            for (int i = 0; i < symbols.length; i++) {
+                int toState = delta[deltaRow + i];
+                if (toState >= 0) {
+                    table[row + i + 1] = toState;
+                }
+            }
+        }
+
+        long[] finals = new long[(stateCount >>> 6) + 1];
+        for (int state : finalIds) {
+            finals[state >>> 6] |= 1L << state;
+        }
+        int start = startId >= 0 ? startId : stateCount;
+        return compress(symbols.clone(), table, start, stateCount, finals,
+                Arrays.copyOf(names, stateCount), finalIds.clone());
+    }
+
+    /**
+     * Gets the compiled form of a DFA of this package.
+     *
+     * @param dfa a DFA or FrozenDFA.
+     * @return the compiled form of its current contents.
+     * @throws IllegalArgumentException if dfa is another implementation.
+     */
+    static CompiledDFA from(DFAInterface dfa) {
+        if (dfa instanceof DFA) {
+            return ((DFA) dfa).compiled();
+        }
+        if (dfa instanceof FrozenDFA) {
+            return ((FrozenDFA) dfa).compiled();
+        }
+        throw new IllegalArgumentException("Unsupported DFA implementation " + dfa.getClass().getName());
+    }
+
+    /**
+     * Creates a transition table where every transition leads to the sink.
+     */
+    private static int[] newTable(int sink, int stride) {
+        int[] table = new int[(sink + 1) * stride];
+        Arrays.fill(table, sink);
+        return table;
+    }
+
+    /**
+     * Merges the columns of a table with one column per symbol (column
+     * i + 1 for symbols[i]) into one column per class of symbols that
+     * lead to the same state from every state. A symbol whose transitions
+     * are all missing joins the class of symbols outside of Sigma.
+     */
+    private static CompiledDFA compress(char[] symbols, int[] table, int start, int sink,
+                                        long[] finals, String[] names, int[] finalOrder) {
+        int width = symbols.length + 1;
+        int rows = sink + 1;
+        long[] hashes = new long[width];
+        for (int row = 0; row < rows; row++) {
+            int offset = row * width;
+            for (int column = 0; column < width; column++) {
+                hashes[column] = hashes[column] * 31 + table[offset + column];
+            }
+        }
+
+        // classOf[column] is the class of a column, representative[c] a column of class c
+        int[] classOf = new int[width];
+        int[] representative = new int[width];
+        int classes = 1;
+        Map<Long, int[]> byHash = new HashMap<>();
+        byHash.put(hashes[0], new int[] {0});
+        for (int column = 1; column < width; column++) {
+            int[] candidates = byHash.get(hashes[column]);
+            int found = -1;
+            if (candidates != null) {
+                for (int c : candidates) {
+                    if (sameColumn(table, width, rows, representative[c], column)) {
+                        found = c;
+                        break;
+                    }
+                }
+            }
+            if (found < 0) {
+                found = classes++;
+                representative[found] = column;
+                int[] extended = candidates == null ? new int[1]
+                        : Arrays.copyOf(candidates, candidates.length + 1);
+                extended[extended.length - 1] = found;
+                byHash.put(hashes[column], extended);
+            }
+            classOf[column] = found;
+        }
+
+        int[] compressed = table;
+        if (classes < width) {
+            compressed = new int[rows * classes];
+            for (int row = 0; row < rows; row++) {
+                for (int c = 0; c < classes; c++) {
+                    compressed[row * classes + c] = table[row * width + representative[c]];
+                }
+            }
+        }
+
+        int[] columns = new int[symbols.length];
+        for (int i = 0; i < symbols.length; i++) {
+            columns[i] = classOf[i + 1];
+        }
+        return new CompiledDFA(columnMap(symbols, columns), classes, compressed, start, sink, finals,
+                names, symbols, finalOrder);
+    }
+
+    private static boolean sameColumn(int[] table, int width, int rows, int first, int second) {
+        for (int row = 0; row < rows; row++) {
+            if (table[row * width + first] != table[row * width + second]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the column of a symbol.
+     *
+     * @param symbol the symbol.
+     * @return the column of the symbol, which is {@link #REJECT_COLUMN} if
+     * the symbol is not in Sigma or every transition on it is missing.
+     */
+    int column(char symbol) {
+        return symbol < columnOf.length ? columnOf[symbol] : REJECT_COLUMN;
+    }
+
+    /**
+     * Determines if a symbol is in Sigma. Unlike {@link #column(char)},
+     * this tells symbols of Sigma without transitions apart from
+     * symbols outside of Sigma.
+     *
+     * @param symbol the symbol.
+     * @return true if the symbol is in Sigma.
+     */
+    boolean inSigma(char symbol) {
+        for (char s : symbols) {
+            if (s == symbol) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the distinct columns of the symbols of Sigma, leaving out
+     * {@link #REJECT_COLUMN}. Symbols that share a column behave the same
+     * from every state, so it is enough to look at one of each. After
+     * {@link #remap(Map)} some columns of the shared table may belong to
+     * no symbol at all, so only the columns of Sigma are returned.
+     *
+     * @return the columns in increasing order.
+     */
+    int[] classColumns() {
+        int[] columns = symbolColumns();
+        Arrays.sort(columns);
+        int distinct = 0;
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i] != REJECT_COLUMN && (distinct == 0 || columns[i] != columns[distinct - 1])) {
+                columns[distinct++] = columns[i];
+            }
+        }
+        return Arrays.copyOf(columns, distinct);
+    }
+
+    /**
+     * Gets the state reached from a state on a symbol.
+     *
+     * @param state the id of the current state.
+     * @param symbol the symbol to transition on.
+     * @return the id of the next state, which is the sink if the
+     * transition is missing, the symbol is not in Sigma, or the next
+     * state is dead.
+     */
+    int next(int state, char symbol) {
+        int next = table[state * stride + column(symbol)];
+        return kind[next] == DEAD ? sink : next;
+    }
+
+    /**
+     * Determines if a state is final.
+     *
+     * @param state the id of the state.
+     * @return true if the state is final.
+     */
+    boolean isFinal(int state) {
+        return (finals[state >>> 6] & (1L << state)) != 0;
+    }
+
+    /**
+     * Determines if no final state can be reached from a state.
+     *
+     * @param state the id of the state.
+     * @return true if the state is dead, which the sink always is.
+     */
+    boolean isDead(int state) {
+        return kind[state] == DEAD;
+    }
+
+    /**
+     * Determines if every string over Sigma is accepted from a state.
+     *
+     * @param state the id of the state.
+     * @return true if the state is universal.
+     */
+    boolean isUniversal(int state) {
+        return kind[state] == UNIVERSAL;
+    }
+
+    /**
+     * Simulates the DFA on an input string.
+     *
+     * @param s the input string.
+     * @return true if the DFA accepts s.
+     */
+    boolean accepts(CharSequence s) {
+        return isFinal(run(start, s, 0, s.length()));
+    }
+
+    /**
+     * Simulates the DFA on part of a buffer, starting from any state.
+     *
+     * @param state the id of the state to start from.
+     * @param buf the buffer holding the input.
+     * @param from the index of the first symbol.
+     * @param to the index after the last symbol.
+     * @return the id of the state reached, which is the sink as soon as
+     * a dead state is reached. Once a universal state is reached, it is
+     * returned unless a later symbol is not in Sigma.
+     */
+    int run(int state, char[] buf, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (kind[state] != NORMAL) {
+                return kind[state] == DEAD || !inSigma(buf, i, to) ? sink : state;
+            }
+            state = table[state * stride + column(buf[i])];
+        }
+        return kind[state] == DEAD ? sink : state;
+    }
+
+    /**
+     * Simulates the DFA on part of a string, starting from any state.
+     *
+     * @param state the id of the state to start from.
+     * @param s the string holding the input.
+     * @param from the index of the first symbol.
+     * @param to the index after the last symbol.
+     * @return the id of the state reached, as for {@link #run(int, char[], int, int)}.
+     */
+    int run(int state, CharSequence s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (kind[state] != NORMAL) {
+                return kind[state] == DEAD || !inSigma(s, i, to) ? sink : state;
+            }
+            state = table[state * stride + column(s.charAt(i))];
+        }
+        return kind[state] == DEAD ? sink : state;
+    }
+
+    /**
+     * Determines if every symbol of part of a buffer is in Sigma. From a
+     * universal state, no symbol of Sigma is in {@link #REJECT_COLUMN}.
+     */
+    private boolean inSigma(char[] buf, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (column(buf[i]) == REJECT_COLUMN) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean inSigma(CharSequence s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (column(s.charAt(i)) == REJECT_COLUMN) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the column of every symbol of Sigma.
+     *
+     * @return the columns, in the order of {@link #symbols}.
+     */
+    int[] symbolColumns() {
+        int[] columns = new int[symbols.length];
+        for (int i = 0; i < symbols.length; i++) {
+            columns[i] = column(symbols[i]);
+        }
+        return columns;
+    }
+
+    /**
+     * Creates a compiled DFA that reads every symbol a as the symbol
+     * mapping(a). Only the map from symbols to columns is copied, the
+     * transition table and every other array are shared with this one.
+     *
+     * @param mapping maps symbols of Sigma to symbols of Sigma, symbols
+     * that are not mapped are read as themselves.
+     * @return the remapped DFA.
+     */
+    CompiledDFA remap(Map<Character, Character> mapping) {
+        int[] remapped = columnOf.clone();
+        for (Map.Entry<Character, Character> entry : mapping.entrySet()) {
+            remapped[entry.getKey()] = column(entry.getValue());
+        }
+        return new CompiledDFA(remapped, stride, table, start, sink, finals, names, symbols,
+                finalOrder);
+    }
+
+    /**
+     * Gets the id of the state reached from a state on a symbol,
+     * given the column of the symbol.
+     *
+     * @param state the id of the current state.
+     * @param column the column of the symbol.
+     * @return the id of the next state.
+     */
+    int target(int state, int column) {
+        return table[state * stride + column];
+    }
+
+    /**
+     * Construct the textual representation of the compiled DFA, in the
+     * same format as {@link DFAInterface#toString()}.
+     *
+     * @return String representation of the DFA
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("Q = { ");
+        for (String name : names) {
+            sb.append(name).append(" ");
+        }
+        sb.append("}\n");
+
+        sb.append("Sigma = { ");
+        for (char symbol : symbols) {
+            sb.append(symbol).append(" ");
+        }
+        sb.append("}\n");
+
+        sb.append("delta =\n\t");
+        for (char symbol : symbols) {
+            sb.append(symbol).append("\t");
+        }
+        sb.append("\n");
+
+        int[] columns = symbolColumns();
+        for (int state = 0; state < sink; state++) {
+            sb.append(names[state]).append("\t");
+            for (int column : columns) {
+                int nextState = target(state, column);
+                sb.append(nextState != sink ? names[nextState] : "-").append("\t");
+            }
+            sb.append("\n");
+        }
+
+        sb.append("q0 = ").append(start != sink ? names[start] : "-").append("\n");
+
+        sb.append("F = { ");
+        for (int state : finalOrder) {
+            sb.append(names[state]).append(" ");
+        }
+        sb.append("}");
+
+        return sb.toString();
+    }
+}
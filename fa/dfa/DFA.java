@@ -2,7 +2,9 @@ package fa.dfa;
 
 import fa.State;
 
+import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -25,11 +27,15 @@ import java.util.Set;
  * 
  * @author Chase Stombaugh, Jayce Lowry
  */
-public class DFA implements DFAInterface {
+public class DFA extends AbstractDFA {
     private Set<DFAState> states;
+    private Map<String, DFAState> stateIndex;
     private Set<Character> alphabet;
     private DFAState startState;
     private Set<DFAState> finalStates;
+    private CompiledDFA compiled;
+    /** The contents of this DFA while its states have not been created yet. */
+    private CompiledDFA source;
 
     /**
      * Constructor for a new DFA, Initializes the alphabet, set of states, start state, final states,
@@ -38,6 +44,7 @@ public class DFA implements DFAInterface {
     public DFA() {
         this.alphabet = new LinkedHashSet<>();
         this.states = new LinkedHashSet<>();
+        this.stateIndex = new HashMap<>();
         this.startState = null;
         this.finalStates = new LinkedHashSet<>();
     }
@@ -47,6 +54,7 @@ public class DFA implements DFAInterface {
      */
     @Override
     public boolean addTransition(String fromState, String toState, char onSymb) {
+        materialize();
         DFAState from = (DFAState) getState(fromState);
         DFAState to = (DFAState) getState(toState);
 
@@ -59,48 +67,87 @@ public class DFA implements DFAInterface {
 
     /**
      * {@inheritDoc}
+     *
+     * The copy is made lazily: it shares the compiled transition table of
+     * this DFA and only reads symb1 as symb2 and symb2 as symb1, so swap
+     * takes time proportional to the alphabet. The states are copied the
+     * first time the copy is changed or one of its states is looked up.
      */
     @Override
     public DFA swap(char symb1, char symb2) {
-        // Don't create a copy if the symbols aren't in the alphabet
-        if (!alphabet.contains(symb1) || !alphabet.contains(symb2)) {
-            return null;
-        }
-        DFA newDFA = new DFA();
-
-        // Copy alphabet
-        newDFA.alphabet.addAll(alphabet);
+        Map<Character, Character> mapping = new HashMap<>();
+        mapping.put(symb1, symb2);
+        mapping.put(symb2, symb1);
+        return permute(mapping);
+    }
 
-        // Copy all states
-        for (DFAState state : states) {
-            DFAState copy = new DFAState(state.getName());
-            newDFA.states.add(copy);
+    /**
+     * Creates a copy of this DFA that reads every symbol a of Sigma as
+     * mapping(a), that is, the copy moves on a wherever this DFA moves on
+     * mapping(a). Swapping two symbols is the special case of a mapping
+     * that exchanges them, but the mapping does not have to be one-to-one.
+     *
+     * Like {@link #swap(char, char)}, the copy shares the compiled
+     * transition table of this DFA until it is changed.
+     *
+     * @param mapping maps symbols of Sigma to symbols of Sigma, symbols
+     * that are not mapped are read as themselves.
+     * @return the copy, or null if a symbol of the mapping is not in Sigma.
+     */
+    public DFA permute(Map<Character, Character> mapping) {
+        CompiledDFA current = compiled();
+        for (Map.Entry<Character, Character> entry : mapping.entrySet()) {
+            // Don't create a copy if the symbols aren't in the alphabet
+            if (!current.inSigma(entry.getKey()) || !current.inSigma(entry.getValue())) {
+                return null;
+            }
         }
+        return view(current.remap(mapping));
+    }
+
+    /**
+     * Creates a DFA whose contents are given by a compiled DFA. Its states
+     * are only created once it is changed or a state is looked up.
+     *
+     * @param source the compiled DFA.
+     * @return the new DFA.
+     */
+    static DFA view(CompiledDFA source) {
+        DFA dfa = new DFA();
+        dfa.source = source;
+        return dfa;
+    }
 
-        // Copy start and final states
-        if (startState != null) {
-            newDFA.setStart(startState.getName());
+    /**
+     * Creates the states, alphabet and transitions of a DFA created by
+     * {@link #view(CompiledDFA)}, copying them out of its compiled form.
+     */
+    private void materialize() {
+        CompiledDFA view = source;
+        if (view == null) {
+            return;
         }
-        for (DFAState state : finalStates) {
-            newDFA.setFinal(state.getName());
+        source = null;
+        for (char symbol : view.symbols) {
+            alphabet.add(symbol);
         }
-
-        // Copy Transitions
-        for (DFAState state : states) {
-            for (char symbol : alphabet) {
-                DFAState toState = state.getTransitionState(symbol);
-                if (toState != null) {
-                    DFAState copyState = (DFAState) newDFA.getState(state.getName());
-                    DFAState copyToState = (DFAState) newDFA.getState(toState.getName());
-
-                    copyState.setTransition(copyToState, symbol);
+        DFAState[] created = addStates(view.names);
+        int[] columns = view.symbolColumns();
+        for (int state = 0; state < view.sink; state++) {
+            for (int i = 0; i < columns.length; i++) {
+                int toState = view.target(state, columns[i]);
+                if (toState != view.sink) {
+                    created[state].setTransition(created[toState], view.symbols[i]);
                 }
             }
-            // Swap transitions
-            ((DFAState) newDFA.getState(state.getName())).swapTransitions(symb1, symb2);
         }
-
-        return newDFA;
+        if (view.start != view.sink) {
+            startState = created[view.start];
+        }
+        for (int state : view.finalOrder) {
+            finalStates.add(created[state]);
+        }
+        compiled = view;
     }
 
 
@@ -109,11 +156,14 @@ public class DFA implements DFAInterface {
      */
     @Override
     public boolean addState(String name) {
+        materialize();
         if (name == null || getState(name) != null) {
             return false;
         }
-        DFAState newState = new DFAState(name);
+        DFAState newState = new DFAState(name, this, states.size());
         states.add(newState);
+        stateIndex.put(name, newState);
+        invalidate();
         return true;
     }
 
@@ -122,9 +172,11 @@ public class DFA implements DFAInterface {
      */
     @Override
     public boolean setFinal(String name) {
+        materialize();
         State state = getState(name); 
         if (state == null) return false;
         finalStates.add((DFAState) state);
+        invalidate();
         return true;
     }
 
@@ -134,9 +186,11 @@ public class DFA implements DFAInterface {
      */
     @Override
     public boolean setStart(String name) {
+        materialize();
         State state = getState(name);
         if (state == null) return false;
         this.startState = (DFAState) state;
+        invalidate();
         return true;
     }
 
@@ -145,7 +199,10 @@ public class DFA implements DFAInterface {
      */
     @Override
     public void addSigma(char symbol) {
-        alphabet.add(symbol);
+        materialize();
+        if (alphabet.add(symbol)) {
+            invalidate();
+        }
     }
 
     /**
@@ -153,16 +210,202 @@ public class DFA implements DFAInterface {
      */
     @Override
     public boolean accepts(String s) {
-        if (startState == null) return false; // No start state means no valid transitions
-        DFAState currentState = startState; // Start from the initial state
-        for (char symbol : s.toCharArray()) {
-            if (!alphabet.contains(symbol)) return false; // Reject if character is not in Sigma
-            if (currentState == null || currentState.getTransitionState(symbol) == null) {
-                return false;
-            }
-            currentState = currentState.getTransitionState(symbol);
+        if (s == null) return false;
+        // Symbols outside of Sigma and missing transitions both lead to the sink
+        return compiled().accepts(s);
+    }
+
+    /**
+     * Creates a minimal DFA that accepts the same language as this one,
+     * using Hopcroft's partition refinement algorithm. Unreachable states
+     * are removed, equivalent states are merged into the state that was
+     * added first, and states from which no final state can be reached
+     * are dropped along with the transitions into them.
+     *
+     * @return a new minimal DFA.
+     */
+    public DFA minimize() {
+        return Minimizer.minimize(compiled()).build();
+    }
+
+    /**
+     * Creates a DFA that accepts the strings accepted by both this DFA
+     * and another one. The product runs over the union of both alphabets
+     * and only holds the pairs of states reachable from the start states.
+     *
+     * @param other the other DFA.
+     * @return a new DFA for the intersection of the two languages.
+     */
+    public DFA intersect(DFAInterface other) {
+        return ProductConstruction.product(compiled(), CompiledDFA.from(other),
+                ProductConstruction.Operation.INTERSECTION).build();
+    }
+
+    /**
+     * Creates a DFA that accepts the strings accepted by this DFA, another
+     * one, or both. The product runs over the union of both alphabets and
+     * only holds the pairs of states reachable from the start states.
+     *
+     * @param other the other DFA.
+     * @return a new DFA for the union of the two languages.
+     */
+    public DFA union(DFAInterface other) {
+        return ProductConstruction.product(compiled(), CompiledDFA.from(other),
+                ProductConstruction.Operation.UNION).build();
+    }
+
+    /**
+     * Creates a DFA that accepts the strings accepted by this DFA but not
+     * by another one. The product runs over the union of both alphabets
+     * and only holds the pairs of states reachable from the start states.
+     *
+     * @param other the other DFA.
+     * @return a new DFA for the difference of the two languages.
+     */
+    public DFA difference(DFAInterface other) {
+        return ProductConstruction.product(compiled(), CompiledDFA.from(other),
+                ProductConstruction.Operation.DIFFERENCE).build();
+    }
+
+    /**
+     * Creates a DFA over the same Sigma that accepts exactly the strings
+     * over Sigma this DFA rejects. Strings with symbols outside of Sigma
+     * are still rejected. Missing transitions lead to a new final state
+     * named sink, which loops on every symbol.
+     *
+     * @return a new DFA for the complement of the language.
+     */
+    public DFA complement() {
+        return ProductConstruction.complement(compiled()).build();
+    }
+
+    /**
+     * Determines if this DFA and another one accept the same language,
+     * using the nearly linear Hopcroft–Karp algorithm.
+     *
+     * @param other the other DFA.
+     * @return true if both DFAs accept exactly the same strings.
+     */
+    public boolean isEquivalent(DFAInterface other) {
+        return distinguishingString(other) == null;
+    }
+
+    /**
+     * Finds a shortest string that is accepted by exactly one of this
+     * DFA and another one.
+     *
+     * @param other the other DFA.
+     * @return the string, or null if the DFAs are equivalent.
+     */
+    public String distinguishingString(DFAInterface other) {
+        return EquivalenceChecker.distinguishingString(compiled(), CompiledDFA.from(other));
+    }
+
+    /**
+     * Determines if every string this DFA accepts is also accepted by
+     * another one.
+     *
+     * @param other the other DFA.
+     * @return true if the language of this DFA is a subset of the other's.
+     */
+    public boolean isSubsetOf(DFAInterface other) {
+        return inclusionCounterexample(other) == null;
+    }
+
+    /**
+     * Finds a shortest string that this DFA accepts but another one rejects.
+     *
+     * @param other the other DFA.
+     * @return the string, or null if the language of this DFA is a
+     * subset of the other's.
+     */
+    public String inclusionCounterexample(DFAInterface other) {
+        return EquivalenceChecker.inclusionCounterexample(compiled(), CompiledDFA.from(other));
+    }
+
+    /**
+     * Creates an immutable snapshot of this DFA that can be shared
+     * between threads. Later changes to this DFA do not affect it.
+     *
+     * @return a frozen copy of this DFA.
+     */
+    public FrozenDFA freeze() {
+        return new FrozenDFA(compiled());
+    }
+
+    /**
+     * Gets the compiled form of this DFA, compiling it first if the
+     * DFA has been changed since it was last compiled.
+     *
+     * @return the compiled form of this DFA.
+     */
+    @Override
+    CompiledDFA compiled() {
+        if (source != null) {
+            return source;
+        }
+        CompiledDFA current = compiled;
+        if (current == null) {
+            current = CompiledDFA.of(states, alphabet, startState, finalStates);
+            compiled = current;
         }
-        return finalStates.contains(currentState); // Correct final state check
+        return current;
+    }
+
+    /**
+     * Discards the compiled form of this DFA. Called whenever states,
+     * symbols or transitions of the DFA change.
+     */
+    void invalidate() {
+        compiled = null;
+    }
+
+    /**
+     * Adds states in bulk without checking their names, which the
+     * caller must already have validated as unique and non-null.
+     *
+     * @param names the labels of the new states.
+     * @return the new states, in the same order as names.
+     */
+    DFAState[] addStates(String[] names) {
+        DFAState[] created = new DFAState[names.length];
+        for (int i = 0; i < names.length; i++) {
+            created[i] = new DFAState(names[i], this, states.size());
+            states.add(created[i]);
+            stateIndex.put(names[i], created[i]);
+        }
+        invalidate();
+        return created;
+    }
+
+    /**
+     * Sets the start state to a state of this DFA.
+     *
+     * @param state the new start state.
+     */
+    void markStart(DFAState state) {
+        startState = state;
+        invalidate();
+    }
+
+    /**
+     * Marks a state of this DFA as final.
+     *
+     * @param state the state to mark.
+     */
+    void markFinal(DFAState state) {
+        finalStates.add(state);
+        invalidate();
+    }
+
+    /**
+     * Installs a compiled form that is known to match the current
+     * contents of this DFA, so accepts does not have to compile it.
+     *
+     * @param compiled the compiled form of this DFA.
+     */
+    void setCompiled(CompiledDFA compiled) {
+        this.compiled = compiled;
     }
 
 
@@ -171,6 +414,13 @@ public class DFA implements DFAInterface {
      */
     @Override
     public Set<Character> getSigma() {
+        if (source != null) {
+            Set<Character> sigma = new LinkedHashSet<>();
+            for (char symbol : source.symbols) {
+                sigma.add(symbol);
+            }
+            return sigma;
+        }
         return new LinkedHashSet<>(alphabet);
     }
 
@@ -179,12 +429,10 @@ public class DFA implements DFAInterface {
      */
     @Override
     public State getState(String name) {
-        for (DFAState state : states) {
-            if (state.getName().equals(name)) {
-                return state;
-            }
-        }
-        return null;
+        // Callers can change the state returned, so the copy must be made first
+        materialize();
+        // States are kept in insertion order in states and indexed by name here
+        return stateIndex.get(name);
     }
 
     /**
@@ -192,6 +440,7 @@ public class DFA implements DFAInterface {
      */
     @Override
     public boolean isFinal(String name) {
+        materialize();
         return finalStates.contains(getState(name));
     }
 
@@ -200,6 +449,9 @@ public class DFA implements DFAInterface {
      */
     @Override
     public boolean isStart(String name) {
+        if (source != null) {
+            return source.start != source.sink && source.names[source.start].equals(name);
+        }
         return startState != null && startState.getName().equals(name);
     }
 
@@ -208,6 +460,9 @@ public class DFA implements DFAInterface {
      */
     @Override
     public String toString() {
+        if (source != null) {
+            return source.toString();
+        }
         StringBuilder sb = new StringBuilder();
 
         // Print states in the order they were added
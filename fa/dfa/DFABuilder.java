@@ -0,0 +1,269 @@
+package fa.dfa;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Builds a {@link DFA} in bulk. States are referred to by the integer id
+ * returned when they are added, and transitions can be given one at a
+ * time, a whole row (every symbol from one state) or a whole column (one
+ * symbol from every state) at a time. Nothing is looked up by name, and
+ * the whole automaton is validated once when it is built.
+ *
+ * The alphabet is fixed when the builder is created. A missing transition
+ * is represented by -1, just like a missing entry in the DFA's delta table.
+ */
+public class DFABuilder {
+    /** Marks a missing transition. */
+    public static final int NONE = -1;
+
+    private final char[] symbols;
+    private final int[] indexOf;
+    private String[] names;
+    private int stateCount;
+    private int[] delta;
+    private int start;
+    private boolean[] finals;
+    private int[] finalOrder;
+    private int finalCount;
+
+    /**
+     * Creates a new DFABuilder over an alphabet.
+     *
+     * @param sigma the symbols of the alphabet, in the order they should
+     * be added to the DFA.
+     * @throws IllegalArgumentException if a symbol appears more than once.
+     */
+    public DFABuilder(char... sigma) {
+        symbols = sigma.clone();
+        int maxSymbol = -1;
+        for (char symbol : symbols) {
+            maxSymbol = Math.max(maxSymbol, symbol);
+        }
+        indexOf = new int[maxSymbol + 1];
+        Arrays.fill(indexOf, NONE);
+        for (int i = 0; i < symbols.length; i++) {
+            if (indexOf[symbols[i]] != NONE) {
+                throw new IllegalArgumentException("Duplicate symbol " + symbols[i]);
+            }
+            indexOf[symbols[i]] = i;
+        }
+        names = new String[16];
+        delta = new int[16 * symbols.length];
+        finals = new boolean[16];
+        finalOrder = new int[16];
+        start = NONE;
+    }
+
+    /**
+     * Adds a state with no transitions.
+     *
+     * @param name the label of the state.
+     * @return the id of the new state.
+     */
+    public int addState(String name) {
+        ensureCapacity(stateCount + 1);
+        names[stateCount] = name;
+        Arrays.fill(delta, stateCount * symbols.length, (stateCount + 1) * symbols.length, NONE);
+        return stateCount++;
+    }
+
+    /**
+     * Adds several states with no transitions.
+     *
+     * @param names the labels of the states.
+     * @return the id of the first new state, the others follow consecutively.
+     */
+    public int addStates(String... names) {
+        int first = stateCount;
+        ensureCapacity(stateCount + names.length);
+        for (String name : names) {
+            addState(name);
+        }
+        return first;
+    }
+
+    /**
+     * Sets the start state.
+     *
+     * @param state the id of the start state.
+     * @return this builder.
+     */
+    public DFABuilder setStart(int state) {
+        checkState(state);
+        start = state;
+        return this;
+    }
+
+    /**
+     * Marks states as final. The final states are listed in the
+     * order they were first marked.
+     *
+     * @param states the ids of the final states.
+     * @return this builder.
+     */
+    public DFABuilder setFinal(int... states) {
+        for (int state : states) {
+            checkState(state);
+            if (!finals[state]) {
+                finals[state] = true;
+                finalOrder[finalCount++] = state;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Sets a single transition.
+     *
+     * @param fromState the id of the state where the transition starts.
+     * @param toState the id of the state where the transition ends, or
+     * {@link #NONE} to remove the transition.
+     * @param onSymb the symbol to transition on.
+     * @return this builder.
+     */
+    public DFABuilder addTransition(int fromState, int toState, char onSymb) {
+        checkState(fromState);
+        delta[fromState * symbols.length + symbolIndex(onSymb)] = toState;
+        return this;
+    }
+
+    /**
+     * Sets every transition out of a state.
+     *
+     * @param fromState the id of the state where the transitions start.
+     * @param toStates the ids of the states reached on each symbol, in
+     * alphabet order, {@link #NONE} for a missing transition.
+     * @return this builder.
+     */
+    public DFABuilder setRow(int fromState, int... toStates) {
+        checkState(fromState);
+        if (toStates.length != symbols.length) {
+            throw new IllegalArgumentException("Expected " + symbols.length + " transitions but got "
+                    + toStates.length);
+        }
+        System.arraycopy(toStates, 0, delta, fromState * symbols.length, symbols.length);
+        return this;
+    }
+
+    /**
+     * Sets the transitions on a symbol out of the first states.
+     *
+     * @param onSymb the symbol to transition on.
+     * @param toStates the id of the state reached from state i at index i,
+     * {@link #NONE} for a missing transition.
+     * @return this builder.
+     */
+    public DFABuilder setColumn(char onSymb, int... toStates) {
+        if (toStates.length > stateCount) {
+            throw new IllegalArgumentException("Expected at most " + stateCount + " transitions but got "
+                    + toStates.length);
+        }
+        int column = symbolIndex(onSymb);
+        for (int i = 0; i < toStates.length; i++) {
+            delta[i * symbols.length + column] = toStates[i];
+        }
+        return this;
+    }
+
+    /**
+     * Validates the automaton and creates a DFA from it. The DFA is
+     * created already compiled, so its first accepts call does not
+     * have to build the transition table. The builder can keep being
+     * used afterwards without affecting the DFA.
+     *
+     * @return the new DFA.
+     * @throws IllegalStateException if a state name is null or used twice,
+     * or a transition leads to a state that does not exist.
+     */
+    public DFA build() {
+        validate();
+        DFA dfa = new DFA();
+        for (char symbol : symbols) {
+            dfa.addSigma(symbol);
+        }
+        DFAState[] states = dfa.addStates(Arrays.copyOf(names, stateCount));
+        for (int from = 0; from < stateCount; from++) {
+            int row = from * symbols.length;
+            for (int i = 0; i < symbols.length; i++) {
+                int to = delta[row + i];
+                if (to != NONE) {
+                    states[from].setTransition(states[to], symbols[i]);
+                }
+            }
+        }
+        if (start != NONE) {
+            dfa.markStart(states[start]);
+        }
+        for (int i = 0; i < finalCount; i++) {
+            dfa.markFinal(states[finalOrder[i]]);
+        }
+        dfa.setCompiled(compile());
+        return dfa;
+    }
+
+    /**
+     * Validates the automaton and creates an immutable snapshot of it,
+     * without creating the state objects of a mutable DFA.
+     *
+     * @return the new frozen DFA.
+     * @throws IllegalStateException if a state name is null or used twice,
+     * or a transition leads to a state that does not exist.
+     */
+    public FrozenDFA freeze() {
+        validate();
+        return new FrozenDFA(compile());
+    }
+
+    /**
+     * Compiles the current contents of the builder.
+     */
+    CompiledDFA compile() {
+        return CompiledDFA.of(symbols, names, stateCount, delta, start,
+                Arrays.copyOf(finalOrder, finalCount));
+    }
+
+    /**
+     * Checks that every state has a unique name and every transition
+     * leads to an existing state.
+     */
+    private void validate() {
+        Set<String> seen = new HashSet<>(stateCount * 2);
+        for (int state = 0; state < stateCount; state++) {
+            if (names[state] == null || !seen.add(names[state])) {
+                throw new IllegalStateException("State " + state + " has a null or duplicate name "
+                        + names[state]);
+            }
+        }
+        for (int i = 0, n = stateCount * symbols.length; i < n; i++) {
+            if (delta[i] < NONE || delta[i] >= stateCount) {
+                throw new IllegalStateException("Transition from state " + (i / symbols.length) + " on "
+                        + symbols[i % symbols.length] + " leads to unknown state " + delta[i]);
+            }
+        }
+    }
+
+    private int symbolIndex(char symbol) {
+        if (symbol < indexOf.length && indexOf[symbol] != NONE) {
+            return indexOf[symbol];
+        }
+        throw new IllegalArgumentException("Symbol " + symbol + " is not in Sigma");
+    }
+
+    private void checkState(int state) {
+        if (state < 0 || state >= stateCount) {
+            throw new IllegalArgumentException("Unknown state " + state);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > names.length) {
+            int newLength = Math.max(capacity, names.length * 2);
+            names = Arrays.copyOf(names, newLength);
+            finals = Arrays.copyOf(finals, newLength);
+            finalOrder = Arrays.copyOf(finalOrder, newLength);
+            delta = Arrays.copyOf(delta, newLength * symbols.length);
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package fa.dfa;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads and writes DFAs in a compact binary format, so an automaton can
+ * be stored once and loaded without being rebuilt state by state.
+ *
+ * A file starts with a header of eight big-endian ints: the magic number,
+ * the format version, the size of Sigma, the number of states, the number
+ * of columns, the start state, the number of final states and the length
+ * of the names section. It is followed by these sections, in order:
+ * <ol>
+ * <li>Sigma in insertion order, one int per symbol.</li>
+ * <li>The column of each symbol of Sigma, one int per symbol.</li>
+ * <li>The flat transition table, one row of ints per state, sink included.</li>
+ * <li>The bitset of the final states, as longs.</li>
+ * <li>The final states in the order they were marked final, as ints.</li>
+ * <li>The kind of each state (normal, dead or universal), one byte per
+ * state, padded to a multiple of four bytes. {@link #read(Path)} works
+ * the kinds out again from the table; only {@link #map(Path)} uses
+ * them.</li>
+ * <li>The offset of the name of each state in the names section, as
+ * ints, followed by the length of the names section.</li>
+ * <li>The names of the states, encoded in UTF-8.</li>
+ * </ol>
+ * The transition table is mapped or read as a single buffer, so it can
+ * take at most 2^31 - 1 bytes, that is (states + 1) · columns must stay
+ * below 2^29; files with a larger table are rejected.
+ *
+ * Since the transition table is stored exactly as it is simulated, a file
+ * can be memory-mapped with {@link #map(Path)} and matched against right
+ * away, without reading it into the heap.
+ */
+public final class DFAFormat {
+    /** The first four bytes of every file, "DFA1". */
+    static final int MAGIC = 0x44464131;
+    /** The version written by this class. */
+    static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8 * Integer.BYTES;
+    /** The most bytes in the transition table, the most a buffer can hold. */
+    private static final int MAX_TABLE_BYTES = Integer.MAX_VALUE;
+
+    private DFAFormat() {
+    }
+
+    /**
+     * Writes a DFA to a file, replacing the file if it exists.
+     *
+     * @param dfa the DFA to write.
+     * @param file the file to write to.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(DFAInterface dfa, Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            write(dfa, out);
+        }
+    }
+
+    /**
+     * Writes a DFA to a stream. The stream is flushed but not closed.
+     *
+     * @param dfa the DFA to write.
+     * @param out the stream to write to.
+     * @throws IOException if the stream cannot be written.
+     */
+    public static void write(DFAInterface dfa, OutputStream out) throws IOException {
+        CompiledDFA compiled = CompiledDFA.from(dfa);
+        byte[][] names = new byte[compiled.sink][];
+        int namesLength = 0;
+        for (int state = 0; state < compiled.sink; state++) {
+            names[state] = compiled.names[state].getBytes(StandardCharsets.UTF_8);
+            namesLength += names[state].length;
+        }
+
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(compiled.symbols.length);
+        data.writeInt(compiled.sink);
+        data.writeInt(compiled.stride);
+        data.writeInt(compiled.start);
+        data.writeInt(compiled.finalOrder.length);
+        data.writeInt(namesLength);
+        for (char symbol : compiled.symbols) {
+            data.writeInt(symbol);
+        }
+        for (char symbol : compiled.symbols) {
+            data.writeInt(compiled.column(symbol));
+        }
+        for (int entry : compiled.table) {
+            data.writeInt(entry);
+        }
+        for (int i = 0, words = finalWords(compiled.sink); i < words; i++) {
+            data.writeLong(compiled.finals[i]);
+        }
+        for (int state : compiled.finalOrder) {
+            data.writeInt(state);
+        }
+        data.write(compiled.kind);
+        for (int i = compiled.kind.length; i < padded(compiled.kind.length); i++) {
+            data.writeByte(0);
+        }
+        int offset = 0;
+        for (byte[] name : names) {
+            data.writeInt(offset);
+            offset += name.length;
+        }
+        data.writeInt(offset);
+        for (byte[] name : names) {
+            data.write(name);
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads a DFA from a file into the heap.
+     *
+     * @param file the file to read.
+     * @return the DFA, which is immutable.
+     * @throws IOException if the file cannot be read or is not a valid DFA file.
+     */
+    public static FrozenDFA read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new FrozenDFA(restore(Sections.map(channel)));
+        }
+    }
+
+    /**
+     * Reads a DFA from a stream into the heap. The stream is read to
+     * its end but not closed.
+     *
+     * @param in the stream to read.
+     * @return the DFA, which is immutable.
+     * @throws IOException if the stream cannot be read or does not hold a valid DFA.
+     */
+    public static FrozenDFA read(InputStream in) throws IOException {
+        return new FrozenDFA(restore(Sections.wrap(ByteBuffer.wrap(in.readAllBytes()))));
+    }
+
+    /**
+     * Memory-maps a DFA file. Only the header and Sigma are checked and
+     * nothing but Sigma is copied into the heap, so even a very large DFA is ready to
+     * match as soon as this returns. The file must not be changed while
+     * it is mapped.
+     *
+     * @param file the file to map.
+     * @return the mapped DFA.
+     * @throws IOException if the file cannot be mapped or does not start
+     * with a valid header.
+     */
+    public static MappedDFA map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new MappedDFA(Sections.map(channel));
+        }
+    }
+
+    /**
+     * Copies the sections of a DFA file into a compiled DFA, checking
+     * that every state id in them is in range, that the sink and the
+     * column of symbols outside Sigma lead only to the sink, and that
+     * the final states agree with their order. The kinds of the states
+     * in the file are not trusted but classified again from the table.
+     *
+     * @param sections the sections of the file.
+     * @return the compiled DFA.
+     * @throws IOException if a section holds an invalid value.
+     */
+    static CompiledDFA restore(Sections sections) throws IOException {
+        int sink = sections.stateCount;
+        char[] symbols = sections.symbols();
+        int[] columns = new int[symbols.length];
+        sections.columns.get(0, columns);
+        for (int column : columns) {
+            check(column >= 0 && column < sections.stride, "column " + column);
+        }
+        int[] table = new int[sections.table.limit()];
+        sections.table.get(0, table);
+        for (int entry : table) {
+            check(entry >= 0 && entry <= sink, "transition to " + entry);
+        }
+        for (int row = 0; row < table.length; row += sections.stride) {
+            check(table[row + CompiledDFA.REJECT_COLUMN] == sink, "transition outside Sigma");
+        }
+        for (int entry = sink * sections.stride; entry < table.length; entry++) {
+            check(table[entry] == sink, "transition out of the sink");
+        }
+        long[] finals = new long[sections.finals.limit()];
+        sections.finals.get(0, finals);
+        int[] finalOrder = new int[sections.finalOrder.limit()];
+        sections.finalOrder.get(0, finalOrder);
+        long[] ordered = new long[finals.length];
+        for (int state : finalOrder) {
+            check(state >= 0 && state < sink, "final state " + state);
+            check((ordered[state >>> 6] & (1L << state)) == 0, "repeated final state " + state);
+            ordered[state >>> 6] |= 1L << state;
+        }
+        check(Arrays.equals(finals, ordered), "final states");
+        String[] names = new String[sink];
+        for (int state = 0; state < sink; state++) {
+            names[state] = sections.name(state);
+        }
+        return CompiledDFA.restore(symbols, columns, sections.stride, table, sections.start, sink,
+                finals, names, finalOrder);
+    }
+
+    private static void check(boolean valid, String what) throws IOException {
+        if (!valid) {
+            throw new IOException("Invalid DFA file: bad " + what);
+        }
+    }
+
+    private static int finalWords(int sink) {
+        return (sink + 1 + 63) >>> 6;
+    }
+
+    private static int padded(int length) {
+        return (length + 3) & ~3;
+    }
+
+    /**
+     * The sections of a DFA file, each as a buffer of its own.
+     */
+    static final class Sections {
+        final int stateCount;
+        final int stride;
+        final int start;
+        final IntBuffer symbols;
+        final IntBuffer columns;
+        final IntBuffer table;
+        final LongBuffer finals;
+        final IntBuffer finalOrder;
+        final ByteBuffer kinds;
+        final IntBuffer nameOffsets;
+        final ByteBuffer names;
+
+        private Sections(ByteBuffer header, SectionSource source) throws IOException {
+            check(header.getInt(0) == MAGIC, "magic number");
+            int version = header.getInt(4);
+            if (version != VERSION) {
+                throw new IOException("Unsupported DFA file version " + version);
+            }
+            int symbolCount = header.getInt(8);
+            stateCount = header.getInt(12);
+            stride = header.getInt(16);
+            start = header.getInt(20);
+            int finalCount = header.getInt(24);
+            int namesLength = header.getInt(28);
+            check(symbolCount >= 0 && symbolCount <= Character.MAX_VALUE + 1, "Sigma size");
+            check(stateCount >= 0 && stateCount < Integer.MAX_VALUE, "state count");
+            check(stride >= 1 && stride <= symbolCount + 1, "column count");
+            check(start >= 0 && start <= stateCount, "start state " + start);
+            check(finalCount >= 0 && finalCount <= stateCount, "final count");
+            check(namesLength >= 0, "names length");
+            if (4L * (stateCount + 1) * stride > MAX_TABLE_BYTES) {
+                throw new IOException("Invalid DFA file: table too large, " + (stateCount + 1L) * stride
+                        + " entries");
+            }
+
+            long position = HEADER_SIZE;
+            symbols = source.get(position, 4L * symbolCount).asIntBuffer();
+            position += 4L * symbolCount;
+            boolean[] seen = new boolean[Character.MAX_VALUE + 1];
+            for (int i = 0; i < symbolCount; i++) {
+                int symbol = symbols.get(i);
+                check(symbol >= 0 && symbol <= Character.MAX_VALUE, "symbol " + symbol);
+                check(!seen[symbol], "repeated symbol " + symbol);
+                seen[symbol] = true;
+            }
+            columns = source.get(position, 4L * symbolCount).asIntBuffer();
+            position += 4L * symbolCount;
+            table = source.get(position, 4L * (stateCount + 1) * stride).asIntBuffer();
+            position += 4L * (stateCount + 1) * stride;
+            finals = source.get(position, 8L * finalWords(stateCount)).asLongBuffer();
+            position += 8L * finalWords(stateCount);
+            finalOrder = source.get(position, 4L * finalCount).asIntBuffer();
+            position += 4L * finalCount;
+            kinds = source.get(position, stateCount + 1);
+            position += padded(stateCount + 1);
+            nameOffsets = source.get(position, 4L * (stateCount + 1)).asIntBuffer();
+            position += 4L * (stateCount + 1);
+            names = source.get(position, namesLength);
+        }
+
+        /**
+         * Maps every section of a file.
+         */
+        static Sections map(FileChannel channel) throws IOException {
+            long size = channel.size();
+            SectionSource source = (position, length) -> {
+                check(position + length <= size, "file length " + size);
+                return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            };
+            return new Sections(source.get(0, HEADER_SIZE), source);
+        }
+
+        /**
+         * Slices every section out of a buffer holding a whole file.
+         */
+        static Sections wrap(ByteBuffer file) throws IOException {
+            SectionSource source = (position, length) -> {
+                check(position + length <= file.limit(), "file length " + file.limit());
+                return file.slice((int) position, (int) length);
+            };
+            return new Sections(source.get(0, HEADER_SIZE), source);
+        }
+
+        char[] symbols() {
+            char[] sigma = new char[symbols.limit()];
+            for (int i = 0; i < sigma.length; i++) {
+                sigma[i] = (char) symbols.get(i);
+            }
+            return sigma;
+        }
+
+        String name(int state) throws IOException {
+            int from = nameOffsets.get(state);
+            int to = nameOffsets.get(state + 1);
+            check(from >= 0 && from <= to && to <= names.limit(), "name of state " + state);
+            byte[] bytes = new byte[to - from];
+            names.get(from, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Gets the bytes [position, position + length) of a file.
+     */
+    @FunctionalInterface
+    private interface SectionSource {
+        ByteBuffer get(long position, long length) throws IOException;
+    }
+}
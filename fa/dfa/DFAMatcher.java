@@ -0,0 +1,127 @@
+package fa.dfa;
+
+import java.nio.CharBuffer;
+
+/**
+ * Simulates a DFA on input that arrives in pieces. A DFAMatcher keeps
+ * track of the current state between calls to feed, so the input never
+ * has to be buffered as a whole, and can tell at any point whether the
+ * input seen so far is accepted or can no longer be accepted.
+ *
+ * A DFAMatcher works on the DFA as it was when the matcher was created
+ * and does not allocate after creation, so it can be reset and reused.
+ * A single DFAMatcher must not be shared between threads.
+ */
+public final class DFAMatcher {
+    private final CompiledDFA compiled;
+    private int state;
+
+    /**
+     * Creates a new DFAMatcher in the start state.
+     *
+     * @param compiled the DFA to simulate.
+     */
+    DFAMatcher(CompiledDFA compiled) {
+        this.compiled = compiled;
+        this.state = startState();
+    }
+
+    /**
+     * Feeds one symbol to the DFA.
+     *
+     * @param symbol the next input symbol.
+     * @return false if the input can no longer be accepted.
+     */
+    public boolean feed(char symbol) {
+        if (state != compiled.sink) {
+            state = compiled.next(state, symbol);
+        }
+        return state != compiled.sink;
+    }
+
+    /**
+     * Feeds part of a buffer to the DFA.
+     *
+     * @param buf the buffer holding the input.
+     * @param off the index of the first symbol to feed.
+     * @param len the number of symbols to feed.
+     * @return false if the input can no longer be accepted.
+     * @throws IndexOutOfBoundsException if off and len are not a range of buf.
+     */
+    public boolean feed(char[] buf, int off, int len) {
+        if (off < 0 || len < 0 || len > buf.length - off) {
+            throw new IndexOutOfBoundsException("Range [" + off + ", " + off + " + " + len
+                    + ") out of bounds for length " + buf.length);
+        }
+        state = compiled.run(state, buf, off, off + len);
+        return state != compiled.sink;
+    }
+
+    /**
+     * Feeds the remaining symbols of a buffer to the DFA. The position
+     * of the buffer is moved to its limit.
+     *
+     * @param buf the buffer holding the input.
+     * @return false if the input can no longer be accepted.
+     */
+    public boolean feed(CharBuffer buf) {
+        if (buf.hasArray()) {
+            int from = buf.arrayOffset() + buf.position();
+            state = compiled.run(state, buf.array(), from, from + buf.remaining());
+            buf.position(buf.limit());
+        } else {
+            while (buf.hasRemaining() && state != compiled.sink) {
+                state = compiled.next(state, buf.get());
+            }
+            buf.position(buf.limit());
+        }
+        return state != compiled.sink;
+    }
+
+    /**
+     * Feeds a string to the DFA.
+     *
+     * @param s the input string.
+     * @return false if the input can no longer be accepted.
+     */
+    public boolean feed(CharSequence s) {
+        state = compiled.run(state, s, 0, s.length());
+        return state != compiled.sink;
+    }
+
+    /**
+     * Determines if the DFA accepts the input fed so far.
+     *
+     * @return true if the current state is final.
+     */
+    public boolean isAccepting() {
+        return compiled.isFinal(state);
+    }
+
+    /**
+     * Determines if the input fed so far can no longer be accepted,
+     * because it contained a symbol outside of Sigma or a symbol
+     * without a transition, or led to a state from which no final
+     * state can be reached.
+     *
+     * @return true if no further input can lead to a final state.
+     */
+    public boolean isDead() {
+        return state == compiled.sink;
+    }
+
+    /**
+     * Moves the matcher back to the start state, so it can be used
+     * on a new input.
+     *
+     * @return this matcher.
+     */
+    public DFAMatcher reset() {
+        state = startState();
+        return this;
+    }
+
+    private int startState() {
+        return compiled.isDead(compiled.start) ? compiled.sink : compiled.start;
+    }
+}
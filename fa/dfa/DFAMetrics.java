@@ -0,0 +1,135 @@
+package fa.dfa;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A snapshot of the counters of an {@link InstrumentedDFA}, taken by
+ * {@link InstrumentedDFA#metrics()}. A DFAMetrics never changes after it
+ * is taken. Counters that are updated while the snapshot is taken may or
+ * may not be included, but every counter is read exactly once.
+ */
+public final class DFAMetrics {
+    /**
+     * Why an input was rejected.
+     */
+    public enum RejectReason {
+        /** The input holds a symbol that is not in Sigma. */
+        SYMBOL_NOT_IN_SIGMA,
+        /** A transition on a symbol of Sigma, or the start state, is missing. */
+        MISSING_TRANSITION,
+        /** The whole input was read, but the DFA did not end in a final state. */
+        NOT_FINAL,
+        /** The input was null, so nothing was read. */
+        NULL_INPUT
+    }
+
+    /** The number of latency buckets, see {@link #latencyHistogram()}. */
+    public static final int LATENCY_BUCKETS = 64;
+
+    private final long accepted;
+    private final long[] rejected;
+    private final Map<String, Long> stateVisits;
+    private final Map<Character, Long> symbolCounts;
+    private final long[] latency;
+
+    DFAMetrics(long accepted, long[] rejected, Map<String, Long> stateVisits,
+            Map<Character, Long> symbolCounts, long[] latency) {
+        this.accepted = accepted;
+        this.rejected = rejected;
+        this.stateVisits = Collections.unmodifiableMap(new LinkedHashMap<>(stateVisits));
+        this.symbolCounts = Collections.unmodifiableMap(new LinkedHashMap<>(symbolCounts));
+        this.latency = latency;
+    }
+
+    /**
+     * Gets the number of inputs that were accepted.
+     *
+     * @return the number of accepted inputs.
+     */
+    public long acceptedCount() {
+        return accepted;
+    }
+
+    /**
+     * Gets the number of inputs that were rejected for a reason.
+     *
+     * @param reason the reason.
+     * @return the number of inputs rejected for that reason.
+     */
+    public long rejectedCount(RejectReason reason) {
+        return rejected[reason.ordinal()];
+    }
+
+    /**
+     * Gets the number of inputs that were rejected for any reason.
+     *
+     * @return the number of rejected inputs.
+     */
+    public long rejectedCount() {
+        long total = 0;
+        for (long count : rejected) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Gets how many times each state was entered, counting the start
+     * state once per input.
+     *
+     * @return the visits of every state, in the order of Q.
+     */
+    public Map<String, Long> stateVisits() {
+        return stateVisits;
+    }
+
+    /**
+     * Gets how many transitions were taken on each symbol. A transition
+     * is counted when it is taken, even if it is missing.
+     *
+     * @return the transitions on every symbol, in the order of Sigma.
+     */
+    public Map<Character, Long> symbolCounts() {
+        return symbolCounts;
+    }
+
+    /**
+     * Gets the histogram of the time taken by each call to accepts.
+     * Bucket i counts the calls that took from 2^i up to 2^(i+1)
+     * nanoseconds, except that bucket 0 also counts the calls that took
+     * no measurable time.
+     *
+     * @return a copy of the {@link #LATENCY_BUCKETS} buckets.
+     */
+    public long[] latencyHistogram() {
+        return latency.clone();
+    }
+
+    /**
+     * Gets the bucket of the latency histogram that a duration falls in.
+     *
+     * @param nanos the duration in nanoseconds.
+     * @return the index of the bucket.
+     */
+    static int latencyBucket(long nanos) {
+        return nanos <= 1 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+    }
+
+    /**
+     * Construct the textual representation of the metrics.
+     *
+     * @return String representation of the metrics
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("accepted = ").append(accepted).append("\n");
+        for (RejectReason reason : RejectReason.values()) {
+            sb.append(reason).append(" = ").append(rejected[reason.ordinal()]).append("\n");
+        }
+        sb.append("visits = ").append(stateVisits).append("\n");
+        sb.append("symbols = ").append(symbolCounts);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,381 @@
+package fa.dfa;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads a DFA back from the textual format of {@link DFAInterface#toString()}:
+ * <pre>
+ * Q = { a b }
+ * Sigma = { 0 1 }
+ * delta =
+ *         0       1
+ * a       a       b
+ * b       -       a
+ * q0 = a
+ * F = { b }
+ * </pre>
+ * Tokens are separated by whitespace, so the exact spacing does not
+ * matter, and "-" stands for a missing transition or start state. The
+ * rows of delta may come in any order, and the header row of delta may
+ * list Sigma in any order.
+ *
+ * The input is read once, in pieces, and state names are looked up in a
+ * hash table directly from the input buffer, so parsing takes linear time
+ * and does not create a string for every transition.
+ */
+public final class DFAParser {
+    private static final String MISSING = "-";
+
+    private final Reader reader;
+    private char[] buf;
+    private int pos;
+    private int limit;
+    private int line = 1;
+    /** The bounds of the current token in buf. */
+    private int tokenStart;
+    private int tokenEnd;
+
+    private DFAParser(Reader reader, char[] buf, int limit) {
+        this.reader = reader;
+        this.buf = buf;
+        this.limit = limit;
+    }
+
+    /**
+     * Parses a DFA from a reader. The reader is read to its end but not
+     * closed.
+     *
+     * @param reader the text of the DFA.
+     * @return the DFA.
+     * @throws IOException if the reader fails or the text is not a valid DFA.
+     */
+    public static DFA parse(Reader reader) throws IOException {
+        return new DFAParser(reader, new char[1 << 16], 0).parse().build();
+    }
+
+    /**
+     * Parses a DFA from a file in UTF-8, which is memory-mapped and
+     * decoded in one go.
+     *
+     * @param file the file holding the text of the DFA.
+     * @return the DFA.
+     * @throws IOException if the file cannot be read or is not a valid DFA.
+     */
+    public static DFA parse(Path file) throws IOException {
+        CharBuffer text;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            text = StandardCharsets.UTF_8.decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+        char[] chars = text.hasArray() && text.arrayOffset() == 0 ? text.array() : text.toString().toCharArray();
+        return new DFAParser(null, chars, text.remaining()).parse().build();
+    }
+
+    /**
+     * Parses the whole input into a builder.
+     */
+    private DFABuilder parse() throws IOException {
+        expect("Q");
+        expect("=");
+        expect("{");
+        NameTable ids = new NameTable();
+        String[] names = new String[16];
+        int stateCount = 0;
+        while (next() && !is("}")) {
+            String name = token();
+            if (name.equals(MISSING) || ids.put(name, stateCount) != NameTable.MISSING) {
+                throw error("Invalid or duplicate state " + name);
+            }
+            if (stateCount == names.length) {
+                names = Arrays.copyOf(names, stateCount * 2);
+            }
+            names[stateCount++] = name;
+        }
+        requireToken("}");
+
+        expect("Sigma");
+        expect("=");
+        expect("{");
+        StringBuilder sigma = new StringBuilder();
+        while (next() && !is("}")) {
+            if (tokenEnd - tokenStart != 1 || sigma.indexOf(token()) >= 0) {
+                throw error("Invalid or duplicate symbol " + token());
+            }
+            sigma.append(buf[tokenStart]);
+        }
+        requireToken("}");
+        char[] symbols = sigma.toString().toCharArray();
+
+        expect("delta");
+        expect("=");
+        int[] order = new int[symbols.length];
+        boolean[] inHeader = new boolean[symbols.length];
+        for (int i = 0; i < symbols.length; i++) {
+            requireNext("a symbol of Sigma");
+            int index = tokenEnd - tokenStart == 1 ? sigma.indexOf(token()) : -1;
+            if (index < 0) {
+                throw error("Expected a symbol of Sigma but got " + token());
+            }
+            if (inHeader[index]) {
+                throw error("Duplicate symbol " + token());
+            }
+            inHeader[index] = true;
+            order[i] = index;
+        }
+
+        DFABuilder builder = new DFABuilder(symbols);
+        builder.addStates(Arrays.copyOf(names, stateCount));
+        boolean[] seen = new boolean[stateCount];
+        int[] row = new int[symbols.length];
+        for (int r = 0; r < stateCount; r++) {
+            requireNext("a state");
+            int from = lookup(ids);
+            if (from == DFABuilder.NONE || seen[from]) {
+                throw error("Unknown or repeated row " + token());
+            }
+            seen[from] = true;
+            for (int i = 0; i < symbols.length; i++) {
+                requireNext("a state or " + MISSING);
+                row[order[i]] = lookup(ids);
+            }
+            builder.setRow(from, row);
+        }
+
+        expect("q0");
+        expect("=");
+        requireNext("a state or " + MISSING);
+        int start = lookup(ids);
+        if (start != DFABuilder.NONE) {
+            builder.setStart(start);
+        }
+
+        expect("F");
+        expect("=");
+        expect("{");
+        while (next() && !is("}")) {
+            int state = lookup(ids);
+            if (state == DFABuilder.NONE) {
+                throw error("Unknown final state " + token());
+            }
+            builder.setFinal(state);
+        }
+        requireToken("}");
+        if (next()) {
+            throw error("Unexpected " + token() + " after F");
+        }
+        return builder;
+    }
+
+    /**
+     * Looks up the current token, which may be {@link #MISSING}.
+     */
+    private int lookup(NameTable ids) throws IOException {
+        if (is(MISSING)) {
+            return DFABuilder.NONE;
+        }
+        int id = ids.get(buf, tokenStart, tokenEnd - tokenStart);
+        if (id == NameTable.MISSING) {
+            throw error("Unknown state " + token());
+        }
+        return id;
+    }
+
+    /**
+     * Moves to the next token. At the end of the input the current token
+     * becomes empty.
+     *
+     * @return false at the end of the input.
+     */
+    private boolean next() throws IOException {
+        while (true) {
+            if (pos == limit && !fill(0)) {
+                tokenStart = tokenEnd = pos;
+                return false;
+            }
+            char c = buf[pos];
+            if (!Character.isWhitespace(c)) {
+                break;
+            }
+            if (c == '\n') {
+                line++;
+            }
+            pos++;
+        }
+        tokenStart = pos;
+        while (true) {
+            if (pos == limit) {
+                // Keep the token in the buffer while more input is read
+                boolean more = fill(pos - tokenStart);
+                tokenStart = 0;
+                if (!more) {
+                    break;
+                }
+            }
+            if (Character.isWhitespace(buf[pos])) {
+                break;
+            }
+            pos++;
+        }
+        tokenEnd = pos;
+        return true;
+    }
+
+    /**
+     * Reads more input once the buffer is used up, moving its last keep
+     * chars to its beginning, or growing it if they fill it.
+     *
+     * @param keep the number of chars of a token that is being read.
+     * @return false at the end of the input.
+     */
+    private boolean fill(int keep) throws IOException {
+        if (keep == buf.length) {
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        } else {
+            System.arraycopy(buf, limit - keep, buf, 0, keep);
+        }
+        pos = keep;
+        limit = keep;
+        int read = reader == null ? -1 : reader.read(buf, limit, buf.length - limit);
+        if (read <= 0) {
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+
+    private void expect(String word) throws IOException {
+        requireNext(word);
+        requireToken(word);
+    }
+
+    private void requireNext(String what) throws IOException {
+        if (!next()) {
+            throw error("Expected " + what + " but the input ended");
+        }
+    }
+
+    private void requireToken(String word) throws IOException {
+        if (tokenStart == tokenEnd) {
+            throw error("Expected " + word + " but the input ended");
+        }
+        if (!is(word)) {
+            throw error("Expected " + word + " but got " + token());
+        }
+    }
+
+    private boolean is(String word) {
+        int length = tokenEnd - tokenStart;
+        if (length != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buf[tokenStart + i] != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String token() {
+        return new String(buf, tokenStart, tokenEnd - tokenStart);
+    }
+
+    private IOException error(String message) {
+        return new IOException("Line " + line + ": " + message);
+    }
+
+    /**
+     * Open-addressing hash table from state names to ids that can be
+     * searched with a range of a char array.
+     */
+    private static final class NameTable {
+        static final int MISSING = -1;
+
+        private String[] keys = new String[64];
+        private int[] values = new int[64];
+        private int size;
+
+        /**
+         * Adds a name unless it is already in the table.
+         *
+         * @return the id the name already had, or {@link #MISSING}.
+         */
+        int put(String name, int id) {
+            char[] chars = name.toCharArray();
+            int existing = get(chars, 0, chars.length);
+            if (existing != MISSING) {
+                return existing;
+            }
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+            insert(name, id);
+            return MISSING;
+        }
+
+        int get(char[] buf, int off, int len) {
+            int mask = keys.length - 1;
+            for (int i = hash(buf, off, len) & mask; keys[i] != null; i = (i + 1) & mask) {
+                if (matches(keys[i], buf, off, len)) {
+                    return values[i];
+                }
+            }
+            return MISSING;
+        }
+
+        private void insert(String name, int id) {
+            int mask = keys.length - 1;
+            int i = spread(name.hashCode()) & mask;
+            while (keys[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = name;
+            values[i] = id;
+        }
+
+        private void grow() {
+            String[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new String[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    insert(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        /**
+         * Hashes a range of chars the same way {@link String#hashCode()} does.
+         */
+        private static int hash(char[] buf, int off, int len) {
+            int h = 0;
+            for (int i = off; i < off + len; i++) {
+                h = 31 * h + buf[i];
+            }
+            return spread(h);
+        }
+
+        private static int spread(int h) {
+            return h ^ (h >>> 16);
+        }
+
+        private static boolean matches(String key, char[] buf, int off, int len) {
+            if (key.length() != len) {
+                return false;
+            }
+            for (int i = 0; i < len; i++) {
+                if (key.charAt(i) != buf[off + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package fa.dfa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the substrings of a text that a DFA accepts, like grep does for a
+ * regular expression.
+ *
+ * Matches are found in a single pass over the text by an unanchored search
+ * automaton built on top of the DFA. A state of the search automaton is the
+ * list of DFA states reached from every position a match could still start
+ * at, oldest start first, where a later start that reaches the same state
+ * as an earlier one is dropped since it can only lead to a match further to
+ * the right. These lists only depend on the DFA, so they are created the
+ * first time they are reached and reused for every later search.
+ *
+ * While no match is in progress, the searcher skips ahead to the next
+ * position that can start a match: the next occurrence of the string every
+ * match begins with, if there is one, or otherwise the next symbol with a
+ * transition out of the start state.
+ *
+ * A DFASearcher works on the DFA as it was when the searcher was created.
+ * It caches the search automaton as it goes, so a single DFASearcher must
+ * not be shared between threads.
+ */
+public final class DFASearcher {
+    /** Longest literal prefix looked for by the prefilter. */
+    private static final int MAX_PREFIX = 64;
+
+    private final CompiledDFA compiled;
+    private final Map<Config, Config> configs = new HashMap<>();
+    /** The configuration with only a match starting at the current position. */
+    private final Config initial;
+    /** The string every match begins with, empty if there is none. */
+    private final char[] prefix;
+    private int[] starts;
+    private int[] spare;
+
+    /**
+     * Creates a searcher for a compiled DFA.
+     *
+     * @param compiled the DFA whose matches are searched for.
+     */
+    DFASearcher(CompiledDFA compiled) {
+        this.compiled = compiled;
+        this.starts = new int[compiled.sink + 1];
+        this.spare = new int[compiled.sink + 1];
+        int[] states = compiled.isDead(compiled.start) ? new int[0] : new int[] {compiled.start};
+        this.initial = intern(new Config(states, states.length > 0 && compiled.isFinal(compiled.start)));
+        this.prefix = literalPrefix();
+    }
+
+    /**
+     * Finds the leftmost-longest match in a text: of the substrings the
+     * DFA accepts, the one that starts first, and of those the longest.
+     *
+     * @param text the text to search.
+     * @return the match, or null if the DFA accepts no substring of text.
+     */
+    public Match find(CharSequence text) {
+        return find(text, 0);
+    }
+
+    /**
+     * Finds the leftmost-longest match in a text that starts at or
+     * after a given index.
+     *
+     * @param text the text to search.
+     * @param from the index to start searching at.
+     * @return the match, or null if there is none.
+     * @throws IndexOutOfBoundsException if from is not an index of text or its length.
+     */
+    public Match find(CharSequence text, int from) {
+        int n = text.length();
+        if (from < 0 || from > n) {
+            throw new IndexOutOfBoundsException("Index " + from + " out of bounds for length " + n);
+        }
+        if (initial.states.length == 0) {
+            return null;
+        }
+        int bestStart = -1;
+        int bestEnd = -1;
+        if (initial.matched) {
+            bestStart = from;
+            bestEnd = from;
+        }
+        starts[0] = from;
+        Config config = initial;
+        for (int i = from; i < n && config.states.length > 0; i++) {
+            if (config == initial && !initial.matched) {
+                // The only match in progress is in the start state, so it can
+                // be moved to the next position a match can start at
+                int candidate = skip(text, i, n);
+                if (candidate == n) {
+                    break;
+                }
+                if (candidate > i) {
+                    i = candidate;
+                    starts[0] = i;
+                }
+            }
+            int column = compiled.column(text.charAt(i));
+            Config next = config.next[column];
+            if (next == null) {
+                next = transition(config, column);
+            }
+            int[] sources = config.sources[column];
+            for (int k = 0; k < sources.length; k++) {
+                spare[k] = sources[k] < 0 ? i + 1 : starts[sources[k]];
+            }
+            int[] swap = starts;
+            starts = spare;
+            spare = swap;
+            int matchSlot = config.matchSlot[column];
+            if (matchSlot >= 0) {
+                bestStart = starts[matchSlot];
+                bestEnd = i + 1;
+            }
+            config = next;
+        }
+        return bestEnd < 0 ? null : new Match(bestStart, bestEnd);
+    }
+
+    /**
+     * Finds the leftmost-longest matches in a text that do not overlap,
+     * searching again from the end of each match. After an empty match
+     * the search continues one symbol further.
+     *
+     * @param text the text to search.
+     * @return the matches, in the order they appear in text.
+     */
+    public List<Match> findAll(CharSequence text) {
+        List<Match> matches = new ArrayList<>();
+        int n = text.length();
+        for (int from = 0; from <= n; ) {
+            Match match = find(text, from);
+            if (match == null) {
+                break;
+            }
+            matches.add(match);
+            from = match.end > match.start ? match.end : match.end + 1;
+        }
+        return matches;
+    }
+
+    /**
+     * Finds every span of a text that the DFA accepts, including spans
+     * that overlap or contain each other. Each candidate start is
+     * simulated until its state is dead, so this takes time proportional
+     * to the total length of those runs.
+     *
+     * @param text the text to search.
+     * @return the spans, ordered by start and then by end.
+     */
+    public List<Match> findAllSpans(CharSequence text) {
+        List<Match> matches = new ArrayList<>();
+        if (initial.states.length == 0) {
+            return matches;
+        }
+        int n = text.length();
+        for (int start = initial.matched ? 0 : skip(text, 0, n); start <= n;
+             start = initial.matched ? start + 1 : skip(text, start + 1, n)) {
+            if (!initial.matched && start == n) {
+                break;
+            }
+            int state = compiled.start;
+            if (compiled.isFinal(state)) {
+                matches.add(new Match(start, start));
+            }
+            for (int i = start; i < n; i++) {
+                state = compiled.next(state, text.charAt(i));
+                if (state == compiled.sink) {
+                    break;
+                }
+                if (compiled.isFinal(state)) {
+                    matches.add(new Match(start, i + 1));
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Finds the first position at or after from where a match can start,
+     * only used while the empty string is not accepted.
+     *
+     * @return the position, or n if there is none.
+     */
+    private int skip(CharSequence text, int from, int n) {
+        if (prefix.length > 0) {
+            char first = prefix[0];
+            for (int i = from, last = n - prefix.length; i <= last; i++) {
+                if (text.charAt(i) == first && startsWith(text, i)) {
+                    return i;
+                }
+            }
+            return n;
+        }
+        for (int i = from; i < n; i++) {
+            if (compiled.next(compiled.start, text.charAt(i)) != compiled.sink) {
+                return i;
+            }
+        }
+        return n;
+    }
+
+    private boolean startsWith(CharSequence text, int at) {
+        for (int k = 1; k < prefix.length; k++) {
+            if (text.charAt(at + k) != prefix[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the string every accepted string begins with, by following
+     * the start state while it is not final and exactly one symbol of
+     * Sigma leads out of it.
+     */
+    private char[] literalPrefix() {
+        StringBuilder sb = new StringBuilder();
+        int state = compiled.start;
+        while (sb.length() < MAX_PREFIX && !compiled.isDead(state) && !compiled.isFinal(state)) {
+            int next = compiled.sink;
+            char only = 0;
+            int count = 0;
+            for (char symbol : compiled.symbols) {
+                int target = compiled.next(state, symbol);
+                if (target != compiled.sink) {
+                    next = target;
+                    only = symbol;
+                    count++;
+                }
+            }
+            if (count != 1) {
+                break;
+            }
+            sb.append(only);
+            state = next;
+        }
+        return sb.toString().toCharArray();
+    }
+
+    /**
+     * Computes the configuration reached from a configuration on a
+     * column: every state moves on the column and dead states are dropped,
+     * then a new match starts unless one has been found, and the states
+     * that started after the oldest final state are dropped.
+     */
+    private Config transition(Config config, int column) {
+        int[] states = new int[config.states.length + 1];
+        int[] sources = new int[states.length];
+        int count = 0;
+        for (int k = 0; k < config.states.length; k++) {
+            int target = compiled.target(config.states[k], column);
+            if (!compiled.isDead(target) && indexOf(states, count, target) < 0) {
+                states[count] = target;
+                sources[count++] = k;
+            }
+        }
+        if (!config.matched && !compiled.isDead(compiled.start)
+                && indexOf(states, count, compiled.start) < 0) {
+            states[count] = compiled.start;
+            sources[count++] = -1;
+        }
+        int matchSlot = -1;
+        for (int k = 0; k < count && matchSlot < 0; k++) {
+            if (compiled.isFinal(states[k])) {
+                matchSlot = k;
+                count = k + 1;
+            }
+        }
+        Config next = intern(new Config(Arrays.copyOf(states, count), config.matched || matchSlot >= 0));
+        config.next[column] = next;
+        config.sources[column] = Arrays.copyOf(sources, count);
+        config.matchSlot[column] = matchSlot;
+        return next;
+    }
+
+    private static int indexOf(int[] states, int count, int state) {
+        for (int k = 0; k < count; k++) {
+            if (states[k] == state) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    private Config intern(Config config) {
+        Config existing = configs.putIfAbsent(config, config);
+        if (existing != null) {
+            return existing;
+        }
+        config.next = new Config[compiled.stride];
+        config.sources = new int[compiled.stride][];
+        config.matchSlot = new int[compiled.stride];
+        return config;
+    }
+
+    /**
+     * A state of the search automaton, with its transitions filled in
+     * as they are first taken.
+     */
+    private static final class Config {
+        /** The DFA state of each match in progress, oldest start first. */
+        final int[] states;
+        /** Whether a match has been found, so no new match is started. */
+        final boolean matched;
+        /** The configuration reached on each column. */
+        Config[] next;
+        /** For each column, the slot of each state of the next configuration, -1 for a new match. */
+        int[][] sources;
+        /** For each column, the slot of the next configuration that ends a match, or -1. */
+        int[] matchSlot;
+
+        Config(int[] states, boolean matched) {
+            this.states = states;
+            this.matched = matched;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Config && matched == ((Config) o).matched
+                    && Arrays.equals(states, ((Config) o).states);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(states) * 2 + (matched ? 1 : 0);
+        }
+    }
+
+    /**
+     * A span [start, end) of a text that the DFA accepts.
+     */
+    public static final class Match {
+        private final int start;
+        private final int end;
+
+        Match(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Gets the index of the first symbol of the match.
+         *
+         * @return the start index.
+         */
+        public int start() {
+            return start;
+        }
+
+        /**
+         * Gets the index after the last symbol of the match.
+         *
+         * @return the end index.
+         */
+        public int end() {
+            return end;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Match && start == ((Match) o).start && end == ((Match) o).end;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * start + end;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + start + ", " + end + ")";
+        }
+    }
+}
@@ -12,6 +12,10 @@ import java.util.HashMap;
  */
 public class DFAState extends State implements Comparable<DFAState> {
     private HashMap<Character, DFAState> transitions;
+    /** The DFA this DFAState belongs to, or null if it was created on its own. */
+    final DFA owner;
+    /** The position of this DFAState in its owner, used as its compiled id. */
+    final int id;
 
     /**
      * Creates a new DFAState.
@@ -19,8 +23,21 @@ public class DFAState extends State implements Comparable<DFAState> {
      * @param name the name of this DFAState.
      */
     public DFAState(String name) {
+        this(name, null, -1);
+    }
+
+    /**
+     * Creates a new DFAState that belongs to a DFA.
+     *
+     * @param name the name of this DFAState.
+     * @param owner the DFA the DFAState is added to.
+     * @param id the number of states added to the DFA before this one.
+     */
+    DFAState(String name, DFA owner, int id) {
         super(name);
         transitions = new HashMap<>();
+        this.owner = owner;
+        this.id = id;
     }
 
     /**
@@ -36,6 +53,9 @@ public class DFAState extends State implements Comparable<DFAState> {
             return;
         }
         transitions.put(onSymb, toState);
+        if (owner != null) {
+            owner.invalidate();
+        }
     }
 
     /**
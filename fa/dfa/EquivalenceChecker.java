@@ -0,0 +1,199 @@
+package fa.dfa;
+
+import java.util.Arrays;
+
+/**
+ * Compares the languages of two compiled DFAs.
+ *
+ * Equivalence is decided with the Hopcroft–Karp algorithm: the states of
+ * both DFAs are put in one union-find structure, and starting from the
+ * two start states every pair of states that must be equivalent is
+ * merged, so each state is visited at most once and the check runs in
+ * nearly linear time. Only when the DFAs differ is a breadth-first search
+ * over pairs of states run to find a shortest string that tells them
+ * apart. The alphabets do not have to match, a symbol outside of a DFA's
+ * Sigma moves it to its sink.
+ */
+final class EquivalenceChecker {
+    private final CompiledDFA a;
+    private final CompiledDFA b;
+    private final int[] columnA;
+    private final int[] columnB;
+    private final char[] symbols;
+
+    private EquivalenceChecker(CompiledDFA a, CompiledDFA b) {
+        this.a = a;
+        this.b = b;
+        // Symbols in the same class of both DFAs behave the same from
+        // every pair of states, so only the first symbol of each pair of
+        // classes is kept
+        char[] all = ProductConstruction.union(a.symbols, b.symbols);
+        LongIntMap seen = new LongIntMap(all.length);
+        char[] kept = new char[all.length];
+        int[] keptA = new int[all.length];
+        int[] keptB = new int[all.length];
+        int count = 0;
+        for (char symbol : all) {
+            int ca = a.column(symbol);
+            int cb = b.column(symbol);
+            long key = (long) ca * (b.stride + 1) + cb;
+            if (seen.get(key) == LongIntMap.MISSING) {
+                seen.put(key, count);
+                kept[count] = symbol;
+                keptA[count] = ca;
+                keptB[count++] = cb;
+            }
+        }
+        this.symbols = Arrays.copyOf(kept, count);
+        this.columnA = Arrays.copyOf(keptA, count);
+        this.columnB = Arrays.copyOf(keptB, count);
+    }
+
+    /**
+     * Finds a shortest string accepted by exactly one of two DFAs.
+     *
+     * @param a the first DFA.
+     * @param b the second DFA.
+     * @return the string, or null if the DFAs accept the same language.
+     */
+    static String distinguishingString(CompiledDFA a, CompiledDFA b) {
+        EquivalenceChecker checker = new EquivalenceChecker(a, b);
+        if (checker.equivalent()) {
+            return null;
+        }
+        return checker.shortestString(false);
+    }
+
+    /**
+     * Finds a shortest string accepted by one DFA but not by another.
+     *
+     * @param a the DFA whose language should be a subset.
+     * @param b the DFA whose language should be a superset.
+     * @return the string, or null if every string a accepts is accepted by b.
+     */
+    static String inclusionCounterexample(CompiledDFA a, CompiledDFA b) {
+        return new EquivalenceChecker(a, b).shortestString(true);
+    }
+
+    /**
+     * Runs the Hopcroft–Karp check. The states of b are numbered after
+     * the states of a in the union-find structure.
+     */
+    private boolean equivalent() {
+        int offset = a.sink + 1;
+        int[] parent = new int[offset + b.sink + 1];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+        int[] pairs = new int[32];
+        int top = 0;
+        if (union(parent, a.start, offset + b.start)) {
+            pairs[top++] = a.start;
+            pairs[top++] = b.start;
+        }
+        while (top > 0) {
+            int q = pairs[--top];
+            int p = pairs[--top];
+            if (a.isFinal(p) != b.isFinal(q)) {
+                return false;
+            }
+            for (int i = 0; i < symbols.length; i++) {
+                int nextP = a.target(p, columnA[i]);
+                int nextQ = b.target(q, columnB[i]);
+                if (union(parent, nextP, offset + nextQ)) {
+                    if (top + 2 > pairs.length) {
+                        pairs = Arrays.copyOf(pairs, pairs.length * 2);
+                    }
+                    pairs[top++] = nextP;
+                    pairs[top++] = nextQ;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Merges the classes of two states.
+     *
+     * @return false if they were already in the same class.
+     */
+    private static boolean union(int[] parent, int x, int y) {
+        int rootX = find(parent, x);
+        int rootY = find(parent, y);
+        if (rootX == rootY) {
+            return false;
+        }
+        parent[rootX] = rootY;
+        return true;
+    }
+
+    private static int find(int[] parent, int x) {
+        while (parent[x] != x) {
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+
+    /**
+     * Searches the reachable pairs of states breadth first for a pair
+     * that is a counterexample, and spells out the path to it.
+     *
+     * @param inclusion true to look for a pair where only a accepts,
+     * false to look for a pair where exactly one DFA accepts.
+     * @return a shortest string leading to such a pair, or null if there is none.
+     */
+    private String shortestString(boolean inclusion) {
+        long width = b.sink + 1L;
+        LongIntMap seen = new LongIntMap(16);
+        int[] first = new int[16];
+        int[] second = new int[16];
+        int[] previous = new int[16];
+        char[] via = new char[16];
+        seen.put(a.start * width + b.start, 0);
+        first[0] = a.start;
+        second[0] = b.start;
+        previous[0] = -1;
+        for (int pair = 0; pair < seen.size(); pair++) {
+            int p = first[pair];
+            int q = second[pair];
+            boolean finalA = a.isFinal(p);
+            boolean finalB = b.isFinal(q);
+            if (finalA && !finalB || !inclusion && finalB && !finalA) {
+                return spell(previous, via, pair);
+            }
+            // Past these pairs no counterexample can be found
+            if (p == a.sink && (inclusion || q == b.sink)) {
+                continue;
+            }
+            for (int i = 0; i < symbols.length; i++) {
+                int nextP = a.target(p, columnA[i]);
+                int nextQ = b.target(q, columnB[i]);
+                long key = nextP * width + nextQ;
+                if (seen.get(key) == LongIntMap.MISSING) {
+                    int id = seen.size();
+                    seen.put(key, id);
+                    if (id == first.length) {
+                        first = Arrays.copyOf(first, id * 2);
+                        second = Arrays.copyOf(second, id * 2);
+                        previous = Arrays.copyOf(previous, id * 2);
+                        via = Arrays.copyOf(via, id * 2);
+                    }
+                    first[id] = nextP;
+                    second[id] = nextQ;
+                    previous[id] = pair;
+                    via[id] = symbols[i];
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String spell(int[] previous, char[] via, int pair) {
+        StringBuilder sb = new StringBuilder();
+        for (; previous[pair] >= 0; pair = previous[pair]) {
+            sb.append(via[pair]);
+        }
+        return sb.reverse().toString();
+    }
+}
@@ -0,0 +1,195 @@
+package fa.dfa;
+
+import fa.State;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of a {@link DFA}, created by {@link DFA#freeze()}.
+ *
+ * A FrozenDFA only holds final fields and the primitive arrays of a
+ * compiled transition table that is never written after construction,
+ * so any number of threads can call {@link #accepts(String)} on a shared
+ * instance without locking. Operations that would change the DFA throw
+ * an {@link UnsupportedOperationException}, use {@link #thaw()} to get a
+ * mutable copy instead.
+ */
+public final class FrozenDFA extends AbstractDFA {
+    private final CompiledDFA compiled;
+    private final Map<String, Integer> ids;
+
+    /**
+     * Creates a snapshot of a compiled DFA.
+     *
+     * @param compiled the compiled DFA.
+     */
+    FrozenDFA(CompiledDFA compiled) {
+        this.compiled = compiled;
+        Map<String, Integer> index = new HashMap<>(compiled.sink * 2);
+        for (int state = 0; state < compiled.sink; state++) {
+            index.put(compiled.names[state], state);
+        }
+        this.ids = Collections.unmodifiableMap(index);
+    }
+
+    /**
+     * Gets the compiled form of this snapshot.
+     */
+    @Override
+    CompiledDFA compiled() {
+        return compiled;
+    }
+
+    /**
+     * Creates a mutable DFA with the same states, alphabet and
+     * transitions as this snapshot. The DFA shares the transition table
+     * of this snapshot until it is changed.
+     *
+     * @return a new DFA.
+     */
+    public DFA thaw() {
+        return DFA.view(compiled);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean accepts(String s) {
+        return s != null && compiled.accepts(s);
+    }
+
+    /**
+     * Creates a minimal DFA that accepts the same language as this one,
+     * using Hopcroft's partition refinement algorithm. Unreachable states
+     * are removed, equivalent states are merged into the state that was
+     * added first, and states from which no final state can be reached
+     * are dropped along with the transitions into them.
+     *
+     * @return a new minimal FrozenDFA.
+     */
+    public FrozenDFA minimize() {
+        return Minimizer.minimize(compiled()).freeze();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Character> getSigma() {
+        Set<Character> sigma = new LinkedHashSet<>();
+        for (char symbol : compiled.symbols) {
+            sigma.add(symbol);
+        }
+        return sigma;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The returned state is a read-only label and has no transitions.
+     */
+    @Override
+    public State getState(String name) {
+        Integer id = name != null ? ids.get(name) : null;
+        return id != null ? new FrozenState(name) : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isFinal(String name) {
+        Integer id = name != null ? ids.get(name) : null;
+        return id != null && compiled.isFinal(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isStart(String name) {
+        return compiled.start != compiled.sink && compiled.names[compiled.start].equals(name);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The copy is a mutable DFA, this snapshot is left unchanged.
+     */
+    @Override
+    public DFA swap(char symb1, char symb2) {
+        return thaw().swap(symb1, symb2);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return compiled.toString();
+    }
+
+    /**
+     * Not supported, a FrozenDFA cannot be changed.
+     *
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public boolean addState(String name) {
+        throw new UnsupportedOperationException("FrozenDFA is immutable");
+    }
+
+    /**
+     * Not supported, a FrozenDFA cannot be changed.
+     *
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public boolean setFinal(String name) {
+        throw new UnsupportedOperationException("FrozenDFA is immutable");
+    }
+
+    /**
+     * Not supported, a FrozenDFA cannot be changed.
+     *
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public boolean setStart(String name) {
+        throw new UnsupportedOperationException("FrozenDFA is immutable");
+    }
+
+    /**
+     * Not supported, a FrozenDFA cannot be changed.
+     *
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public void addSigma(char symbol) {
+        throw new UnsupportedOperationException("FrozenDFA is immutable");
+    }
+
+    /**
+     * Not supported, a FrozenDFA cannot be changed.
+     *
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public boolean addTransition(String fromState, String toState, char onSymb) {
+        throw new UnsupportedOperationException("FrozenDFA is immutable");
+    }
+
+    /**
+     * A state of a FrozenDFA, which only carries its name.
+     */
+    private static final class FrozenState extends State {
+        FrozenState(String name) {
+            super(name);
+        }
+    }
+}
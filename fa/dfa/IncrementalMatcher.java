@@ -0,0 +1,269 @@
+package fa.dfa;
+
+import java.util.Random;
+
+/**
+ * Keeps track of whether a DFA accepts a text that is being edited, such
+ * as a document in an editor, without reading the whole text again after
+ * every edit. Created by {@link DFA#incremental(CharSequence)} and
+ * {@link FrozenDFA#incremental(CharSequence)}.
+ *
+ * The text is kept as a balanced tree (a treap) of short segments. Every
+ * node stores, for every state, the state the DFA reaches by reading the
+ * segments of its subtree from that state, which is found by composing
+ * the mappings of its children and its own segment. An edit splits the
+ * tree at the edited positions and joins the pieces back together, so
+ * only the O(log n) nodes along the way have their mapping recomputed,
+ * and {@link #accepts()} is a single lookup at the root.
+ *
+ * Each node holds an int per state of the DFA, so the matcher is meant
+ * for DFAs with a moderate number of states. An IncrementalMatcher works
+ * on the DFA as it was when the matcher was created, and must not be
+ * shared between threads.
+ */
+public final class IncrementalMatcher {
+    /** Segments are never longer than this. */
+    static final int MAX_SEGMENT = 256;
+
+    private final CompiledDFA compiled;
+    private final Random priorities = new Random();
+    private Node root;
+
+    /**
+     * Creates an IncrementalMatcher for a text.
+     *
+     * @param compiled the DFA to simulate.
+     * @param text the initial text.
+     */
+    IncrementalMatcher(CompiledDFA compiled, CharSequence text) {
+        this.compiled = compiled;
+        this.root = build(text);
+    }
+
+    /**
+     * Determines if the DFA accepts the current text.
+     *
+     * @return true if the DFA accepts the text.
+     */
+    public boolean accepts() {
+        return compiled.isFinal(root == null ? compiled.start : root.map[compiled.start]);
+    }
+
+    /**
+     * Gets the length of the current text.
+     *
+     * @return the number of symbols in the text.
+     */
+    public int length() {
+        return size(root);
+    }
+
+    /**
+     * Inserts text at a position.
+     *
+     * @param index the position to insert at, from 0 to {@link #length()}.
+     * @param text the text to insert.
+     * @throws IndexOutOfBoundsException if index is not a position of the text.
+     */
+    public void insert(int index, CharSequence text) {
+        checkRange(index, index);
+        if (text.length() == 0) {
+            return;
+        }
+        Node[] parts = split(root, index);
+        Node left = parts[0];
+        Node last = left;
+        while (last != null && last.right != null) {
+            last = last.right;
+        }
+        if (last != null && last.segment.length() + text.length() <= MAX_SEGMENT) {
+            // Typing grows the segment before the cursor instead of adding tiny ones
+            text = last.segment + text;
+            left = split(left, size(left) - last.segment.length())[0];
+        }
+        root = merge(merge(left, build(text)), parts[1]);
+    }
+
+    /**
+     * Deletes the text between two positions.
+     *
+     * @param from the position of the first symbol to delete.
+     * @param to the position after the last symbol to delete.
+     * @throws IndexOutOfBoundsException if from and to are not positions
+     * of the text with from &lt;= to.
+     */
+    public void delete(int from, int to) {
+        checkRange(from, to);
+        Node[] tail = split(root, to);
+        Node[] head = split(tail[0], from);
+        root = merge(head[0], tail[1]);
+    }
+
+    /**
+     * Replaces the text between two positions.
+     *
+     * @param from the position of the first symbol to replace.
+     * @param to the position after the last symbol to replace.
+     * @param text the text to put in their place.
+     * @throws IndexOutOfBoundsException if from and to are not positions
+     * of the text with from &lt;= to.
+     */
+    public void replace(int from, int to, CharSequence text) {
+        delete(from, to);
+        insert(from, text);
+    }
+
+    /**
+     * Gets the current text.
+     *
+     * @return the text.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(length());
+        append(root, sb);
+        return sb.toString();
+    }
+
+    private void checkRange(int from, int to) {
+        if (from < 0 || from > to || to > length()) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to
+                    + ") out of bounds for length " + length());
+        }
+    }
+
+    private static void append(Node node, StringBuilder sb) {
+        if (node != null) {
+            append(node.left, sb);
+            sb.append(node.segment);
+            append(node.right, sb);
+        }
+    }
+
+    /**
+     * Builds a tree of segments holding a text.
+     */
+    private Node build(CharSequence text) {
+        Node tree = null;
+        for (int from = 0; from < text.length(); from += MAX_SEGMENT) {
+            String segment = text.subSequence(from, Math.min(text.length(), from + MAX_SEGMENT)).toString();
+            tree = merge(tree, new Node(segment, priorities.nextInt(), segmentMap(segment)));
+        }
+        return tree;
+    }
+
+    /**
+     * Splits a tree into the first index symbols and the rest, cutting a
+     * segment in two if the index falls inside it.
+     *
+     * @return the two trees, either of which may be null.
+     */
+    private Node[] split(Node node, int index) {
+        if (node == null) {
+            return new Node[2];
+        }
+        int leftSize = size(node.left);
+        int segmentEnd = leftSize + node.segment.length();
+        if (index <= leftSize) {
+            Node[] parts = split(node.left, index);
+            node.left = parts[1];
+            update(node);
+            parts[1] = node;
+            return parts;
+        }
+        if (index >= segmentEnd) {
+            Node[] parts = split(node.right, index - segmentEnd);
+            node.right = parts[0];
+            update(node);
+            parts[0] = node;
+            return parts;
+        }
+        // The second half keeps the priority, which no node below it exceeds
+        String second = node.segment.substring(index - leftSize);
+        Node rest = new Node(second, node.priority, segmentMap(second));
+        rest.right = node.right;
+        update(rest);
+        node.segment = node.segment.substring(0, index - leftSize);
+        node.segmentMap = segmentMap(node.segment);
+        node.right = null;
+        update(node);
+        return new Node[] {node, rest};
+    }
+
+    /**
+     * Joins two trees, all of whose text in a comes before that in b.
+     */
+    private Node merge(Node a, Node b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (a.priority >= b.priority) {
+            a.right = merge(a.right, b);
+            update(a);
+            return a;
+        }
+        b.left = merge(a, b.left);
+        update(b);
+        return b;
+    }
+
+    private int[] segmentMap(String segment) {
+        return ParallelMatcher.mapping(compiled, segment, 0, segment.length(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Recomputes the size and the mapping of a node from its children.
+     */
+    private static void update(Node node) {
+        node.size = size(node.left) + node.segment.length() + size(node.right);
+        int[] map = node.segmentMap;
+        if (node.left != null) {
+            map = compose(node.left.map, map);
+        }
+        if (node.right != null) {
+            map = compose(map, node.right.map);
+        }
+        node.map = map;
+    }
+
+    /**
+     * Gets the mapping of reading first one part of the text, then the next.
+     */
+    private static int[] compose(int[] first, int[] then) {
+        int[] map = new int[first.length];
+        for (int state = 0; state < map.length; state++) {
+            map[state] = then[first[state]];
+        }
+        return map;
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * A node of the tree, holding one segment of the text.
+     */
+    private static final class Node {
+        String segment;
+        final int priority;
+        /** The state reached by reading the segment from each state, sink included. */
+        int[] segmentMap;
+        /** The state reached by reading the whole subtree from each state. */
+        int[] map;
+        int size;
+        Node left;
+        Node right;
+
+        Node(String segment, int priority, int[] segmentMap) {
+            this.segment = segment;
+            this.priority = priority;
+            this.segmentMap = segmentMap;
+            this.map = segmentMap;
+            this.size = segment.length();
+        }
+    }
+}
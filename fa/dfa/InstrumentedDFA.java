@@ -0,0 +1,223 @@
+package fa.dfa;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.EventType;
+
+/**
+ * Simulates a DFA while counting what happens, to find out which states
+ * and symbols are hot, why inputs are rejected and how long matching
+ * takes. Created by {@link DFA#instrument()} and
+ * {@link FrozenDFA#instrument()}; the counters are read with
+ * {@link #metrics()}.
+ *
+ * Instrumentation is kept out of the DFA itself, so {@link DFA#accepts(String)}
+ * and the other ways of matching cost nothing extra; only inputs given
+ * to an InstrumentedDFA are counted. Each call to
+ * {@link #accepts(CharSequence)} is also reported to the JDK Flight
+ * Recorder as an "fa.dfa.Accept" event while a recording that enables
+ * the event is running; otherwise no event is created.
+ *
+ * An InstrumentedDFA works on the DFA as it was when it was created. It
+ * can be shared between threads, which then update the same counters.
+ * Each call counts its state visits and symbols in scratch space of its
+ * own thread and adds them to the shared counters once, at the end, so
+ * threads contend once per call rather than once per symbol.
+ */
+public final class InstrumentedDFA {
+    private static final DFAMetrics.RejectReason[] REASONS = DFAMetrics.RejectReason.values();
+    private static final EventType ACCEPT_EVENT = EventType.getEventType(AcceptEvent.class);
+
+    private final CompiledDFA compiled;
+    /** The index in Sigma of each symbol plus one, or 0 for symbols outside Sigma. */
+    private final int[] symbolIndex;
+    private final AtomicLongArray stateVisits;
+    private final AtomicLongArray symbolCounts;
+    /** The accepted count, followed by the rejected count for each reason. */
+    private final LongAdder[] outcomes;
+    private final LongAdder[] latency;
+    private final ThreadLocal<Tally> tally;
+
+    /**
+     * Creates an InstrumentedDFA with all counters at zero.
+     *
+     * @param compiled the DFA to simulate.
+     */
+    InstrumentedDFA(CompiledDFA compiled) {
+        this.compiled = compiled;
+        int[] indices = new int[compiled.symbols.length];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = i + 1;
+        }
+        this.symbolIndex = CompiledDFA.columnMap(compiled.symbols, indices);
+        this.stateVisits = new AtomicLongArray(compiled.sink);
+        this.symbolCounts = new AtomicLongArray(compiled.symbols.length);
+        this.outcomes = adders(1 + REASONS.length);
+        this.latency = adders(DFAMetrics.LATENCY_BUCKETS);
+        this.tally = ThreadLocal.withInitial(() -> new Tally(compiled.sink, compiled.symbols.length));
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Simulates the DFA on an input string, updating the counters. Unlike
+     * {@link DFA#accepts(String)} it reads the input one symbol at a time
+     * until it is rejected, so that every state on the way is counted.
+     *
+     * @param s the input string; null is rejected as {@link DFAMetrics.RejectReason#NULL_INPUT}.
+     * @return true if the DFA accepts s.
+     */
+    public boolean accepts(CharSequence s) {
+        AcceptEvent event = null;
+        if (ACCEPT_EVENT.isEnabled()) {
+            event = new AcceptEvent();
+            event.begin();
+        }
+        long begin = System.nanoTime();
+        int n = s == null ? 0 : s.length();
+        int state = compiled.start;
+        int read = 0;
+        DFAMetrics.RejectReason reason = null;
+        if (s == null) {
+            reason = DFAMetrics.RejectReason.NULL_INPUT;
+        } else if (state == compiled.sink) {
+            reason = DFAMetrics.RejectReason.MISSING_TRANSITION;
+        } else {
+            Tally counts = tally.get();
+            counts.visit(state);
+            for (; read < n; read++) {
+                char symbol = s.charAt(read);
+                int index = symbol < symbolIndex.length ? symbolIndex[symbol] : 0;
+                if (index == 0) {
+                    reason = DFAMetrics.RejectReason.SYMBOL_NOT_IN_SIGMA;
+                    break;
+                }
+                counts.read(index - 1);
+                state = compiled.target(state, compiled.column(symbol));
+                if (state == compiled.sink) {
+                    reason = DFAMetrics.RejectReason.MISSING_TRANSITION;
+                    break;
+                }
+                counts.visit(state);
+            }
+            if (reason == null && !compiled.isFinal(state)) {
+                reason = DFAMetrics.RejectReason.NOT_FINAL;
+            }
+            counts.flush(stateVisits, symbolCounts);
+        }
+        outcomes[reason == null ? 0 : 1 + reason.ordinal()].increment();
+        latency[DFAMetrics.latencyBucket(System.nanoTime() - begin)].increment();
+        if (event != null) {
+            event.end();
+        }
+        if (event != null && event.shouldCommit()) {
+            event.inputLength = n;
+            event.accepted = reason == null;
+            event.rejectReason = reason == null ? null : reason.name();
+            event.symbolsRead = read;
+            event.commit();
+        }
+        return reason == null;
+    }
+
+    /**
+     * Takes a snapshot of the counters.
+     *
+     * @return the metrics counted so far.
+     */
+    public DFAMetrics metrics() {
+        long[] rejected = new long[REASONS.length];
+        for (int i = 0; i < rejected.length; i++) {
+            rejected[i] = outcomes[1 + i].sum();
+        }
+        Map<String, Long> visits = new LinkedHashMap<>();
+        for (int state = 0; state < compiled.sink; state++) {
+            visits.put(compiled.names[state], stateVisits.get(state));
+        }
+        Map<Character, Long> symbols = new LinkedHashMap<>();
+        for (int i = 0; i < compiled.symbols.length; i++) {
+            symbols.put(compiled.symbols[i], symbolCounts.get(i));
+        }
+        long[] histogram = new long[DFAMetrics.LATENCY_BUCKETS];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = latency[i].sum();
+        }
+        return new DFAMetrics(outcomes[0].sum(), rejected, visits, symbols, histogram);
+    }
+
+    /**
+     * Sets every counter back to zero.
+     */
+    public void reset() {
+        for (AtomicLongArray counters : new AtomicLongArray[] {stateVisits, symbolCounts}) {
+            for (int i = 0; i < counters.length(); i++) {
+                counters.set(i, 0);
+            }
+        }
+        for (LongAdder[] adders : new LongAdder[][] {outcomes, latency}) {
+            for (LongAdder adder : adders) {
+                adder.reset();
+            }
+        }
+    }
+
+    /**
+     * The counts of one call, kept per thread so that they are added to
+     * the shared counters once per state and symbol seen rather than once
+     * per step.
+     */
+    private static final class Tally {
+        private final int[] visits;
+        /** The states with a nonzero count in visits. */
+        private final int[] visited;
+        private int visitedCount;
+        private final int[] reads;
+        /** The symbols with a nonzero count in reads. */
+        private final int[] read;
+        private int readCount;
+
+        Tally(int states, int symbols) {
+            visits = new int[states];
+            visited = new int[states];
+            reads = new int[symbols];
+            read = new int[symbols];
+        }
+
+        void visit(int state) {
+            if (visits[state]++ == 0) {
+                visited[visitedCount++] = state;
+            }
+        }
+
+        void read(int symbol) {
+            if (reads[symbol]++ == 0) {
+                read[readCount++] = symbol;
+            }
+        }
+
+        /**
+         * Adds the counts to the shared counters and clears them.
+         */
+        void flush(AtomicLongArray stateVisits, AtomicLongArray symbolCounts) {
+            for (int i = 0; i < visitedCount; i++) {
+                stateVisits.addAndGet(visited[i], visits[visited[i]]);
+                visits[visited[i]] = 0;
+            }
+            visitedCount = 0;
+            for (int i = 0; i < readCount; i++) {
+                symbolCounts.addAndGet(read[i], reads[read[i]]);
+                reads[read[i]] = 0;
+            }
+            readCount = 0;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package fa.dfa;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Simulates a DFA directly on the bytes of a memory-mapped file, either
+ * on every line of the file or on the file as a whole, without decoding
+ * the file into strings.
+ *
+ * Every byte is read as the char with the same value (ISO-8859-1), so
+ * the scanner gives the same answers as accepts for files in ASCII or
+ * Latin-1. Lines end at '\n', and a '\r' right before it is not part of
+ * the line. Large files are split into regions that start at a line
+ * boundary and are scanned in parallel.
+ */
+public final class LineScanner {
+    /** Size of the windows a region is mapped in. */
+    private static final long WINDOW_SIZE = 1L << 30;
+    /** Files smaller than this are scanned by a single task. */
+    private static final long MIN_REGION_SIZE = 1L << 20;
+
+    private final CompiledDFA compiled;
+
+    /**
+     * Creates a scanner for a DFA as it currently is. Changes made to
+     * the DFA afterwards are not seen by the scanner.
+     *
+     * @param dfa the DFA to simulate.
+     */
+    public LineScanner(DFA dfa) {
+        this.compiled = dfa.compiled();
+    }
+
+    /**
+     * Creates a scanner for a frozen DFA.
+     *
+     * @param dfa the DFA to simulate.
+     */
+    public LineScanner(FrozenDFA dfa) {
+        this.compiled = dfa.compiled();
+    }
+
+    /**
+     * Simulates the DFA on every line of a file, using every available core.
+     *
+     * @param file the file to scan.
+     * @return the offsets of the accepted and rejected lines.
+     * @throws IOException if the file cannot be read.
+     */
+    public Result scanLines(Path file) throws IOException {
+        return scanLines(file, ForkJoinPool.getCommonPoolParallelism(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Simulates the DFA on every line of a file, in a pool of its own
+     * that scans at most a number of regions at once.
+     *
+     * @param file the file to scan.
+     * @param parallelism the largest number of regions scanned at once.
+     * @return the offsets of the accepted and rejected lines.
+     * @throws IOException if the file cannot be read.
+     */
+    public Result scanLines(Path file, int parallelism) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            return scanLines(file, pool.getParallelism(), pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Splits a file into one region per thread of a pool and scans the
+     * regions in the pool.
+     */
+    private Result scanLines(Path file, int parallelism, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] bounds = regions(channel, Math.max(1, parallelism));
+            List<ForkJoinTask<Result>> tasks = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                long from = bounds[i];
+                long to = bounds[i + 1];
+                tasks.add(pool.submit(new RecursiveTask<Result>() {
+                    @Override
+                    protected Result compute() {
+                        try {
+                            return scanRegion(channel, from, to);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                }));
+            }
+            Result result = new Result();
+            try {
+                for (ForkJoinTask<Result> task : tasks) {
+                    result.append(task.join());
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Simulates the DFA on the whole content of a file, as if it
+     * were a single input string.
+     *
+     * @param file the file to scan.
+     * @return true if the DFA accepts the content of the file.
+     * @throws IOException if the file cannot be read.
+     */
+    public boolean acceptsFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int state = compiled.start;
+            long size = channel.size();
+            for (long position = 0; position < size && state != compiled.sink; position += WINDOW_SIZE) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(WINDOW_SIZE, size - position));
+                for (int i = 0, n = window.limit(); i < n && state != compiled.sink; i++) {
+                    state = compiled.next(state, (char) (window.get(i) & 0xFF));
+                }
+            }
+            return compiled.isFinal(state);
+        }
+    }
+
+    /**
+     * Splits a file into regions of about equal size that each start
+     * at the beginning of a line.
+     *
+     * @return the offsets where the regions start, followed by the size of the file.
+     */
+    private static long[] regions(FileChannel channel, int parallelism) throws IOException {
+        long size = channel.size();
+        int count = (int) Math.max(1, Math.min(parallelism, size / MIN_REGION_SIZE));
+        long[] bounds = new long[count + 1];
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        int regions = 1;
+        for (int i = 1; i < count; i++) {
+            long position = Math.max(size * i / count, bounds[regions - 1]);
+            long lineStart = nextLineStart(channel, position, probe);
+            if (lineStart > bounds[regions - 1] && lineStart < size) {
+                bounds[regions++] = lineStart;
+            }
+        }
+        bounds[regions] = size;
+        return Arrays.copyOf(bounds, regions + 1);
+    }
+
+    /**
+     * Finds the offset of the first line that starts after a position.
+     */
+    private static long nextLineStart(FileChannel channel, long position, ByteBuffer probe)
+            throws IOException {
+        while (true) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            if (read <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Scans the lines in [from, to) of a file, mapping it one window at a
+     * time. A line may span two windows, the DFA state is carried over.
+     */
+    private Result scanRegion(FileChannel channel, long from, long to) throws IOException {
+        Result result = new Result();
+        int state = compiled.start;
+        int stateBeforeReturn = state;
+        boolean afterReturn = false;
+        long lineStart = from;
+        for (long position = from; position < to; position += WINDOW_SIZE) {
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(WINDOW_SIZE, to - position));
+            for (int i = 0, n = window.limit(); i < n; i++) {
+                byte b = window.get(i);
+                if (b == '\n') {
+                    int lineState = afterReturn ? stateBeforeReturn : state;
+                    result.add(lineStart, compiled.isFinal(lineState));
+                    lineStart = position + i + 1;
+                    state = compiled.start;
+                    afterReturn = false;
+                } else {
+                    afterReturn = b == '\r';
+                    stateBeforeReturn = state;
+                    if (state != compiled.sink) {
+                        state = compiled.next(state, (char) (b & 0xFF));
+                    }
+                }
+            }
+        }
+        if (lineStart < to) {
+            result.add(lineStart, compiled.isFinal(state));
+        }
+        return result;
+    }
+
+    /**
+     * The lines found by {@link #scanLines(Path)}, identified by the
+     * offset in bytes of their first byte, in file order.
+     */
+    public static final class Result {
+        private long[] accepted = new long[16];
+        private int acceptedCount;
+        private long[] rejected = new long[16];
+        private int rejectedCount;
+
+        private Result() {
+        }
+
+        private void add(long lineStart, boolean isAccepted) {
+            if (isAccepted) {
+                if (acceptedCount == accepted.length) {
+                    accepted = Arrays.copyOf(accepted, acceptedCount * 2);
+                }
+                accepted[acceptedCount++] = lineStart;
+            } else {
+                if (rejectedCount == rejected.length) {
+                    rejected = Arrays.copyOf(rejected, rejectedCount * 2);
+                }
+                rejected[rejectedCount++] = lineStart;
+            }
+        }
+
+        private void append(Result other) {
+            accepted = Arrays.copyOf(accepted, Math.max(accepted.length, acceptedCount + other.acceptedCount));
+            System.arraycopy(other.accepted, 0, accepted, acceptedCount, other.acceptedCount);
+            acceptedCount += other.acceptedCount;
+            rejected = Arrays.copyOf(rejected, Math.max(rejected.length, rejectedCount + other.rejectedCount));
+            System.arraycopy(other.rejected, 0, rejected, rejectedCount, other.rejectedCount);
+            rejectedCount += other.rejectedCount;
+        }
+
+        /**
+         * Gets the number of lines in the file.
+         *
+         * @return the number of accepted and rejected lines.
+         */
+        public long lineCount() {
+            return (long) acceptedCount + rejectedCount;
+        }
+
+        /**
+         * Determines if every line of the file was accepted.
+         *
+         * @return true if no line was rejected.
+         */
+        public boolean allAccepted() {
+            return rejectedCount == 0;
+        }
+
+        /**
+         * Gets the offsets of the accepted lines.
+         *
+         * @return the offsets in increasing order.
+         */
+        public long[] acceptedOffsets() {
+            return Arrays.copyOf(accepted, acceptedCount);
+        }
+
+        /**
+         * Gets the offsets of the rejected lines.
+         *
+         * @return the offsets in increasing order.
+         */
+        public long[] rejectedOffsets() {
+            return Arrays.copyOf(rejected, rejectedCount);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package fa.dfa;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A DFA whose transition table stays in a memory-mapped file written by
+ * {@link DFAFormat}, created by {@link DFAFormat#map(java.nio.file.Path)}.
+ *
+ * Matching reads the table straight out of the mapping, so the operating
+ * system only pages in the parts of the file that are visited. Only the
+ * header of the file is checked when it is mapped, so a MappedDFA must
+ * only be used on files written by {@link DFAFormat}; use
+ * {@link #freeze()} to load and check the whole file. A MappedDFA is
+ * immutable and can be shared between threads.
+ */
+public final class MappedDFA {
+    private final DFAFormat.Sections sections;
+    private final char[] symbols;
+    private final int[] columnOf;
+    private final int stride;
+    private final IntBuffer table;
+    private final LongBuffer finals;
+    private final ByteBuffer kinds;
+    private final int start;
+    private final int sink;
+
+    /**
+     * Creates a DFA over the sections of a mapped file.
+     *
+     * @param sections the sections of the file.
+     */
+    MappedDFA(DFAFormat.Sections sections) {
+        this.sections = sections;
+        this.symbols = sections.symbols();
+        int[] columns = new int[symbols.length];
+        sections.columns.get(0, columns);
+        this.columnOf = CompiledDFA.columnMap(symbols, columns);
+        this.stride = sections.stride;
+        this.table = sections.table;
+        this.finals = sections.finals;
+        this.kinds = sections.kinds;
+        this.start = sections.start;
+        this.sink = sections.stateCount;
+    }
+
+    /**
+     * Simulates the DFA on an input string.
+     *
+     * @param s the input string.
+     * @return true if the DFA accepts s.
+     */
+    public boolean accepts(CharSequence s) {
+        if (s == null) {
+            return false;
+        }
+        int state = start;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            byte kind = kinds.get(state);
+            if (kind == CompiledDFA.DEAD) {
+                return false;
+            }
+            if (kind == CompiledDFA.UNIVERSAL) {
+                return inSigma(s, i, n);
+            }
+            state = table.get(state * stride + column(s.charAt(i)));
+        }
+        return isFinal(state);
+    }
+
+    /**
+     * Gets the number of states of the DFA.
+     *
+     * @return the number of states.
+     */
+    public int stateCount() {
+        return sink;
+    }
+
+    /**
+     * Gets the alphabet of the DFA.
+     *
+     * @return Sigma in insertion order.
+     */
+    public Set<Character> getSigma() {
+        Set<Character> sigma = new LinkedHashSet<>();
+        for (char symbol : symbols) {
+            sigma.add(symbol);
+        }
+        return sigma;
+    }
+
+    /**
+     * Copies the whole DFA into the heap, checking every section of
+     * the file on the way.
+     *
+     * @return an immutable DFA that no longer depends on the file.
+     * @throws IOException if the file is not a valid DFA file.
+     */
+    public FrozenDFA freeze() throws IOException {
+        return new FrozenDFA(DFAFormat.restore(sections));
+    }
+
+    private int column(char symbol) {
+        return symbol < columnOf.length ? columnOf[symbol] : CompiledDFA.REJECT_COLUMN;
+    }
+
+    private boolean isFinal(int state) {
+        return (finals.get(state >>> 6) & (1L << state)) != 0;
+    }
+
+    private boolean inSigma(CharSequence s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (column(s.charAt(i)) == CompiledDFA.REJECT_COLUMN) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
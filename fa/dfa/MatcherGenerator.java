@@ -0,0 +1,336 @@
+package fa.dfa;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+
+/**
+ * Generates a class whose accepts method is the code of one DFA, and
+ * loads it as a hidden class, which is unloaded again once the
+ * {@link SpecializedDFA} holding it is collected.
+ *
+ * Every state becomes a block of code that returns whether the state is
+ * final at the end of the input, and otherwise reads the next symbol and
+ * jumps straight to the block of the next state through a lookupswitch
+ * on the symbol. The state is never stored: it is the position in the
+ * code, so matching does no loads from a table and the JIT sees every
+ * transition as a constant jump. Missing transitions, dead states and
+ * symbols outside Sigma all jump to a block that rejects.
+ *
+ * The class is written directly as class file bytes. It targets class
+ * file version 49, which is verified by type inference, so no
+ * StackMapTable has to be computed for the jumps between blocks.
+ */
+final class MatcherGenerator {
+    /**
+     * The most bytes of code the JIT compiles in one method; HotSpot
+     * interprets larger methods, which would be slower than the table.
+     */
+    static final int MAX_CODE_LENGTH = 8000;
+
+    private static final String CLASS_NAME = "fa/dfa/GeneratedMatcher";
+    private static final String PROGRAM_NAME = "fa/dfa/SpecializedDFA$Program";
+
+    // Indices in the constant pool written by writeConstantPool
+    private static final int THIS_CLASS = 2;
+    private static final int OBJECT_CLASS = 4;
+    private static final int PROGRAM_CLASS = 6;
+    private static final int INIT_NAME = 7;
+    private static final int VOID_DESCRIPTOR = 8;
+    private static final int OBJECT_INIT = 10;
+    private static final int ACCEPTS_NAME = 11;
+    private static final int ACCEPTS_DESCRIPTOR = 12;
+    private static final int LENGTH = 18;
+    private static final int CHAR_AT = 22;
+    private static final int CODE = 23;
+    private static final int CONSTANT_POOL_COUNT = 24;
+
+    // Opcodes
+    private static final int ICONST_0 = 0x03;
+    private static final int ICONST_1 = 0x04;
+    private static final int ILOAD_2 = 0x1c;
+    private static final int ILOAD_3 = 0x1d;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int ISTORE_2 = 0x3d;
+    private static final int ISTORE_3 = 0x3e;
+    private static final int IINC = 0x84;
+    private static final int IF_ICMPGE = 0xa2;
+    private static final int LOOKUPSWITCH = 0xab;
+    private static final int IRETURN = 0xac;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKEINTERFACE = 0xb9;
+
+    /** The length of the code before the first state. */
+    private static final int PROLOGUE_LENGTH = 9;
+    /** The length of the code of a state before its lookupswitch. */
+    private static final int READ_LENGTH = 15;
+
+    private final CompiledDFA compiled;
+    /** The live states in the order their blocks are laid out, start first. */
+    private int[] order;
+    /** The position of each state in order, or -1 if it has no block. */
+    private int[] block;
+    /** For each block, the sorted symbols with a live transition. */
+    private char[][] keys;
+    /** The address of each block. */
+    private int[] address;
+    private int accept;
+    private int reject;
+    private int codeLength;
+
+    private MatcherGenerator(CompiledDFA compiled) {
+        this.compiled = compiled;
+    }
+
+    /**
+     * Generates and loads the code of a DFA, if it is small enough.
+     *
+     * @param compiled the DFA.
+     * @param maxStates the most live states the DFA may have.
+     * @return an instance of the generated class, or null if the DFA
+     * has more than maxStates live states reachable from its start, or
+     * its code would be too long for the JIT.
+     */
+    static SpecializedDFA.Program generate(CompiledDFA compiled, int maxStates) {
+        MatcherGenerator generator = new MatcherGenerator(compiled);
+        if (!generator.layout(maxStates)) {
+            return null;
+        }
+        byte[] bytes = generator.classFile();
+        try {
+            Class<?> generated = MethodHandles.lookup().defineHiddenClass(bytes, true).lookupClass();
+            return (SpecializedDFA.Program) generated.getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot load the generated matcher", e);
+        }
+    }
+
+    /**
+     * Finds the live states reachable from the start and the address of
+     * the block of each.
+     *
+     * @return false if there are too many states or too much code.
+     */
+    private boolean layout(int maxStates) {
+        int sink = compiled.sink;
+        block = new int[sink + 1];
+        Arrays.fill(block, -1);
+        order = new int[Math.min(sink, maxStates)];
+        int count = 0;
+        if (compiled.start != sink && !compiled.isDead(compiled.start)) {
+            if (maxStates == 0) {
+                return false;
+            }
+            block[compiled.start] = count;
+            order[count++] = compiled.start;
+        }
+        char[] symbols = compiled.symbols.clone();
+        Arrays.sort(symbols);
+        keys = new char[order.length][];
+        address = new int[order.length];
+        int pc = PROLOGUE_LENGTH;
+        char[] live = new char[symbols.length];
+        for (int b = 0; b < count; b++) {
+            int state = order[b];
+            int size = 0;
+            for (char symbol : symbols) {
+                int next = compiled.next(state, symbol);
+                if (next == sink) {
+                    continue;
+                }
+                live[size++] = symbol;
+                if (block[next] == -1) {
+                    if (count == order.length) {
+                        return false;
+                    }
+                    block[next] = count;
+                    order[count++] = next;
+                }
+            }
+            keys[b] = Arrays.copyOf(live, size);
+            address[b] = pc;
+            pc = switchAddress(pc) + switchLength(pc, size);
+            if (pc > MAX_CODE_LENGTH) {
+                return false;
+            }
+        }
+        order = Arrays.copyOf(order, count);
+        reject = pc;
+        accept = pc + 2;
+        codeLength = pc + 4;
+        return codeLength <= MAX_CODE_LENGTH;
+    }
+
+    private static int switchAddress(int blockAddress) {
+        return blockAddress + READ_LENGTH;
+    }
+
+    /**
+     * Gets the length of a lookupswitch, whose table must start at a
+     * multiple of four bytes from the start of the code.
+     */
+    private static int switchLength(int blockAddress, int pairs) {
+        int opcode = switchAddress(blockAddress);
+        int padding = (4 - (opcode + 1) % 4) % 4;
+        return 1 + padding + 8 + 8 * pairs;
+    }
+
+    /**
+     * Writes the class file: a public final class implementing
+     * {@link SpecializedDFA.Program} with a constructor and accepts.
+     */
+    private byte[] classFile() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(codeLength + 512);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0xcafebabe);
+            out.writeShort(0);
+            out.writeShort(49);
+            writeConstantPool(out);
+            out.writeShort(0x0001 | 0x0010 | 0x0020); // public final super
+            out.writeShort(THIS_CLASS);
+            out.writeShort(OBJECT_CLASS);
+            out.writeShort(1);
+            out.writeShort(PROGRAM_CLASS);
+            out.writeShort(0); // fields
+            out.writeShort(2); // methods
+
+            byte[] init = {ALOAD_0, (byte) INVOKESPECIAL, 0, OBJECT_INIT, (byte) RETURN};
+            writeMethod(out, INIT_NAME, VOID_DESCRIPTOR, 1, 1, init);
+            writeMethod(out, ACCEPTS_NAME, ACCEPTS_DESCRIPTOR, 2, 4, acceptsCode());
+
+            out.writeShort(0); // attributes
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeConstantPool(DataOutputStream out) throws IOException {
+        out.writeShort(CONSTANT_POOL_COUNT);
+        utf8(out, CLASS_NAME);                    // 1
+        reference(out, 7, 1);                     // 2 Class
+        utf8(out, "java/lang/Object");            // 3
+        reference(out, 7, 3);                     // 4 Class
+        utf8(out, PROGRAM_NAME);                  // 5
+        reference(out, 7, 5);                     // 6 Class
+        utf8(out, "<init>");                      // 7
+        utf8(out, "()V");                         // 8
+        pair(out, 12, 7, 8);                      // 9 NameAndType
+        pair(out, 10, 4, 9);                      // 10 Methodref Object.<init>
+        utf8(out, "accepts");                     // 11
+        utf8(out, "(Ljava/lang/CharSequence;)Z"); // 12
+        utf8(out, "java/lang/CharSequence");      // 13
+        reference(out, 7, 13);                    // 14 Class
+        utf8(out, "length");                      // 15
+        utf8(out, "()I");                         // 16
+        pair(out, 12, 15, 16);                    // 17 NameAndType
+        pair(out, 11, 14, 17);                    // 18 InterfaceMethodref length
+        utf8(out, "charAt");                      // 19
+        utf8(out, "(I)C");                        // 20
+        pair(out, 12, 19, 20);                    // 21 NameAndType
+        pair(out, 11, 14, 21);                    // 22 InterfaceMethodref charAt
+        utf8(out, "Code");                        // 23
+    }
+
+    private static void utf8(DataOutputStream out, String value) throws IOException {
+        out.writeByte(1);
+        out.writeUTF(value);
+    }
+
+    private static void reference(DataOutputStream out, int tag, int index) throws IOException {
+        out.writeByte(tag);
+        out.writeShort(index);
+    }
+
+    private static void pair(DataOutputStream out, int tag, int first, int second) throws IOException {
+        out.writeByte(tag);
+        out.writeShort(first);
+        out.writeShort(second);
+    }
+
+    private static void writeMethod(DataOutputStream out, int name, int descriptor, int maxStack,
+            int maxLocals, byte[] code) throws IOException {
+        out.writeShort(0x0001); // public
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(CODE);
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0); // exception table
+        out.writeShort(0); // attributes
+    }
+
+    /**
+     * Writes the code of accepts(CharSequence s), with i in local 2 and
+     * s.length() in local 3:
+     * <pre>
+     * prologue: i = 0; n = s.length(); (falls into the start state)
+     * state q:  if (i >= n) goto q final ? accept : reject;
+     *           switch (s.charAt(i++)) { case a: goto next(q, a); ... default: goto reject; }
+     * reject:   return false;
+     * accept:   return true;
+     * </pre>
+     * Without a live start state the prologue falls into reject.
+     */
+    private byte[] acceptsCode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(codeLength);
+        DataOutputStream code = new DataOutputStream(bytes);
+        try {
+            code.writeByte(ICONST_0);
+            code.writeByte(ISTORE_2);
+            code.writeByte(ALOAD_1);
+            code.writeByte(INVOKEINTERFACE);
+            code.writeShort(LENGTH);
+            code.writeByte(1);
+            code.writeByte(0);
+            code.writeByte(ISTORE_3);
+
+            for (int b = 0; b < order.length; b++) {
+                int state = order[b];
+                int pc = address[b];
+                code.writeByte(ILOAD_2);
+                code.writeByte(ILOAD_3);
+                code.writeByte(IF_ICMPGE);
+                code.writeShort((compiled.isFinal(state) ? accept : reject) - (pc + 2));
+                code.writeByte(ALOAD_1);
+                code.writeByte(ILOAD_2);
+                code.writeByte(INVOKEINTERFACE);
+                code.writeShort(CHAR_AT);
+                code.writeByte(2);
+                code.writeByte(0);
+                code.writeByte(IINC);
+                code.writeByte(2);
+                code.writeByte(1);
+
+                int opcode = switchAddress(pc);
+                code.writeByte(LOOKUPSWITCH);
+                while (code.size() % 4 != 0) {
+                    code.writeByte(0);
+                }
+                code.writeInt(reject - opcode);
+                code.writeInt(keys[b].length);
+                for (char symbol : keys[b]) {
+                    code.writeInt(symbol);
+                    code.writeInt(address[block[compiled.next(state, symbol)]] - opcode);
+                }
+            }
+
+            code.writeByte(ICONST_0);
+            code.writeByte(IRETURN);
+            code.writeByte(ICONST_1);
+            code.writeByte(IRETURN);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
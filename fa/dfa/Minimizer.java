@@ -0,0 +1,266 @@
+package fa.dfa;
+
+import java.util.Arrays;
+
+/**
+ * Minimizes a compiled DFA with Hopcroft's partition refinement
+ * algorithm, which runs in O(n·k·log n) time for k classes of symbols.
+ *
+ * Unreachable states are removed first. The sink stands in for every
+ * missing transition so the DFA is complete while it is refined, and the
+ * block of states that are equivalent to the sink is dropped again from
+ * the result. Every state of the result is named after the state of its
+ * block that was added to the original DFA first.
+ */
+final class Minimizer {
+    private final CompiledDFA compiled;
+    /** Maps an original id to a dense id among the reachable states, -1 if unreachable. */
+    private final int[] dense;
+    /** Maps a dense id back to an original id, the sink is the last one. */
+    private final int[] original;
+    private final int n;
+    private final int symbols;
+    /** The column of each symbol of Sigma. */
+    private final int[] columns;
+    /** The distinct columns of Sigma, the partition is only refined on these. */
+    private final int[] classes;
+
+    // Partition: the states of block b are elems[blockStart[b] .. blockEnd[b])
+    private final int[] elems;
+    private final int[] loc;
+    private final int[] blockOf;
+    private final int[] blockStart;
+    private final int[] blockEnd;
+    private final int[] marked;
+    private int blockCount;
+
+    private Minimizer(CompiledDFA compiled) {
+        this.compiled = compiled;
+        this.columns = compiled.symbolColumns();
+        this.symbols = columns.length;
+        this.classes = compiled.classColumns();
+        this.dense = new int[compiled.sink + 1];
+        Arrays.fill(dense, -1);
+        this.original = reachable();
+        this.n = original.length;
+        this.elems = new int[n];
+        this.loc = new int[n];
+        this.blockOf = new int[n];
+        this.blockStart = new int[n];
+        this.blockEnd = new int[n];
+        this.marked = new int[n];
+    }
+
+    /**
+     * Computes a minimal DFA that accepts the same language as a
+     * compiled DFA.
+     *
+     * @param compiled the DFA to minimize.
+     * @return a builder holding the minimal DFA.
+     */
+    static DFABuilder minimize(CompiledDFA compiled) {
+        DFABuilder builder = new DFABuilder(compiled.symbols);
+        if (compiled.start == compiled.sink) {
+            return builder;
+        }
+        Minimizer minimizer = new Minimizer(compiled);
+        minimizer.refine();
+        return minimizer.toBuilder(builder);
+    }
+
+    /**
+     * Finds the states reachable from the start state, numbering them
+     * densely in original id order, with the sink always last.
+     */
+    private int[] reachable() {
+        boolean[] seen = new boolean[compiled.sink + 1];
+        int[] stack = new int[compiled.sink + 1];
+        int top = 0;
+        stack[top++] = compiled.start;
+        seen[compiled.start] = true;
+        seen[compiled.sink] = true;
+        while (top > 0) {
+            int state = stack[--top];
+            for (int column : classes) {
+                int next = compiled.target(state, column);
+                if (!seen[next]) {
+                    seen[next] = true;
+                    stack[top++] = next;
+                }
+            }
+        }
+        int count = 0;
+        for (boolean b : seen) {
+            if (b) {
+                count++;
+            }
+        }
+        int[] ids = new int[count];
+        for (int state = 0, i = 0; state <= compiled.sink; state++) {
+            if (seen[state]) {
+                dense[state] = i;
+                ids[i++] = state;
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Refines the partition {F, Q \ F} until no block can be split.
+     */
+    private void refine() {
+        // Reverse transitions in compressed rows: the predecessors of t
+        // on class c are preds[predStart[c * (n + 1) + t] .. predStart[c * (n + 1) + t + 1])
+        int[] predStart = new int[classes.length * (n + 1) + 1];
+        for (int state = 0; state < n; state++) {
+            for (int c = 0; c < classes.length; c++) {
+                int t = dense[compiled.target(original[state], classes[c])];
+                predStart[c * (n + 1) + t + 1]++;
+            }
+        }
+        for (int i = 1; i < predStart.length; i++) {
+            predStart[i] += predStart[i - 1];
+        }
+        int[] fill = Arrays.copyOf(predStart, predStart.length);
+        int[] preds = new int[n * classes.length];
+        for (int state = 0; state < n; state++) {
+            for (int c = 0; c < classes.length; c++) {
+                int t = dense[compiled.target(original[state], classes[c])];
+                preds[fill[c * (n + 1) + t]++] = state;
+            }
+        }
+
+        // Initial partition, final states first
+        int finals = 0;
+        for (int state = 0; state < n; state++) {
+            if (compiled.isFinal(original[state])) {
+                place(state, finals++);
+            }
+        }
+        for (int state = 0, i = finals; state < n; state++) {
+            if (!compiled.isFinal(original[state])) {
+                place(state, i++);
+            }
+        }
+        int[] worklist = new int[n];
+        int pending = 0;
+        if (finals > 0) {
+            newBlock(0, finals);
+        }
+        if (finals < n) {
+            newBlock(finals, n);
+        }
+        if (blockCount == 2) {
+            worklist[pending++] = finals <= n - finals ? 0 : 1;
+        }
+
+        int[] splitter = new int[n];
+        int[] touched = new int[n];
+        while (pending > 0) {
+            int b = worklist[--pending];
+            int size = blockEnd[b] - blockStart[b];
+            System.arraycopy(elems, blockStart[b], splitter, 0, size);
+            for (int c = 0; c < classes.length; c++) {
+                int touchedCount = 0;
+                for (int i = 0; i < size; i++) {
+                    int t = splitter[i];
+                    for (int p = predStart[c * (n + 1) + t], end = predStart[c * (n + 1) + t + 1];
+                         p < end; p++) {
+                        int state = preds[p];
+                        int block = blockOf[state];
+                        int boundary = blockStart[block] + marked[block];
+                        if (loc[state] >= boundary) {
+                            if (marked[block] == 0) {
+                                touched[touchedCount++] = block;
+                            }
+                            int other = elems[boundary];
+                            place(other, loc[state]);
+                            place(state, boundary);
+                            marked[block]++;
+                        }
+                    }
+                }
+                for (int i = 0; i < touchedCount; i++) {
+                    int block = touched[i];
+                    int split = blockStart[block] + marked[block];
+                    marked[block] = 0;
+                    if (split == blockEnd[block]) {
+                        continue;
+                    }
+                    // The smaller part becomes the new block and is always a splitter:
+                    // either its parent is still pending, or it is the smaller half
+                    int newBlock;
+                    if (split - blockStart[block] <= blockEnd[block] - split) {
+                        newBlock = newBlock(blockStart[block], split);
+                        blockStart[block] = split;
+                    } else {
+                        newBlock = newBlock(split, blockEnd[block]);
+                        blockEnd[block] = split;
+                    }
+                    worklist[pending++] = newBlock;
+                }
+            }
+        }
+    }
+
+    private void place(int state, int position) {
+        elems[position] = state;
+        loc[state] = position;
+    }
+
+    private int newBlock(int start, int end) {
+        int block = blockCount++;
+        blockStart[block] = start;
+        blockEnd[block] = end;
+        for (int i = start; i < end; i++) {
+            blockOf[elems[i]] = block;
+        }
+        return block;
+    }
+
+    /**
+     * Adds one state per block to a builder, leaving out the block of the
+     * sink unless it holds the start state.
+     */
+    private DFABuilder toBuilder(DFABuilder builder) {
+        int deadBlock = blockOf[n - 1];
+        int startBlock = blockOf[dense[compiled.start]];
+        // Blocks are numbered in the order of their first state, which
+        // follows the insertion order of the original states
+        int[] blockId = new int[blockCount];
+        Arrays.fill(blockId, DFABuilder.NONE);
+        int[] representative = new int[blockCount];
+        for (int state = 0; state < n - 1; state++) {
+            int block = blockOf[state];
+            if (blockId[block] == DFABuilder.NONE && (block != deadBlock || block == startBlock)) {
+                blockId[block] = builder.addState(compiled.names[original[state]]);
+                representative[block] = state;
+            }
+        }
+
+        int[] row = new int[symbols];
+        for (int block = 0; block < blockCount; block++) {
+            if (blockId[block] == DFABuilder.NONE) {
+                continue;
+            }
+            int state = original[representative[block]];
+            for (int c = 0; c < symbols; c++) {
+                int target = blockOf[dense[compiled.target(state, columns[c])]];
+                row[c] = target == deadBlock ? DFABuilder.NONE : blockId[target];
+            }
+            builder.setRow(blockId[block], row);
+        }
+        builder.setStart(blockId[startBlock]);
+        boolean[] added = new boolean[blockCount];
+        for (int state : compiled.finalOrder) {
+            if (dense[state] >= 0) {
+                int block = blockOf[dense[state]];
+                if (!added[block]) {
+                    added[block] = true;
+                    builder.setFinal(blockId[block]);
+                }
+            }
+        }
+        return builder;
+    }
+}
@@ -0,0 +1,206 @@
+package fa.dfa;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Simulates a compiled DFA on a single large input using several threads.
+ * The input is split into chunks. The first chunk is simulated from the
+ * start state as usual, while every other chunk is simulated from every
+ * live state at once, which gives a mapping from the state the chunk is
+ * entered in to the state it is left in. Composing the mappings in order
+ * gives the state the whole input ends in.
+ *
+ * Simulating a chunk from every state is only cheap because the states
+ * quickly run into each other on most inputs: the simulation keeps one
+ * copy of each distinct current state, so the work per symbol is the
+ * number of states that have not merged yet. When a chunk still has more
+ * of those than there are threads after {@link #PROBE_LENGTH} symbols,
+ * running in parallel cannot win, and the input is simulated
+ * sequentially instead. Inputs that are short compared to the number of
+ * states are simulated sequentially from the start.
+ */
+final class ParallelMatcher {
+    /** Inputs shorter than this are always simulated sequentially. */
+    static final int MIN_PARALLEL_LENGTH = 1 << 20;
+    /** Chunks are never shorter than this. */
+    private static final int MIN_CHUNK_LENGTH = 1 << 16;
+    /** The number of symbols after which a chunk must have converged. */
+    static final int PROBE_LENGTH = 4096;
+    /** Chunks must be this many times longer than the number of states. */
+    private static final int SYMBOLS_PER_STATE = 16;
+
+    private ParallelMatcher() {
+    }
+
+    /**
+     * Simulates a DFA on an input string, in parallel if that is likely
+     * to be faster.
+     *
+     * @param compiled the DFA to simulate.
+     * @param s the input string.
+     * @param pool the pool to run the chunks on.
+     * @return true if the DFA accepts s.
+     */
+    static boolean accepts(CompiledDFA compiled, CharSequence s, ForkJoinPool pool) {
+        int n = s.length();
+        int threads = pool.getParallelism();
+        if (n < MIN_PARALLEL_LENGTH || threads < 2) {
+            return compiled.accepts(s);
+        }
+        int chunks = (int) Math.min(threads * 4L, n / MIN_CHUNK_LENGTH);
+        if (compiled.sink > n / chunks / SYMBOLS_PER_STATE) {
+            // Even the first symbols of every chunk would cost too much
+            return compiled.accepts(s);
+        }
+        ChunkTask[] tasks = new ChunkTask[chunks - 1];
+        for (int i = 1; i < chunks; i++) {
+            tasks[i - 1] = new ChunkTask(compiled, s, bound(n, chunks, i), bound(n, chunks, i + 1), threads);
+            pool.execute(tasks[i - 1]);
+        }
+        // The first chunk is entered in the start state, so it needs no mapping
+        int state = compiled.run(compiled.start, s, 0, bound(n, chunks, 1));
+        int[][] mappings = new int[tasks.length][];
+        for (int i = 0; i < tasks.length; i++) {
+            mappings[i] = tasks[i].join();
+            if (mappings[i] == null) {
+                for (ChunkTask task : tasks) {
+                    task.cancel(false);
+                }
+                return compiled.accepts(s);
+            }
+        }
+        for (int[] mapping : mappings) {
+            if (state == compiled.sink) {
+                return false;
+            }
+            state = mapping[state];
+        }
+        return compiled.isFinal(state);
+    }
+
+    private static int bound(int n, int chunks, int i) {
+        return (int) ((long) n * i / chunks);
+    }
+
+    /**
+     * Simulates part of the input from every state.
+     *
+     * @param compiled the DFA to simulate.
+     * @param s the input string.
+     * @param from the index of the first symbol.
+     * @param to the index after the last symbol.
+     * @param limit the most distinct states that may be left after
+     * {@link #PROBE_LENGTH} symbols.
+     * @return the state reached from each state, indexed by state with
+     * the sink included, or null if the states did not merge quickly
+     * enough.
+     */
+    static int[] mapping(CompiledDFA compiled, CharSequence s, int from, int to, int limit) {
+        int sink = compiled.sink;
+        // origins[o] is a live state, and current[slot[o]] the state it has reached
+        int[] origins = new int[sink];
+        int count = 0;
+        for (int state = 0; state < sink; state++) {
+            if (!compiled.isDead(state)) {
+                origins[count++] = state;
+            }
+        }
+        int[] slot = new int[count];
+        int[] current = new int[count];
+        for (int o = 0; o < count; o++) {
+            slot[o] = o;
+            current[o] = origins[o];
+        }
+        int active = count;
+        // firstSlot[q] is the slot holding q in the current step, if seenAt[q] == step
+        int[] seenAt = new int[sink + 1];
+        int[] firstSlot = new int[sink + 1];
+        int[] moved = new int[count];
+        int step = 0;
+        int i = from;
+        for (; i < to && active > 1; i++) {
+            char symbol = s.charAt(i);
+            step++;
+            int merged = active;
+            for (int k = 0; k < active; k++) {
+                int next = compiled.next(current[k], symbol);
+                current[k] = next;
+                if (seenAt[next] == step) {
+                    moved[k] = firstSlot[next];
+                    merged--;
+                } else {
+                    seenAt[next] = step;
+                    firstSlot[next] = k;
+                    moved[k] = -1;
+                }
+            }
+            if (merged < active) {
+                active = compact(current, moved, slot, count, active);
+            }
+            if (i - from + 1 == PROBE_LENGTH && active > limit) {
+                return null;
+            }
+        }
+        if (active == 1) {
+            // Every live state has merged into one, which reads the rest alone
+            current[0] = compiled.run(current[0], s, i, to);
+        }
+        int[] mapping = new int[sink + 1];
+        Arrays.fill(mapping, sink);
+        for (int o = 0; o < count; o++) {
+            mapping[origins[o]] = current[slot[o]];
+        }
+        return mapping;
+    }
+
+    /**
+     * Removes the slots that merged into earlier ones.
+     *
+     * @param moved for each slot, the slot it merged into, or -1.
+     * @return the number of slots left.
+     */
+    private static int compact(int[] current, int[] moved, int[] slot, int count, int active) {
+        int[] renumber = moved;
+        int kept = 0;
+        for (int k = 0; k < active; k++) {
+            if (moved[k] < 0) {
+                current[kept] = current[k];
+                renumber[k] = kept++;
+            } else {
+                renumber[k] = renumber[moved[k]];
+            }
+        }
+        for (int o = 0; o < count; o++) {
+            slot[o] = renumber[slot[o]];
+        }
+        return kept;
+    }
+
+    /**
+     * Computes the mapping of one chunk.
+     */
+    private static final class ChunkTask extends RecursiveTask<int[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final CompiledDFA compiled;
+        private final CharSequence s;
+        private final int from;
+        private final int to;
+        private final int limit;
+
+        ChunkTask(CompiledDFA compiled, CharSequence s, int from, int to, int limit) {
+            this.compiled = compiled;
+            this.s = s;
+            this.from = from;
+            this.to = to;
+            this.limit = limit;
+        }
+
+        @Override
+        protected int[] compute() {
+            return mapping(compiled, s, from, to, limit);
+        }
+    }
+}
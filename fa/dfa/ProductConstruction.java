@@ -0,0 +1,186 @@
+package fa.dfa;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Builds product and complement automata from compiled DFAs.
+ *
+ * A product runs two DFAs side by side over the union of their alphabets.
+ * Its states are pairs of states, and only the pairs that are reachable
+ * from the pair of start states are created. A symbol outside of one
+ * DFA's Sigma, or a missing transition, moves that DFA to its sink. Pairs
+ * from which the result can never accept are left out, so the transitions
+ * into them are missing, just like in a hand-built DFA.
+ */
+final class ProductConstruction {
+
+    /**
+     * The boolean operation a product applies to its two languages.
+     */
+    enum Operation {
+        INTERSECTION, UNION, DIFFERENCE;
+
+        boolean isFinal(boolean first, boolean second) {
+            switch (this) {
+                case INTERSECTION:
+                    return first && second;
+                case UNION:
+                    return first || second;
+                default:
+                    return first && !second;
+            }
+        }
+
+        /**
+         * Determines if a pair can never accept, given which of its two
+         * states are sinks.
+         */
+        boolean isDead(boolean firstSink, boolean secondSink) {
+            switch (this) {
+                case INTERSECTION:
+                    return firstSink || secondSink;
+                case UNION:
+                    return firstSink && secondSink;
+                default:
+                    return firstSink;
+            }
+        }
+    }
+
+    private ProductConstruction() {
+    }
+
+    /**
+     * Builds the product of two DFAs.
+     *
+     * @param a the first DFA.
+     * @param b the second DFA.
+     * @param operation how the languages of the DFAs are combined.
+     * @return a builder holding the product DFA.
+     */
+    static DFABuilder product(CompiledDFA a, CompiledDFA b, Operation operation) {
+        char[] symbols = union(a.symbols, b.symbols);
+        int[] columnA = new int[symbols.length];
+        int[] columnB = new int[symbols.length];
+        for (int i = 0; i < symbols.length; i++) {
+            columnA[i] = a.column(symbols[i]);
+            columnB[i] = b.column(symbols[i]);
+        }
+
+        DFABuilder builder = new DFABuilder(symbols);
+        Set<String> names = new HashSet<>();
+        LongIntMap ids = new LongIntMap(Math.max(a.sink, b.sink));
+        int[] first = new int[16];
+        int[] second = new int[16];
+        long width = b.sink + 1L;
+
+        // The start pair is kept even if it is dead, so the product has a start state
+        ids.put(a.start * width + b.start, builder.addState(uniqueName(names, pairName(a, b, a.start, b.start))));
+        first[0] = a.start;
+        second[0] = b.start;
+        int[] row = new int[symbols.length];
+        for (int state = 0; state < ids.size(); state++) {
+            int p = first[state];
+            int q = second[state];
+            for (int i = 0; i < symbols.length; i++) {
+                int nextP = a.target(p, columnA[i]);
+                int nextQ = b.target(q, columnB[i]);
+                if (operation.isDead(nextP == a.sink, nextQ == b.sink)) {
+                    row[i] = DFABuilder.NONE;
+                    continue;
+                }
+                long key = nextP * width + nextQ;
+                int id = ids.get(key);
+                if (id == LongIntMap.MISSING) {
+                    id = builder.addState(uniqueName(names, pairName(a, b, nextP, nextQ)));
+                    ids.put(key, id);
+                    if (id == first.length) {
+                        first = Arrays.copyOf(first, id * 2);
+                        second = Arrays.copyOf(second, id * 2);
+                    }
+                    first[id] = nextP;
+                    second[id] = nextQ;
+                }
+                row[i] = id;
+            }
+            builder.setRow(state, row);
+            if (operation.isFinal(a.isFinal(p), b.isFinal(q))) {
+                builder.setFinal(state);
+            }
+        }
+        builder.setStart(0);
+        return builder;
+    }
+
+    /**
+     * Builds a DFA that accepts exactly the strings over Sigma that a DFA
+     * rejects. The sink becomes a real, final state if it is reachable.
+     *
+     * @param a the DFA to complement.
+     * @return a builder holding the complement DFA.
+     */
+    static DFABuilder complement(CompiledDFA a) {
+        DFABuilder builder = new DFABuilder(a.symbols);
+        int[] ids = new int[a.sink + 1];
+        Arrays.fill(ids, DFABuilder.NONE);
+        int[] order = new int[a.sink + 1];
+        Set<String> names = new HashSet<>(Arrays.asList(a.names));
+
+        ids[a.start] = builder.addState(a.start != a.sink ? a.names[a.start] : uniqueName(names, "sink"));
+        order[0] = a.start;
+        int[] columns = a.symbolColumns();
+        int[] row = new int[a.symbols.length];
+        for (int state = 0, count = 1; state < count; state++) {
+            int p = order[state];
+            for (int i = 0; i < a.symbols.length; i++) {
+                int next = a.target(p, columns[i]);
+                if (ids[next] == DFABuilder.NONE) {
+                    ids[next] = builder.addState(next != a.sink ? a.names[next] : uniqueName(names, "sink"));
+                    order[count++] = next;
+                }
+                row[i] = ids[next];
+            }
+            builder.setRow(state, row);
+            if (!a.isFinal(p)) {
+                builder.setFinal(state);
+            }
+        }
+        builder.setStart(0);
+        return builder;
+    }
+
+    /**
+     * Joins two alphabets, keeping the order of the first one and
+     * adding the new symbols of the second one after it.
+     */
+    static char[] union(char[] first, char[] second) {
+        Set<Character> seen = new HashSet<>();
+        char[] symbols = Arrays.copyOf(first, first.length + second.length);
+        for (char symbol : first) {
+            seen.add(symbol);
+        }
+        int count = first.length;
+        for (char symbol : second) {
+            if (seen.add(symbol)) {
+                symbols[count++] = symbol;
+            }
+        }
+        return Arrays.copyOf(symbols, count);
+    }
+
+    private static String pairName(CompiledDFA a, CompiledDFA b, int p, int q) {
+        return "(" + (p != a.sink ? a.names[p] : "-") + "," + (q != b.sink ? b.names[q] : "-") + ")";
+    }
+
+    /**
+     * Makes a name unique by adding primes to it.
+     */
+    private static String uniqueName(Set<String> names, String name) {
+        while (!names.add(name)) {
+            name += "'";
+        }
+        return name;
+    }
+}
@@ -0,0 +1,86 @@
+package fa.dfa;
+
+/**
+ * Matches strings with code generated for one DFA. Created by
+ * {@link DFA#specialize()} and {@link FrozenDFA#specialize()}.
+ *
+ * A table-driven DFA loads the column of each symbol and the next state
+ * from arrays. A SpecializedDFA instead turns the DFA into a class of its
+ * own, in which every state is a switch on the symbol whose cases jump
+ * to the code of the next state, with the states, symbols and final
+ * states written into the code as constants. The JIT compiles that like
+ * hand-written code. It pays off when the path through the DFA repeats,
+ * as on text with long runs of the same symbols, where it is up to a few
+ * times faster than the table. On input whose symbols follow no pattern,
+ * the jumps are mispredicted and the table is faster, so measure on real
+ * input first; bench/dfa/SpecializeBenchmark compares both.
+ *
+ * The code grows with the number of transitions, and the JIT does not
+ * compile very long methods, so DFAs with more live states than a limit,
+ * or whose code would be too long, are matched by the table instead.
+ * {@link #isGenerated()} tells which one is used. Either way the result
+ * is that of {@link DFA#accepts(String)}.
+ *
+ * A SpecializedDFA works on the DFA as it was when it was created and
+ * can be shared between threads.
+ */
+public final class SpecializedDFA {
+    /** The most live states {@link DFA#specialize()} generates code for. */
+    public static final int DEFAULT_MAX_STATES = 64;
+
+    private final CompiledDFA compiled;
+    /** The generated code, or null if the table is used. */
+    private final Program program;
+
+    /**
+     * Creates a SpecializedDFA, generating its code if the DFA is small
+     * enough.
+     *
+     * @param compiled the DFA.
+     * @param maxStates the most live states to generate code for.
+     * @throws IllegalArgumentException if maxStates is negative.
+     */
+    SpecializedDFA(CompiledDFA compiled, int maxStates) {
+        if (maxStates < 0) {
+            throw new IllegalArgumentException("The state limit must not be negative, not " + maxStates);
+        }
+        this.compiled = compiled;
+        this.program = MatcherGenerator.generate(compiled, maxStates);
+    }
+
+    /**
+     * Simulates the DFA on an input string.
+     *
+     * @param s the input string.
+     * @return true if the DFA accepts s, false if it does not or s is null.
+     */
+    public boolean accepts(CharSequence s) {
+        if (s == null) {
+            return false;
+        }
+        return program != null ? program.accepts(s) : compiled.accepts(s);
+    }
+
+    /**
+     * Determines if code was generated for the DFA, or it is matched by
+     * its table because it is too large.
+     *
+     * @return true if code was generated.
+     */
+    public boolean isGenerated() {
+        return program != null;
+    }
+
+    /**
+     * The type of the generated classes.
+     */
+    interface Program {
+        /**
+         * Simulates the DFA on an input string.
+         *
+         * @param s the input string, not null.
+         * @return true if the DFA accepts s.
+         */
+        boolean accepts(CharSequence s);
+    }
+}
@@ -0,0 +1,259 @@
+package fa.dfa;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runs several DFAs at once, as a single DFA whose final states are
+ * tagged with the pattern they accept. Built by {@link #of(DFAInterface...)}.
+ *
+ * The DFAs are numbered by their position in the list, and a lower number
+ * means a higher priority: a state is tagged with the first DFA that
+ * accepts in it. The combined DFA runs over the union of the alphabets,
+ * and its states are the tuples of states of the DFAs that are reachable
+ * from the tuple of start states, so every input is read once no matter
+ * how many DFAs there are. A TaggedDFA is immutable and can be shared
+ * between threads.
+ */
+public final class TaggedDFA {
+    /** Tag of a state that no DFA accepts in. */
+    public static final int NO_TOKEN = -1;
+
+    private final CompiledDFA compiled;
+    /** The tag of each state, {@link #NO_TOKEN} for the sink. */
+    private final int[] tags;
+    private final int patternCount;
+
+    private TaggedDFA(CompiledDFA compiled, int[] tags, int patternCount) {
+        this.compiled = compiled;
+        this.tags = tags;
+        this.patternCount = patternCount;
+    }
+
+    /**
+     * Receives the tokens found by {@link #tokenize(CharSequence, TokenSink)}.
+     */
+    @FunctionalInterface
+    public interface TokenSink {
+        /**
+         * Receives one token.
+         *
+         * @param tokenId the number of the DFA that matched the token.
+         * @param start the index of the first symbol of the token.
+         * @param end the index after the last symbol of the token.
+         */
+        void token(int tokenId, int start, int end);
+    }
+
+    /**
+     * Combines DFAs into a tagged DFA.
+     *
+     * @param patterns the DFAs, highest priority first.
+     * @return the tagged DFA.
+     * @throws IllegalArgumentException if there are no DFAs.
+     */
+    public static TaggedDFA of(DFAInterface... patterns) {
+        if (patterns.length == 0) {
+            throw new IllegalArgumentException("At least one DFA is needed");
+        }
+        CompiledDFA[] parts = new CompiledDFA[patterns.length];
+        char[] symbols = new char[0];
+        for (int i = 0; i < patterns.length; i++) {
+            parts[i] = CompiledDFA.from(patterns[i]);
+            symbols = ProductConstruction.union(symbols, parts[i].symbols);
+        }
+        int[][] columns = new int[parts.length][symbols.length];
+        for (int i = 0; i < parts.length; i++) {
+            for (int j = 0; j < symbols.length; j++) {
+                columns[i][j] = parts[i].column(symbols[j]);
+            }
+        }
+
+        Map<Tuple, Integer> ids = new HashMap<>();
+        Tuple[] tuples = new Tuple[16];
+        String[] names = new String[16];
+        int[] delta = new int[16 * symbols.length];
+        int[] tags = new int[16];
+        int count = 0;
+        int[] startStates = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            startStates[i] = live(parts[i], parts[i].start);
+        }
+        Tuple startTuple = new Tuple(startStates);
+        ids.put(startTuple, count);
+        tuples[count++] = startTuple;
+
+        for (int state = 0; state < count; state++) {
+            int[] current = tuples[state].states;
+            names[state] = name(parts, current);
+            tags[state] = tag(parts, current);
+            for (int j = 0; j < symbols.length; j++) {
+                int[] next = new int[parts.length];
+                boolean dead = true;
+                for (int i = 0; i < parts.length; i++) {
+                    next[i] = live(parts[i], parts[i].target(current[i], columns[i][j]));
+                    dead &= next[i] == parts[i].sink;
+                }
+                int id = DFABuilder.NONE;
+                if (!dead) {
+                    Tuple tuple = new Tuple(next);
+                    Integer known = ids.get(tuple);
+                    if (known == null) {
+                        if (count == tuples.length) {
+                            tuples = Arrays.copyOf(tuples, count * 2);
+                            names = Arrays.copyOf(names, count * 2);
+                            tags = Arrays.copyOf(tags, count * 2);
+                            delta = Arrays.copyOf(delta, count * 2 * symbols.length);
+                        }
+                        ids.put(tuple, count);
+                        tuples[count] = tuple;
+                        known = count++;
+                    }
+                    id = known;
+                }
+                delta[state * symbols.length + j] = id;
+            }
+        }
+
+        int[] finals = new int[count];
+        int finalCount = 0;
+        for (int state = 0; state < count; state++) {
+            if (tags[state] != NO_TOKEN) {
+                finals[finalCount++] = state;
+            }
+        }
+        // The sink is the state after the last one
+        tags = Arrays.copyOf(tags, count + 1);
+        tags[count] = NO_TOKEN;
+        CompiledDFA compiled = CompiledDFA.of(symbols, names, count, delta, 0,
+                Arrays.copyOf(finals, finalCount));
+        return new TaggedDFA(compiled, tags, parts.length);
+    }
+
+    /**
+     * Gets the number of DFAs that were combined.
+     *
+     * @return the number of DFAs, which are numbered from 0.
+     */
+    public int patternCount() {
+        return patternCount;
+    }
+
+    /**
+     * Finds the DFA with the highest priority that accepts a string.
+     *
+     * @param s the input string.
+     * @return the number of the DFA, or {@link #NO_TOKEN} if none accepts s.
+     */
+    public int match(CharSequence s) {
+        if (s == null) {
+            return NO_TOKEN;
+        }
+        // Universal states may carry different tags, so every symbol is read
+        int state = compiled.start;
+        for (int i = 0, n = s.length(); i < n && state != compiled.sink; i++) {
+            state = compiled.next(state, s.charAt(i));
+        }
+        return tags[state];
+    }
+
+    /**
+     * Splits a text into tokens, reading the longest token at each
+     * position (maximal munch) and tagging it with the DFA of the highest
+     * priority that accepts it. Empty tokens are never produced. Tokens
+     * are passed to the sink as they are found, so nothing is allocated
+     * per token.
+     *
+     * @param text the text to split.
+     * @param sink receives the tokens, in order.
+     * @return the length of the text if all of it was split into tokens,
+     * otherwise the index where no token could be read.
+     */
+    public int tokenize(CharSequence text, TokenSink sink) {
+        int n = text.length();
+        int position = 0;
+        while (position < n) {
+            int state = compiled.start;
+            int end = -1;
+            int token = NO_TOKEN;
+            for (int i = position; i < n; i++) {
+                state = compiled.next(state, text.charAt(i));
+                if (state == compiled.sink) {
+                    break;
+                }
+                if (tags[state] != NO_TOKEN) {
+                    end = i + 1;
+                    token = tags[state];
+                }
+            }
+            if (end < 0) {
+                return position;
+            }
+            sink.token(token, position, end);
+            position = end;
+        }
+        return n;
+    }
+
+    /**
+     * Construct the textual representation of the tagged DFA, whose
+     * states are named after the tuples of states they stand for.
+     *
+     * @return String representation of the tagged DFA
+     */
+    @Override
+    public String toString() {
+        return compiled.toString();
+    }
+
+    /**
+     * Gets a state, or the sink if no final state can be reached from it.
+     */
+    private static int live(CompiledDFA part, int state) {
+        return part.isDead(state) ? part.sink : state;
+    }
+
+    private static int tag(CompiledDFA[] parts, int[] states) {
+        for (int i = 0; i < parts.length; i++) {
+            if (parts[i].isFinal(states[i])) {
+                return i;
+            }
+        }
+        return NO_TOKEN;
+    }
+
+    private static String name(CompiledDFA[] parts, int[] states) {
+        StringBuilder sb = new StringBuilder("(");
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                sb.append(",");
+            }
+            sb.append(states[i] != parts[i].sink ? parts[i].names[states[i]] : "-");
+        }
+        return sb.append(")").toString();
+    }
+
+    /**
+     * A tuple of states, one of each DFA.
+     */
+    private static final class Tuple {
+        final int[] states;
+        private final int hash;
+
+        Tuple(int[] states) {
+            this.states = states;
+            this.hash = Arrays.hashCode(states);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Tuple && Arrays.equals(states, ((Tuple) o).states);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
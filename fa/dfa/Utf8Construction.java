@@ -0,0 +1,204 @@
+package fa.dfa;
+
+import java.util.Arrays;
+
+/**
+ * Builds a DFA over the bytes of UTF-8 from a DFA over chars.
+ *
+ * Every state of the char DFA that can be reached becomes a state of the
+ * byte DFA. Between two of them, the byte DFA walks through intermediate
+ * states that remember the state it came from and the bits of the code
+ * point decoded so far. Once the last byte of a code point is read, the
+ * char DFA is run on the chars of the code point: one char for the Basic
+ * Multilingual Plane, a surrogate pair for the supplementary planes.
+ *
+ * Only intermediate states that can still lead to a state other than the
+ * sink are created, so their number is bounded by the prefixes of the
+ * encodings of Sigma. Malformed UTF-8 (overlong encodings, encoded
+ * surrogates, code points above U+10FFFF, stray continuation bytes) leads
+ * to the sink, so it is always rejected.
+ */
+final class Utf8Construction {
+    /** The byte alphabet, every byte is read as the char with its unsigned value. */
+    private static final char[] BYTES = new char[256];
+
+    static {
+        for (int b = 0; b < BYTES.length; b++) {
+            BYTES[b] = (char) b;
+        }
+    }
+
+    /** The smallest and largest code point encoded with 0 to 4 bytes. */
+    private static final int[] MIN_CODE_POINT = {0, 0, 0x80, 0x800, 0x10000};
+    private static final int[] MAX_CODE_POINT = {0, 0x7F, 0x7FF, 0xFFFF, 0x10FFFF};
+
+    private final CompiledDFA compiled;
+    private final LongIntMap ids;
+    private long[] keys = new long[16];
+    private String[] names = new String[16];
+    private int[] delta = new int[16 * 256];
+    private int count;
+
+    private Utf8Construction(CompiledDFA compiled) {
+        this.compiled = compiled;
+        this.ids = new LongIntMap(compiled.sink * 2);
+    }
+
+    /**
+     * Builds the byte-level form of a compiled DFA.
+     *
+     * @param compiled the DFA over chars.
+     * @return a DFA over bytes that accepts the UTF-8 encoding of exactly
+     * the strings the char DFA accepts.
+     */
+    static CompiledDFA of(CompiledDFA compiled) {
+        return new Utf8Construction(compiled).build();
+    }
+
+    private CompiledDFA build() {
+        int startId = -1;
+        if (compiled.start != compiled.sink) {
+            startId = id(compiled.start, 0, 0, 0);
+        }
+        for (int state = 0; state < count; state++) {
+            long key = keys[state];
+            int q = (int) key;
+            int have = (int) (key >>> 32) & 0xF;
+            int need = (int) (key >>> 36) & 0xF;
+            int bits = (int) (key >>> 40);
+            for (int b = 0; b < 256; b++) {
+                // Creating a state may grow delta, so the target is found first
+                int target = have == 0 ? lead(q, b) : continuation(q, need, have, bits, b);
+                delta[state * 256 + b] = target;
+            }
+        }
+
+        int[] finals = new int[count];
+        int finalCount = 0;
+        for (int state : compiled.finalOrder) {
+            int id = ids.get(state);
+            if (id != LongIntMap.MISSING) {
+                finals[finalCount++] = id;
+            }
+        }
+        return CompiledDFA.of(BYTES, names, count, delta, startId, Arrays.copyOf(finals, finalCount));
+    }
+
+    /**
+     * Gets the target of a byte read between two code points.
+     */
+    private int lead(int q, int b) {
+        if (b < 0x80) {
+            return complete(q, b);
+        } else if (b >= 0xC2 && b <= 0xDF) {
+            return partial(q, 2, 1, b & 0x1F);
+        } else if (b >= 0xE0 && b <= 0xEF) {
+            return partial(q, 3, 1, b & 0x0F);
+        } else if (b >= 0xF0 && b <= 0xF4) {
+            return partial(q, 4, 1, b & 0x07);
+        }
+        return DFABuilder.NONE;
+    }
+
+    /**
+     * Gets the target of a byte read inside of a code point.
+     */
+    private int continuation(int q, int need, int have, int bits, int b) {
+        if ((b & 0xC0) != 0x80) {
+            return DFABuilder.NONE;
+        }
+        bits = bits << 6 | (b & 0x3F);
+        if (have + 1 < need) {
+            return partial(q, need, have + 1, bits);
+        }
+        if (bits < MIN_CODE_POINT[need] || bits > MAX_CODE_POINT[need] || isSurrogate(bits)) {
+            return DFABuilder.NONE;
+        }
+        return complete(q, bits);
+    }
+
+    /**
+     * Gets the state reached once a whole code point is read.
+     */
+    private int complete(int q, int codePoint) {
+        int next = step(q, codePoint);
+        return next == compiled.sink ? DFABuilder.NONE : id(next, 0, 0, 0);
+    }
+
+    /**
+     * Gets the intermediate state for a code point that is partly read,
+     * or none if no code point with these leading bits can be accepted.
+     */
+    private int partial(int q, int need, int have, int bits) {
+        int shift = 6 * (need - have);
+        int low = Math.max(bits << shift, MIN_CODE_POINT[need]);
+        int high = Math.min(bits << shift | ((1 << shift) - 1), MAX_CODE_POINT[need]);
+        return isLive(q, low, high) ? id(q, need, have, bits) : DFABuilder.NONE;
+    }
+
+    /**
+     * Runs the char DFA on the chars of a code point.
+     */
+    private int step(int q, int codePoint) {
+        if (codePoint < 0x10000) {
+            return compiled.next(q, (char) codePoint);
+        }
+        int next = compiled.next(q, Character.highSurrogate(codePoint));
+        return next == compiled.sink ? next : compiled.next(next, Character.lowSurrogate(codePoint));
+    }
+
+    /**
+     * Determines if some code point in [low, high] leads from q to a
+     * state other than the sink.
+     */
+    private boolean isLive(int q, int low, int high) {
+        for (char symbol : compiled.symbols) {
+            if (!isSurrogate(symbol) && symbol >= low && symbol <= high
+                    && compiled.next(q, symbol) != compiled.sink) {
+                return true;
+            }
+            if (Character.isHighSurrogate(symbol) && high >= 0x10000) {
+                int base = Character.toCodePoint(symbol, Character.MIN_LOW_SURROGATE);
+                int next = compiled.next(q, symbol);
+                if (base > high || base + 0x3FF < low || next == compiled.sink) {
+                    continue;
+                }
+                for (char second : compiled.symbols) {
+                    int codePoint = base + second - Character.MIN_LOW_SURROGATE;
+                    if (Character.isLowSurrogate(second) && codePoint >= low && codePoint <= high
+                            && compiled.next(next, second) != compiled.sink) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSurrogate(int codePoint) {
+        return codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE;
+    }
+
+    /**
+     * Gets the id of a state of the byte DFA, creating it the first time.
+     * A state of the char DFA is the state with no bytes pending.
+     */
+    private int id(int q, int need, int have, int bits) {
+        long key = (long) bits << 40 | (long) need << 36 | (long) have << 32 | q;
+        int id = ids.get(key);
+        if (id != LongIntMap.MISSING) {
+            return id;
+        }
+        if (count == keys.length) {
+            keys = Arrays.copyOf(keys, count * 2);
+            names = Arrays.copyOf(names, count * 2);
+            delta = Arrays.copyOf(delta, count * 2 * 256);
+        }
+        id = count++;
+        keys[id] = key;
+        names[id] = have == 0 ? compiled.names[q]
+                : compiled.names[q] + "/" + have + ":" + Integer.toHexString(bits);
+        ids.put(key, id);
+        return id;
+    }
+}
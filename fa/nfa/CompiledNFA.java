@@ -0,0 +1,571 @@
+package fa.nfa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import fa.dfa.DFA;
+import fa.dfa.DFABuilder;
+
+/**
+ * A compact, array-based form of an NFA in which sets of states are
+ * bitsets: arrays of longs where bit q of word q / 64 stands for state q.
+ * It is the one place where epsilon closures and the subset construction
+ * are computed, for {@link NFA}, {@link FrozenNFA} and {@link LazyDFA}.
+ *
+ * Epsilon transitions are folded in when the NFA is compiled. For every
+ * symbol and state the table holds the epsilon closure of the states
+ * reached on the symbol, so one step of the simulation is the union of
+ * the rows of the current states, computed a word (64 states) at a time.
+ * Symbols with exactly the same transitions are grouped into one class
+ * and share their rows. The table takes |classes|·|Q|²/64 longs; an NFA
+ * for which that would pass {@link #MAX_DENSE_WORDS} keeps each row as
+ * a list of states instead, and its subset construction keys on sorted
+ * lists of states rather than bitsets, so its cost follows the number of
+ * current states rather than the size of the NFA.
+ *
+ * The subset construction keeps only the states that read a symbol or
+ * are final. The others cannot affect what is accepted after a step, and
+ * dropping them keeps sets that differ only in states passed through
+ * along epsilon transitions from becoming different DFA states. A
+ * CompiledNFA is immutable.
+ */
+final class CompiledNFA {
+    /** The most longs the table may take before rows are kept as lists of states. */
+    static final int MAX_DENSE_WORDS = 1 << 22;
+
+    final char[] symbols;
+    /** The class of each symbol plus one, or 0 for symbols outside Sigma. */
+    private final int[] classIndex;
+    /** The class of each symbol, by its index in Sigma. */
+    final int[] symbolClass;
+    /** The number of symbol classes. */
+    final int classes;
+    /** The number of states. */
+    final int size;
+    /** The number of longs in a set of states. */
+    final int words;
+    /** The epsilon closure of the start state, empty if there is none. */
+    private final long[] start;
+    private final long[] finals;
+    /** The states that read a symbol or are final. */
+    private final long[] live;
+    /** For each class, the row of each state, words longs per state; null if rows are lists. */
+    private final long[][] table;
+    /** For each class, where the list of each state starts in targets; a list ends where the next one starts. */
+    private final int[][] offsets;
+    /** For each class, the lists of all states one after the other; null if rows are bitsets. */
+    private final int[][] targets;
+
+    private CompiledNFA(char[] symbols, int[] symbolClass, int classes, int size, long[] start,
+            long[] finals, long[] live, long[][] table, int[][] offsets, int[][] targets) {
+        this.symbols = symbols;
+        this.symbolClass = symbolClass;
+        this.classes = classes;
+        this.size = size;
+        this.words = words(size);
+        this.start = start;
+        this.finals = finals;
+        this.live = live;
+        this.table = table;
+        this.offsets = offsets;
+        this.targets = targets;
+        int maxSymbol = -1;
+        for (char symbol : symbols) {
+            maxSymbol = Math.max(maxSymbol, symbol);
+        }
+        this.classIndex = new int[maxSymbol + 1];
+        for (int i = 0; i < symbols.length; i++) {
+            classIndex[symbols[i]] = symbolClass[i] + 1;
+        }
+    }
+
+    /**
+     * Compiles an NFA given as a list of transitions.
+     *
+     * @param symbols the alphabet.
+     * @param size the number of states.
+     * @param from the state each transition starts at.
+     * @param to the state each transition ends at.
+     * @param on the index in Sigma of the symbol of each transition, or
+     * -1 for an epsilon transition.
+     * @param transitionCount the number of transitions.
+     * @param startState the start state, or -1.
+     * @param finalStates the final states.
+     * @return the compiled NFA.
+     */
+    static CompiledNFA of(char[] symbols, int size, int[] from, int[] to, int[] on, int transitionCount,
+            int startState, int[] finalStates) {
+        int words = words(size);
+        int[][] closures = closures(size, from, to, on, transitionCount);
+
+        // Group the transitions by symbol, each sorted by state, and give
+        // the symbols with the same transitions the same class
+        long[][] bySymbol = new long[symbols.length][];
+        int[] counts = new int[symbols.length];
+        for (int i = 0; i < transitionCount; i++) {
+            if (on[i] >= 0) {
+                counts[on[i]]++;
+            }
+        }
+        for (int j = 0; j < symbols.length; j++) {
+            bySymbol[j] = new long[counts[j]];
+            counts[j] = 0;
+        }
+        long[] live = new long[words];
+        for (int i = 0; i < transitionCount; i++) {
+            if (on[i] >= 0) {
+                bySymbol[on[i]][counts[on[i]]++] = (long) from[i] << 32 | to[i];
+                live[from[i] >>> 6] |= 1L << from[i];
+            }
+        }
+        Map<Key, Integer> classIds = new HashMap<>();
+        List<long[]> classTransitions = new ArrayList<>();
+        int[] symbolClass = new int[symbols.length];
+        for (int j = 0; j < symbols.length; j++) {
+            Arrays.sort(bySymbol[j]);
+            Key key = new Key(bySymbol[j]);
+            Integer id = classIds.get(key);
+            if (id == null) {
+                id = classTransitions.size();
+                classIds.put(key, id);
+                classTransitions.add(bySymbol[j]);
+            }
+            symbolClass[j] = id;
+        }
+
+        int classes = classTransitions.size();
+        boolean dense = (long) classes * size * words <= MAX_DENSE_WORDS;
+        long[][] table = dense ? new long[classes][size * words] : null;
+        int[][] offsets = dense ? null : new int[classes][];
+        int[][] targets = dense ? null : new int[classes][];
+        int[] seen = new int[size];
+        int stamp = 0;
+        int[] row = new int[size];
+        for (int c = 0; c < classes && dense; c++) {
+            for (long transition : classTransitions.get(c)) {
+                int fromRow = (int) (transition >>> 32) * words;
+                for (int reached : closures[(int) transition]) {
+                    table[c][fromRow + (reached >>> 6)] |= 1L << reached;
+                }
+            }
+        }
+        for (int c = 0; c < classes && !dense; c++) {
+            long[] transitions = classTransitions.get(c);
+            int[] offset = new int[size + 1];
+            int[] target = new int[16];
+            int length = 0;
+            int i = 0;
+            for (int state = 0; state < size; state++) {
+                offset[state] = length;
+                // Stamp each state added to this row so it is added once
+                stamp++;
+                int count = 0;
+                for (; i < transitions.length && (int) (transitions[i] >>> 32) == state; i++) {
+                    for (int reached : closures[(int) transitions[i]]) {
+                        if (seen[reached] != stamp) {
+                            seen[reached] = stamp;
+                            row[count++] = reached;
+                        }
+                    }
+                }
+                if (length + count > target.length) {
+                    target = Arrays.copyOf(target, Math.max(length + count, target.length * 2));
+                }
+                System.arraycopy(row, 0, target, length, count);
+                length += count;
+            }
+            offset[size] = length;
+            offsets[c] = offset;
+            targets[c] = Arrays.copyOf(target, length);
+        }
+
+        long[] start = new long[words];
+        if (startState >= 0) {
+            for (int state : closures[startState]) {
+                start[state >>> 6] |= 1L << state;
+            }
+        }
+        long[] finals = new long[words];
+        for (int state : finalStates) {
+            finals[state >>> 6] |= 1L << state;
+            live[state >>> 6] |= 1L << state;
+        }
+        return new CompiledNFA(symbols.clone(), symbolClass, classes, size, start, finals, live,
+                table, offsets, targets);
+    }
+
+    /**
+     * Computes the epsilon closure of every state by a depth-first search
+     * from each.
+     */
+    private static int[][] closures(int size, int[] from, int[] to, int[] on, int transitionCount) {
+        // The epsilon transitions, grouped by the state they start at
+        int[] offset = new int[size + 1];
+        for (int i = 0; i < transitionCount; i++) {
+            if (on[i] < 0) {
+                offset[from[i] + 1]++;
+            }
+        }
+        for (int state = 0; state < size; state++) {
+            offset[state + 1] += offset[state];
+        }
+        int[] epsilon = new int[offset[size]];
+        int[] fill = Arrays.copyOf(offset, size);
+        for (int i = 0; i < transitionCount; i++) {
+            if (on[i] < 0) {
+                epsilon[fill[from[i]]++] = to[i];
+            }
+        }
+
+        int[][] closures = new int[size][];
+        int[] seen = new int[size];
+        int[] stack = new int[size];
+        int[] closure = new int[size];
+        for (int state = 0; state < size; state++) {
+            int stamp = state + 1;
+            int count = 0;
+            int top = 0;
+            seen[state] = stamp;
+            closure[count++] = state;
+            stack[top++] = state;
+            while (top > 0) {
+                int current = stack[--top];
+                for (int k = offset[current]; k < offset[current + 1]; k++) {
+                    int next = epsilon[k];
+                    if (seen[next] != stamp) {
+                        seen[next] = stamp;
+                        closure[count++] = next;
+                        stack[top++] = next;
+                    }
+                }
+            }
+            closures[state] = Arrays.copyOf(closure, count);
+        }
+        return closures;
+    }
+
+    /**
+     * Gets the class of a symbol.
+     *
+     * @param symbol the symbol.
+     * @return the class, or -1 if the symbol is not in Sigma.
+     */
+    int classOf(char symbol) {
+        return symbol < classIndex.length ? classIndex[symbol] - 1 : -1;
+    }
+
+    /**
+     * Computes the states reached from a set of states on a symbol,
+     * epsilon closure included.
+     *
+     * @param current the current states.
+     * @param symbolClass the class of the symbol.
+     * @param next receives the next states; its contents are replaced.
+     * @return false if next is empty.
+     */
+    boolean step(long[] current, int symbolClass, long[] next) {
+        Arrays.fill(next, 0);
+        boolean any = false;
+        if (table != null) {
+            long[] rows = table[symbolClass];
+            for (int w = 0; w < words; w++) {
+                for (long bits = current[w]; bits != 0; bits &= bits - 1) {
+                    int state = (w << 6) | Long.numberOfTrailingZeros(bits);
+                    any |= or(rows, state * words, next, words);
+                }
+            }
+            return any;
+        }
+        int[] offset = offsets[symbolClass];
+        int[] target = targets[symbolClass];
+        for (int w = 0; w < words; w++) {
+            for (long bits = current[w]; bits != 0; bits &= bits - 1) {
+                int state = (w << 6) | Long.numberOfTrailingZeros(bits);
+                for (int k = offset[state], end = offset[state + 1]; k < end; k++) {
+                    int reached = target[k];
+                    next[reached >>> 6] |= 1L << reached;
+                    any = true;
+                }
+            }
+        }
+        return any;
+    }
+
+    /**
+     * Simulates the NFA on an input string, following all of its copies
+     * at once.
+     *
+     * @param s the input string.
+     * @return true if the NFA accepts s.
+     */
+    boolean accepts(CharSequence s) {
+        long[] current = start.clone();
+        long[] next = new long[words];
+        for (int i = 0, n = s.length(); i < n; i++) {
+            int symbolClass = classOf(s.charAt(i));
+            if (symbolClass < 0 || !step(current, symbolClass, next)) {
+                return false;
+            }
+            long[] swap = current;
+            current = next;
+            next = swap;
+        }
+        return intersects(current, finals);
+    }
+
+    /**
+     * Finds the largest number of states the NFA is in at once while
+     * reading an input string, counting the start before any symbol.
+     *
+     * @param s the input string.
+     * @return the largest number of states.
+     */
+    int maxCopies(CharSequence s) {
+        long[] current = start.clone();
+        long[] next = new long[words];
+        int max = count(current);
+        for (int i = 0, n = s.length(); i < n; i++) {
+            int symbolClass = classOf(s.charAt(i));
+            if (symbolClass < 0 || !step(current, symbolClass, next)) {
+                break;
+            }
+            long[] swap = current;
+            current = next;
+            next = swap;
+            max = Math.max(max, count(current));
+        }
+        return max;
+    }
+
+    /**
+     * Builds the DFA of the NFA by the subset construction, following
+     * only the sets of states that can be reached from the start. The DFA
+     * states are named q0, q1, ... in the order they are found, and a
+     * transition to the empty set is left missing.
+     *
+     * @param maxStates the most states the DFA may have.
+     * @return the DFA.
+     * @throws IllegalStateException if the DFA would have more than maxStates states.
+     */
+    DFA toDFA(int maxStates) {
+        Walker walker = walker();
+        DFABuilder builder = new DFABuilder(symbols);
+        Map<Key, Integer> ids = new HashMap<>();
+        List<long[]> subsets = new ArrayList<>();
+        long[] first = walker.start();
+        ids.put(new Key(first), builder.addState("q0"));
+        subsets.add(first);
+        int[] classRow = new int[classes];
+        int[] row = new int[symbols.length];
+        for (int state = 0; state < subsets.size(); state++) {
+            long[] current = subsets.get(state);
+            for (int c = 0; c < classes; c++) {
+                long[] next = walker.move(current, c);
+                if (next == null) {
+                    classRow[c] = DFABuilder.NONE;
+                    continue;
+                }
+                Key key = new Key(next);
+                Integer id = ids.get(key);
+                if (id == null) {
+                    if (subsets.size() == maxStates) {
+                        throw new IllegalStateException("The DFA has more than " + maxStates + " states");
+                    }
+                    id = builder.addState("q" + subsets.size());
+                    ids.put(key, id);
+                    subsets.add(next);
+                }
+                classRow[c] = id;
+            }
+            for (int j = 0; j < symbols.length; j++) {
+                row[j] = classRow[symbolClass[j]];
+            }
+            builder.setRow(state, row);
+            if (walker.isFinal(current)) {
+                builder.setFinal(state);
+            }
+        }
+        return builder.setStart(0).build();
+    }
+
+    /**
+     * ORs words longs of a row into a set.
+     *
+     * @return true if the row is not empty.
+     */
+    private static boolean or(long[] from, int fromOffset, long[] to, int words) {
+        long any = 0;
+        for (int w = 0; w < words; w++) {
+            long bits = from[fromOffset + w];
+            to[w] |= bits;
+            any |= bits;
+        }
+        return any != 0;
+    }
+
+    private static boolean intersects(long[] a, long[] b) {
+        for (int w = 0; w < a.length; w++) {
+            if ((a[w] & b[w]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean contains(long[] set, int state) {
+        return (set[state >>> 6] & (1L << state)) != 0;
+    }
+
+    private static int count(long[] set) {
+        int count = 0;
+        for (long bits : set) {
+            count += Long.bitCount(bits);
+        }
+        return count;
+    }
+
+    private static int words(int size) {
+        return Math.max(1, (size + 63) >>> 6);
+    }
+
+    /**
+     * Creates a walker over the subset construction of this NFA.
+     *
+     * @return a new Walker.
+     */
+    Walker walker() {
+        return new Walker();
+    }
+
+    /**
+     * Finds the sets of states of the subset construction, keeping only
+     * the states that read a symbol or are final. A set is a bitset if the
+     * rows of the table are bitsets, and otherwise a sorted list of
+     * states, one per long, so that moving it costs time that follows its
+     * size rather than the size of the NFA. Either way it can be used as
+     * a {@link Key}. A Walker keeps scratch space, so each user creates
+     * its own.
+     */
+    final class Walker {
+        /** The stamp each state got when it was last added to a list. */
+        private final int[] seen;
+        private final long[] buffer;
+        private int stamp;
+
+        private Walker() {
+            seen = table != null ? null : new int[size];
+            buffer = table != null ? null : new long[size];
+        }
+
+        /**
+         * Gets the states the NFA starts in.
+         *
+         * @return a new set of states.
+         */
+        long[] start() {
+            long[] set = start.clone();
+            for (int w = 0; w < words; w++) {
+                set[w] &= live[w];
+            }
+            if (table != null) {
+                return set;
+            }
+            int count = 0;
+            for (int w = 0; w < words; w++) {
+                for (long bits = set[w]; bits != 0; bits &= bits - 1) {
+                    buffer[count++] = (w << 6) | Long.numberOfTrailingZeros(bits);
+                }
+            }
+            return Arrays.copyOf(buffer, count);
+        }
+
+        /**
+         * Computes the states reached from a set of states on a symbol.
+         *
+         * @param current the current states.
+         * @param symbolClass the class of the symbol.
+         * @return a new set of states, or null if none are reached.
+         */
+        long[] move(long[] current, int symbolClass) {
+            if (table != null) {
+                long[] next = new long[words];
+                step(current, symbolClass, next);
+                long any = 0;
+                for (int w = 0; w < words; w++) {
+                    next[w] &= live[w];
+                    any |= next[w];
+                }
+                return any != 0 ? next : null;
+            }
+            int[] offset = offsets[symbolClass];
+            int[] target = targets[symbolClass];
+            if (++stamp == 0) {
+                // Once the stamps wrap around, old ones could be taken for new ones
+                Arrays.fill(seen, 0);
+                stamp = 1;
+            }
+            int count = 0;
+            for (long state : current) {
+                for (int k = offset[(int) state], end = offset[(int) state + 1]; k < end; k++) {
+                    int reached = target[k];
+                    if (seen[reached] != stamp && contains(live, reached)) {
+                        seen[reached] = stamp;
+                        buffer[count++] = reached;
+                    }
+                }
+            }
+            if (count == 0) {
+                return null;
+            }
+            long[] next = Arrays.copyOf(buffer, count);
+            Arrays.sort(next);
+            return next;
+        }
+
+        /**
+         * Determines if a set of states contains a final state.
+         *
+         * @param set the states.
+         * @return true if set contains a final state.
+         */
+        boolean isFinal(long[] set) {
+            if (table != null) {
+                return intersects(set, finals);
+            }
+            for (long state : set) {
+                if (contains(finals, (int) state)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * An array of longs compared by its contents: a set of NFA states, the
+     * key of a DFA state, or the sorted transitions on a symbol, the key
+     * of its class.
+     */
+    static final class Key {
+        private final long[] values;
+        private final int hash;
+
+        Key(long[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(values, ((Key) o).values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package fa.nfa;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import fa.dfa.DFA;
+
+/**
+ * Immutable snapshot of an NFA, created by {@link NFA#freeze()} or
+ * {@link NFABuilder#freeze()}. It can be simulated, converted to a DFA,
+ * or matched with a {@link LazyDFA}, all through the same compiled form,
+ * and can be shared between threads.
+ */
+public final class FrozenNFA {
+    private final CompiledNFA compiled;
+
+    /**
+     * Creates a snapshot of a compiled NFA.
+     *
+     * @param compiled the compiled NFA.
+     */
+    FrozenNFA(CompiledNFA compiled) {
+        this.compiled = compiled;
+    }
+
+    /**
+     * Simulates the NFA on an input string, as {@link NFA#accepts(String)}
+     * does.
+     *
+     * @param s the input string.
+     * @return true if the NFA accepts s, false if it does not or s is null.
+     */
+    public boolean accepts(String s) {
+        return s != null && compiled.accepts(s);
+    }
+
+    /**
+     * Gets the alphabet of the NFA.
+     *
+     * @return Sigma in the order it is added to DFAs.
+     */
+    public Set<Character> getSigma() {
+        Set<Character> sigma = new LinkedHashSet<>();
+        for (char symbol : compiled.symbols) {
+            sigma.add(symbol);
+        }
+        return sigma;
+    }
+
+    /**
+     * Converts the NFA to a DFA that accepts the same language, by the
+     * subset construction, as {@link NFA#toDFA()} does.
+     *
+     * @return a new DFA.
+     */
+    public DFA toDFA() {
+        return toDFA(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Converts the NFA to a DFA, like {@link #toDFA()}, but gives up once
+     * the DFA has more than a number of states.
+     *
+     * @param maxStates the most states the DFA may have.
+     * @return a new DFA.
+     * @throws IllegalStateException if the DFA would have more than maxStates states.
+     */
+    public DFA toDFA(int maxStates) {
+        return compiled.toDFA(maxStates);
+    }
+
+    /**
+     * Creates a DFA that builds its states while it matches, keeping at
+     * most a number of them.
+     *
+     * @param maxCachedStates the most states kept at once, at least 2.
+     * @return a new LazyDFA.
+     * @throws IllegalArgumentException if maxCachedStates is below 2.
+     */
+    public LazyDFA lazy(int maxCachedStates) {
+        if (maxCachedStates < 2) {
+            throw new IllegalArgumentException("A LazyDFA must keep at least 2 states, not " + maxCachedStates);
+        }
+        return new LazyDFA(compiled, maxCachedStates);
+    }
+}
@@ -0,0 +1,152 @@
+package fa.nfa;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Matches an NFA with a DFA whose states are built only when the input
+ * first leads to them, as in RE2. Created by {@link FrozenNFA#lazy(int)},
+ * which is how regular expressions are matched lazily.
+ *
+ * Every state is a set of states of the NFA, found by the same steps as
+ * the subset construction, and its transitions are filled in one at a
+ * time as they are first taken, so matching only ever pays for the states
+ * the inputs actually visit. The states are kept in a cache of bounded
+ * size; when it is full, the whole cache is dropped and matching goes on
+ * from the current state. Each symbol is therefore read in time bounded
+ * by the size of the NFA, even for NFAs whose full DFA would have
+ * exponentially many states, and the memory used never grows past the
+ * bound.
+ *
+ * A LazyDFA must not be shared between threads; create one per thread
+ * from the same {@link FrozenNFA} instead.
+ */
+public final class LazyDFA {
+    private final CompiledNFA nfa;
+    private final CompiledNFA.Walker walker;
+    private final int maxStates;
+    private final Map<CompiledNFA.Key, State> cache = new HashMap<>();
+    /** The state with no NFA states, from which nothing is matched. */
+    private final State dead;
+    private State start;
+    private long resets;
+
+    /**
+     * Creates a LazyDFA with an empty cache.
+     *
+     * @param nfa the compiled NFA.
+     * @param maxStates the most states kept at once.
+     */
+    LazyDFA(CompiledNFA nfa, int maxStates) {
+        this.nfa = nfa;
+        this.walker = nfa.walker();
+        this.maxStates = maxStates;
+        this.dead = new State(new long[0], false, 0);
+    }
+
+    /**
+     * Determines if the NFA accepts a whole string.
+     *
+     * @param s the input string.
+     * @return true if s is accepted, false if it is not or is null.
+     */
+    public boolean accepts(CharSequence s) {
+        if (s == null) {
+            return false;
+        }
+        State state = start();
+        for (int i = 0, n = s.length(); i < n; i++) {
+            int symbolClass = nfa.classOf(s.charAt(i));
+            if (symbolClass < 0) {
+                return false;
+            }
+            State next = state.next[symbolClass];
+            state = next != null ? next : transition(state, symbolClass);
+            if (state == dead) {
+                return false;
+            }
+        }
+        return state.accepting;
+    }
+
+    /**
+     * Gets the number of states in the cache.
+     *
+     * @return the number of states built since the cache was last dropped.
+     */
+    public int cachedStates() {
+        return cache.size();
+    }
+
+    /**
+     * Gets the number of times the cache was full and dropped.
+     *
+     * @return the number of times the cache was dropped.
+     */
+    public long cacheResets() {
+        return resets;
+    }
+
+    /**
+     * Gets the most states the cache holds.
+     *
+     * @return the bound on the size of the cache.
+     */
+    public int maxCachedStates() {
+        return maxStates;
+    }
+
+    private State start() {
+        if (start == null) {
+            start = intern(walker.start());
+        }
+        return start;
+    }
+
+    /**
+     * Builds the transition from a state on a class of symbols.
+     */
+    private State transition(State from, int symbolClass) {
+        long[] set = walker.move(from.states, symbolClass);
+        State next = set == null ? dead : intern(set);
+        from.next[symbolClass] = next;
+        return next;
+    }
+
+    /**
+     * Finds the state of a set of NFA states, building it if it is not
+     * in the cache, and dropping the cache first if it is full. States
+     * that were dropped are still valid but no longer reachable from
+     * the cache, so they are collected once matching moves past them.
+     */
+    private State intern(long[] set) {
+        CompiledNFA.Key key = new CompiledNFA.Key(set);
+        State state = cache.get(key);
+        if (state == null) {
+            if (cache.size() >= maxStates) {
+                cache.clear();
+                start = null;
+                resets++;
+            }
+            state = new State(set, walker.isFinal(set), nfa.classes);
+            cache.put(key, state);
+        }
+        return state;
+    }
+
+    /**
+     * A state of the lazy DFA.
+     */
+    private static final class State {
+        final long[] states;
+        final boolean accepting;
+        /** The state reached on each class of symbols, or null if not built yet. */
+        final State[] next;
+
+        State(long[] states, boolean accepting, int classCount) {
+            this.states = states;
+            this.accepting = accepting;
+            this.next = new State[classCount];
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package fa.nfa;
+
+import fa.State;
+import fa.dfa.DFA;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Implementation of a Nondeterministic Finite Automata (NFA), which may
+ * move to any number of states on a symbol, and on no symbol at all along
+ * epsilon transitions labeled {@link NFAInterface#EPSILON}.
+ *
+ * NFA 5-tuple = (Σ, Q, q0, F, δ)
+ * Σ  - finite set of symbols, which does not contain epsilon
+ * Q  - finite set of states
+ * q0 - designated starting state
+ * F  - set of final/accepting states
+ * δ  - transition function (Q × (Σ ∪ {ε})) → P(Q)
+ *
+ * There are two ways to run an NFA. {@link #accepts(String)} follows
+ * every copy of it at once, keeping the set of current states as a bitset
+ * and stepping it a machine word of states at a time, which takes time
+ * per symbol that grows with the number of states. {@link #toDFA()}
+ * converts it to a DFA once, after which each symbol takes constant time,
+ * but the DFA can have up to 2^|Q| states; {@link #toDFA(int)} bounds
+ * that, so the caller can fall back to simulation when it is too large.
+ */
+public class NFA implements NFAInterface {
+    private List<NFAState> states;
+    private Map<String, NFAState> stateIndex;
+    private Set<Character> alphabet;
+    private NFAState startState;
+    private Set<NFAState> finalStates;
+    private CompiledNFA compiled;
+
+    /**
+     * Constructor for a new NFA, with no states, symbols or transitions.
+     * The start state is set to null to start.
+     */
+    public NFA() {
+        this.alphabet = new LinkedHashSet<>();
+        this.states = new ArrayList<>();
+        this.stateIndex = new HashMap<>();
+        this.startState = null;
+        this.finalStates = new LinkedHashSet<>();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean addState(String name) {
+        if (name == null || getState(name) != null) {
+            return false;
+        }
+        NFAState newState = new NFAState(name, this, states.size());
+        states.add(newState);
+        stateIndex.put(name, newState);
+        invalidate();
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean setFinal(String name) {
+        NFAState state = getState(name);
+        if (state == null) return false;
+        finalStates.add(state);
+        invalidate();
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean setStart(String name) {
+        NFAState state = getState(name);
+        if (state == null) return false;
+        this.startState = state;
+        invalidate();
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * {@link NFAInterface#EPSILON} is not a symbol and is ignored.
+     */
+    @Override
+    public void addSigma(char symbol) {
+        if (symbol != EPSILON && alphabet.add(symbol)) {
+            invalidate();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean addTransition(String fromState, Set<String> toStates, char onSymb) {
+        NFAState from = getState(fromState);
+        if (from == null || toStates == null || (onSymb != EPSILON && !alphabet.contains(onSymb))) {
+            return false;
+        }
+        List<NFAState> to = new ArrayList<>(toStates.size());
+        for (String name : toStates) {
+            NFAState state = getState(name);
+            if (state == null) {
+                return false;
+            }
+            to.add(state);
+        }
+        for (NFAState state : to) {
+            from.addTransition(state, onSymb);
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The NFA is simulated with bitsets, without building a DFA, so the
+     * time per symbol grows with the number of states but not with the
+     * number of states of the DFA.
+     */
+    @Override
+    public boolean accepts(String s) {
+        if (s == null) return false;
+        // Symbols outside of Sigma and an empty set of states both reject
+        return compiled().accepts(s);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<NFAState> getToState(NFAState from, char onSymb) {
+        return from.getTransitionStates(onSymb);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The closure always contains s itself.
+     */
+    @Override
+    public Set<NFAState> eClosure(NFAState s) {
+        Set<NFAState> closure = new LinkedHashSet<>();
+        Deque<NFAState> stack = new ArrayDeque<>();
+        closure.add(s);
+        stack.push(s);
+        while (!stack.isEmpty()) {
+            for (NFAState next : stack.pop().getTransitionStates(EPSILON)) {
+                if (closure.add(next)) {
+                    stack.push(next);
+                }
+            }
+        }
+        return closure;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The count starts with the epsilon closure of the start state and
+     * stops once the NFA has no states left.
+     */
+    @Override
+    public int maxCopies(String s) {
+        return compiled().maxCopies(s);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isDFA() {
+        for (NFAState state : states) {
+            for (Map.Entry<Character, Set<NFAState>> entry : state.transitions().entrySet()) {
+                if (entry.getKey() == EPSILON ? !entry.getValue().isEmpty() : entry.getValue().size() > 1) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Converts this NFA to a DFA that accepts the same language, by the
+     * subset construction. Only the sets of states that can be reached
+     * from the start are built. The DFA has the same Sigma, its states are
+     * named q0, q1, ... in the order they are found, and transitions to
+     * the empty set of states are left missing.
+     *
+     * @return a new DFA.
+     */
+    public DFA toDFA() {
+        return toDFA(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Converts this NFA to a DFA, like {@link #toDFA()}, but gives up once
+     * the DFA has more than a number of states. The DFA of some NFAs, such
+     * as the one for strings whose k-th symbol from the end is a, has
+     * 2^k states; those are better run with {@link #accepts(String)}.
+     *
+     * @param maxStates the most states the DFA may have.
+     * @return a new DFA.
+     * @throws IllegalStateException if the DFA would have more than maxStates states.
+     */
+    public DFA toDFA(int maxStates) {
+        return compiled().toDFA(maxStates);
+    }
+
+    /**
+     * Creates an immutable snapshot of this NFA, which can be shared
+     * between threads and matched with a {@link LazyDFA}.
+     *
+     * @return a new FrozenNFA.
+     */
+    public FrozenNFA freeze() {
+        return new FrozenNFA(compiled());
+    }
+
+    /**
+     * Gets the compiled form of this NFA, compiling it first if the
+     * NFA has been changed since it was last compiled.
+     *
+     * @return the compiled form of this NFA.
+     */
+    CompiledNFA compiled() {
+        CompiledNFA current = compiled;
+        if (current == null) {
+            current = compile();
+            compiled = current;
+        }
+        return current;
+    }
+
+    /**
+     * Compiles this NFA through an {@link NFABuilder}, whose states are
+     * numbered as the states of this NFA were added.
+     */
+    private CompiledNFA compile() {
+        char[] symbols = new char[alphabet.size()];
+        int i = 0;
+        for (char symbol : alphabet) {
+            symbols[i++] = symbol;
+        }
+        NFABuilder builder = new NFABuilder(symbols);
+        for (int j = 0; j < states.size(); j++) {
+            builder.addState();
+        }
+        for (NFAState from : states) {
+            for (Map.Entry<Character, Set<NFAState>> entry : from.transitions().entrySet()) {
+                for (NFAState to : entry.getValue()) {
+                    if (to.owner != this) {
+                        // States of other NFAs or on their own can be targets, but are never reached
+                        continue;
+                    }
+                    if (entry.getKey() == EPSILON) {
+                        builder.addEpsilon(from.id, to.id);
+                    } else if (alphabet.contains(entry.getKey())) {
+                        // A state can be given transitions on symbols outside Sigma directly
+                        builder.addTransition(from.id, to.id, entry.getKey());
+                    }
+                }
+            }
+        }
+        if (startState != null) {
+            builder.setStart(startState.id);
+        }
+        for (NFAState state : finalStates) {
+            builder.setFinal(state.id);
+        }
+        return builder.compile();
+    }
+
+    /**
+     * Discards the compiled form of this NFA. Called whenever states,
+     * symbols or transitions of the NFA change.
+     */
+    void invalidate() {
+        compiled = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Character> getSigma() {
+        return new LinkedHashSet<>(alphabet);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NFAState getState(String name) {
+        return stateIndex.get(name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isFinal(String name) {
+        State state = getState(name);
+        return state != null && finalStates.contains(state);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isStart(String name) {
+        return startState != null && startState.getName().equals(name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        // Print states in the order they were added
+        sb.append("Q = { ");
+        for (NFAState state : states) {
+            sb.append(state.getName()).append(" ");
+        }
+        sb.append("}\n");
+
+        // Print Sigma (Alphabet) in the order they were added
+        sb.append("Sigma = { ");
+        for (char symbol : alphabet) {
+            sb.append(symbol).append(" ");
+        }
+        sb.append("}\n");
+
+        // Print transition table, with a column for epsilon
+        List<Character> columns = new ArrayList<>(alphabet);
+        columns.add(EPSILON);
+        sb.append("delta =\n\t");
+        for (char symbol : columns) {
+            sb.append(symbol).append("\t");
+        }
+        sb.append("\n");
+
+        for (NFAState state : states) {
+            sb.append(state.getName()).append("\t");
+            for (char symbol : columns) {
+                Set<NFAState> toStates = state.getTransitionStates(symbol);
+                if (toStates.isEmpty()) {
+                    sb.append("-");
+                } else {
+                    sb.append("{");
+                    String separator = "";
+                    for (NFAState toState : toStates) {
+                        sb.append(separator).append(toState.getName());
+                        separator = ",";
+                    }
+                    sb.append("}");
+                }
+                sb.append("\t");
+            }
+            sb.append("\n");
+        }
+
+        // Print start state
+        sb.append("q0 = ").append(startState != null ? startState.getName() : "-").append("\n");
+
+        // Print final states
+        sb.append("F = { ");
+        for (NFAState state : finalStates) {
+            sb.append(state.getName()).append(" ");
+        }
+        sb.append("}");
+
+        return sb.toString();
+    }
+
+}
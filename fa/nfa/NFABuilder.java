@@ -0,0 +1,165 @@
+package fa.nfa;
+
+import java.util.Arrays;
+
+/**
+ * Builds an NFA in bulk, as {@link fa.dfa.DFABuilder} does for DFAs.
+ * States are referred to by the integer id returned when they are added
+ * and have no names, and the result is an immutable {@link FrozenNFA}.
+ *
+ * Epsilon transitions are added with {@link #addEpsilon(int, int)}
+ * rather than on a reserved symbol, so unlike in an {@link NFA}, every
+ * char, {@link NFAInterface#EPSILON} included, can be in Sigma. The
+ * alphabet is fixed when the builder is created.
+ */
+public class NFABuilder {
+    private final char[] symbols;
+    private final int[] indexOf;
+    private int stateCount;
+    private int[] from;
+    private int[] to;
+    /** The index in Sigma of the symbol of each transition, or -1 for epsilon. */
+    private int[] on;
+    private int transitionCount;
+    private int start;
+    private boolean[] finals;
+    private int[] finalOrder;
+    private int finalCount;
+
+    /**
+     * Creates a new NFABuilder over an alphabet.
+     *
+     * @param sigma the symbols of the alphabet, in the order they should
+     * be added to DFAs converted from the NFA.
+     * @throws IllegalArgumentException if a symbol appears more than once.
+     */
+    public NFABuilder(char... sigma) {
+        symbols = sigma.clone();
+        int maxSymbol = -1;
+        for (char symbol : symbols) {
+            maxSymbol = Math.max(maxSymbol, symbol);
+        }
+        indexOf = new int[maxSymbol + 1];
+        Arrays.fill(indexOf, -1);
+        for (int i = 0; i < symbols.length; i++) {
+            if (indexOf[symbols[i]] != -1) {
+                throw new IllegalArgumentException("Duplicate symbol " + symbols[i]);
+            }
+            indexOf[symbols[i]] = i;
+        }
+        from = new int[16];
+        to = new int[16];
+        on = new int[16];
+        finals = new boolean[16];
+        finalOrder = new int[16];
+        start = -1;
+    }
+
+    /**
+     * Adds a state with no transitions.
+     *
+     * @return the id of the new state.
+     */
+    public int addState() {
+        if (stateCount == finals.length) {
+            finals = Arrays.copyOf(finals, stateCount * 2);
+            finalOrder = Arrays.copyOf(finalOrder, stateCount * 2);
+        }
+        return stateCount++;
+    }
+
+    /**
+     * Sets the start state.
+     *
+     * @param state the id of the start state.
+     * @return this builder.
+     */
+    public NFABuilder setStart(int state) {
+        checkState(state);
+        start = state;
+        return this;
+    }
+
+    /**
+     * Marks states as final.
+     *
+     * @param states the ids of the final states.
+     * @return this builder.
+     */
+    public NFABuilder setFinal(int... states) {
+        for (int state : states) {
+            checkState(state);
+            if (!finals[state]) {
+                finals[state] = true;
+                finalOrder[finalCount++] = state;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Adds a transition on a symbol. A state can have any number of
+     * transitions on the same symbol.
+     *
+     * @param fromState the id of the state where the transition starts.
+     * @param toState the id of the state where the transition ends.
+     * @param onSymb the symbol to transition on.
+     * @return this builder.
+     */
+    public NFABuilder addTransition(int fromState, int toState, char onSymb) {
+        if (onSymb >= indexOf.length || indexOf[onSymb] == -1) {
+            throw new IllegalArgumentException("Symbol " + onSymb + " is not in Sigma");
+        }
+        return add(fromState, toState, indexOf[onSymb]);
+    }
+
+    /**
+     * Adds an epsilon transition, taken without reading a symbol.
+     *
+     * @param fromState the id of the state where the transition starts.
+     * @param toState the id of the state where the transition ends.
+     * @return this builder.
+     */
+    public NFABuilder addEpsilon(int fromState, int toState) {
+        return add(fromState, toState, -1);
+    }
+
+    /**
+     * Compiles the NFA into an immutable snapshot. The builder can keep
+     * being used afterwards without affecting the snapshot.
+     *
+     * @return the new frozen NFA.
+     */
+    public FrozenNFA freeze() {
+        return new FrozenNFA(compile());
+    }
+
+    /**
+     * Compiles the current contents of the builder.
+     */
+    CompiledNFA compile() {
+        return CompiledNFA.of(symbols, stateCount, from, to, on, transitionCount, start,
+                Arrays.copyOf(finalOrder, finalCount));
+    }
+
+    private NFABuilder add(int fromState, int toState, int symbol) {
+        checkState(fromState);
+        checkState(toState);
+        if (transitionCount == from.length) {
+            from = Arrays.copyOf(from, transitionCount * 2);
+            to = Arrays.copyOf(to, transitionCount * 2);
+            on = Arrays.copyOf(on, transitionCount * 2);
+        }
+        from[transitionCount] = fromState;
+        to[transitionCount] = toState;
+        on[transitionCount] = symbol;
+        transitionCount++;
+        return this;
+    }
+
+    private void checkState(int state) {
+        if (state < 0 || state >= stateCount) {
+            throw new IllegalArgumentException("Unknown state " + state);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package fa.nfa;
+
+import java.util.Set;
+
+import fa.FAInterface;
+
+
+public interface NFAInterface extends FAInterface {
+
+	/**
+	 * The symbol that labels an epsilon transition. It is reserved and
+	 * cannot be added to Sigma.
+	 */
+	public static final char EPSILON = 'e';
+
+	/**
+	 * Adds the transitions to the NFA's delta data structure
+	 * @param fromState is the label of the state where the transition starts
+	 * @param toStates is the set of labels of the states where the transition ends
+	 * @param onSymb is the symbol from the NFA's alphabet, or {@link #EPSILON}
+	 * @return true if successful and false if one of the states don't exist or the symbol in not in the alphabet
+	 */
+	public boolean addTransition(String fromState, Set<String> toStates, char onSymb);
+
+	/**
+	 * Return delta entries
+	 * @param from - the source state
+	 * @param onSymb - the label of the transition
+	 * @return a set of sink states
+	 */
+	public Set<NFAState> getToState(NFAState from, char onSymb);
+
+	/**
+	 * Traverses all epsilon transitions and determine
+	 * what states can be reached from s through e
+	 * @param s - the state to start from
+	 * @return set of states that can be reached from s on epsilon trans.
+	 */
+	public Set<NFAState> eClosure(NFAState s);
+
+	/**
+	 * Determines the maximum number of NFA copies
+	 * created when processing string s
+	 * @param s - the input string
+	 * @return the largest number of states the NFA is in at once
+	 */
+	public int maxCopies(String s);
+
+	/**
+	 * Determines if the NFA is also a DFA
+	 * @return true if there are no epsilon transitions and no state has
+	 * more than one transition on any symbol
+	 */
+	public boolean isDFA();
+
+}
@@ -0,0 +1,85 @@
+package fa.nfa;
+
+import fa.State;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Represents a State for a Nondeterministic Finite Automata (NFA),
+ * and manages transitions to sets of other States, including epsilon
+ * transitions on {@link NFAInterface#EPSILON}.
+ */
+public class NFAState extends State {
+    private final Map<Character, Set<NFAState>> transitions;
+    /** The NFA this NFAState belongs to, or null if it was created on its own. */
+    final NFA owner;
+    /** The position of this NFAState in its owner, used as its compiled id. */
+    final int id;
+
+    /**
+     * Creates a new NFAState.
+     *
+     * @param name the name of this NFAState.
+     */
+    public NFAState(String name) {
+        this(name, null, -1);
+    }
+
+    /**
+     * Creates a new NFAState that belongs to an NFA.
+     *
+     * @param name the name of this NFAState.
+     * @param owner the NFA the NFAState is added to.
+     * @param id the number of states added to the NFA before this one.
+     */
+    NFAState(String name, NFA owner, int id) {
+        super(name);
+        transitions = new HashMap<>();
+        this.owner = owner;
+        this.id = id;
+    }
+
+    /**
+     * Adds a transition from this NFAState to another
+     * NFAState on a particular symbol. The transition
+     * is not added if the state to transition to is null.
+     *
+     * @param toState The state to transition to.
+     * @param onSymb The symbol to transition on.
+     */
+    public void addTransition(NFAState toState, char onSymb) {
+        if (toState == null) {
+            return;
+        }
+        if (transitions.computeIfAbsent(onSymb, symb -> new LinkedHashSet<>()).add(toState)
+                && owner != null) {
+            owner.invalidate();
+        }
+    }
+
+    /**
+     * Gets the NFAStates this NFAState transitions to
+     * on a particular symbol.
+     *
+     * @param onSymb The symbol this NFAState transitions on.
+     * @return The states this NFAState transitions to, in the order the
+     * transitions were added, which is empty if there are none.
+     */
+    public Set<NFAState> getTransitionStates(char onSymb) {
+        Set<NFAState> toStates = transitions.get(onSymb);
+        return toStates == null ? Collections.emptySet() : Collections.unmodifiableSet(toStates);
+    }
+
+    /**
+     * Gets every transition of this NFAState.
+     *
+     * @return the states reached on each symbol.
+     */
+    Map<Character, Set<NFAState>> transitions() {
+        return transitions;
+    }
+}
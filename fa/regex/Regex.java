@@ -0,0 +1,181 @@
+package fa.regex;
+
+import java.util.Set;
+
+import fa.dfa.DFA;
+import fa.nfa.FrozenNFA;
+import fa.nfa.LazyDFA;
+import fa.nfa.NFABuilder;
+
+/**
+ * A regular expression over an alphabet, which can be turned into a
+ * {@link DFA} all at once with {@link #toDFA()}, or matched with a
+ * {@link LazyDFA} that only builds the states it needs.
+ *
+ * The syntax is the usual one: literals, concatenation, '|', '*', '+',
+ * '?', bounded repetition {n}, {n,} and {n,m}, grouping with
+ * parentheses, classes such as [a-z0-9] and [^abc], '.' for any symbol,
+ * and the escapes \n, \t, \r, \d, \w and \s. A backslash in front of any
+ * other char that is not a letter or digit reads it literally. The whole
+ * input must match, as in {@link DFA#accepts(String)}.
+ *
+ * Sigma is either given, or made of every symbol the pattern names; '.'
+ * and negated classes can only be used with a given Sigma. The pattern
+ * is compiled into a {@link FrozenNFA}, so both ways of matching share
+ * the subset construction of the fa.nfa package. A Regex is immutable
+ * and can be shared between threads.
+ */
+public final class Regex {
+    /** The number of states a {@link #lazy()} DFA keeps at most. */
+    public static final int DEFAULT_CACHE_STATES = 10000;
+
+    private final String pattern;
+    private final FrozenNFA nfa;
+
+    private Regex(String pattern, FrozenNFA nfa) {
+        this.pattern = pattern;
+        this.nfa = nfa;
+    }
+
+    /**
+     * Compiles a regular expression whose Sigma is the set of symbols it
+     * names.
+     *
+     * @param pattern the regular expression.
+     * @return the compiled expression.
+     * @throws IllegalArgumentException if the pattern is not valid, or
+     * uses '.' or a negated class.
+     */
+    public static Regex compile(String pattern) {
+        RegexParser parser = RegexParser.parse(pattern);
+        if (parser.needsSigma) {
+            throw new IllegalArgumentException("'.' and negated classes need a given Sigma in " + pattern);
+        }
+        return build(pattern, parser, parser.named);
+    }
+
+    /**
+     * Compiles a regular expression over a given Sigma. Symbols that the
+     * pattern names but that are not in Sigma never match.
+     *
+     * @param pattern the regular expression.
+     * @param sigma the alphabet, in the order it should be added to DFAs.
+     * @return the compiled expression.
+     * @throws IllegalArgumentException if the pattern is not valid.
+     */
+    public static Regex compile(String pattern, Set<Character> sigma) {
+        return build(pattern, RegexParser.parse(pattern), sigma);
+    }
+
+    private static Regex build(String pattern, RegexParser parser, Set<Character> sigma) {
+        char[] symbols = new char[sigma.size()];
+        int i = 0;
+        for (char symbol : sigma) {
+            symbols[i++] = symbol;
+        }
+        NFABuilder builder = new NFABuilder(symbols);
+        int match = builder.addState();
+        builder.setFinal(match);
+        builder.setStart(parser.tree.emit(builder, symbols, match));
+        return new Regex(pattern, builder.freeze());
+    }
+
+    /**
+     * Escapes the special chars of a text, giving a pattern that matches
+     * exactly the text.
+     *
+     * @param text the text.
+     * @return the pattern.
+     */
+    public static String quote(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (RegexParser.isSpecial(c)) {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Gets the pattern this expression was compiled from.
+     *
+     * @return the pattern.
+     */
+    public String pattern() {
+        return pattern;
+    }
+
+    /**
+     * Gets the alphabet of the expression.
+     *
+     * @return Sigma in the order it is added to DFAs.
+     */
+    public Set<Character> getSigma() {
+        return nfa.getSigma();
+    }
+
+    /**
+     * Builds the whole DFA of the expression by the subset construction.
+     * Its states are named q0, q1, ... in the order they are found, and
+     * transitions from which nothing can be matched are left missing.
+     *
+     * @return a DFA that accepts exactly the strings the expression matches.
+     */
+    public DFA toDFA() {
+        return toDFA(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Builds the whole DFA of the expression, like {@link #toDFA()}, but
+     * gives up once it has more than a number of states. The DFA of some
+     * expressions, such as (a|b)*a(a|b){20}, has exponentially many
+     * states; those are better matched with {@link #lazy()}.
+     *
+     * @param maxStates the most states the DFA may have.
+     * @return a DFA that accepts exactly the strings the expression matches.
+     * @throws IllegalStateException if the DFA would have more than maxStates states.
+     */
+    public DFA toDFA(int maxStates) {
+        try {
+            return nfa.toDFA(maxStates);
+        } catch (IllegalStateException e) {
+            throw new IllegalStateException("The DFA of " + pattern + " has more than " + maxStates
+                    + " states", e);
+        }
+    }
+
+    /**
+     * Creates a DFA that builds its states while it matches, keeping at
+     * most {@link #DEFAULT_CACHE_STATES} of them.
+     *
+     * @return a new LazyDFA.
+     */
+    public LazyDFA lazy() {
+        return lazy(DEFAULT_CACHE_STATES);
+    }
+
+    /**
+     * Creates a DFA that builds its states while it matches, keeping at
+     * most a number of them.
+     *
+     * @param maxCachedStates the most states kept at once, at least 2.
+     * @return a new LazyDFA.
+     * @throws IllegalArgumentException if maxCachedStates is below 2.
+     */
+    public LazyDFA lazy(int maxCachedStates) {
+        return nfa.lazy(maxCachedStates);
+    }
+
+    /**
+     * Gets the pattern this expression was compiled from.
+     *
+     * @return the pattern.
+     */
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
@@ -0,0 +1,390 @@
+package fa.regex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import fa.nfa.NFABuilder;
+
+/**
+ * Parses a regular expression into a tree, by recursive descent over
+ * this grammar:
+ * <pre>
+ * alternation = concatenation ('|' concatenation)*
+ * concatenation = repetition*
+ * repetition = atom ('*' | '+' | '?' | '{' n '}' | '{' n ',' '}' | '{' n ',' m '}')*
+ * atom = '(' alternation ')' | '[' '^'? item+ ']' | '.' | escape | literal
+ * </pre>
+ * The tree is turned into a Thompson NFA by {@link Node#emit(NFABuilder, char[], int)}.
+ */
+final class RegexParser {
+    /** The characters that must be escaped to be read as literals. */
+    private static final String SPECIAL = "()[]{}|*+?.\\";
+    /** Bounded repetitions are expanded, so their bounds are limited. */
+    private static final int MAX_REPEAT = 1000;
+
+    private final String pattern;
+    private int pos;
+    /** Every symbol named in the pattern, which is Sigma if none is given. */
+    final Set<Character> named = new TreeSet<>();
+    /** Whether the pattern uses '.' or a negated class, which need a given Sigma. */
+    boolean needsSigma;
+    /** The tree of the whole pattern. */
+    Node tree;
+
+    private RegexParser(String pattern) {
+        this.pattern = pattern;
+    }
+
+    /**
+     * Parses a regular expression.
+     *
+     * @param pattern the regular expression.
+     * @return the parser, holding the tree and the symbols named in the pattern.
+     * @throws IllegalArgumentException if the pattern is not valid.
+     */
+    static RegexParser parse(String pattern) {
+        RegexParser parser = new RegexParser(pattern);
+        parser.tree = parser.alternation();
+        if (parser.pos < pattern.length()) {
+            throw parser.error("Unmatched )");
+        }
+        return parser;
+    }
+
+    private Node alternation() {
+        List<Node> parts = new ArrayList<>();
+        parts.add(concatenation());
+        while (peek('|')) {
+            pos++;
+            parts.add(concatenation());
+        }
+        return parts.size() == 1 ? parts.get(0) : new Alternation(parts);
+    }
+
+    private Node concatenation() {
+        List<Node> parts = new ArrayList<>();
+        while (pos < pattern.length() && !peek('|') && !peek(')')) {
+            parts.add(repetition());
+        }
+        return parts.size() == 1 ? parts.get(0) : new Concatenation(parts);
+    }
+
+    private Node repetition() {
+        Node node = atom();
+        while (pos < pattern.length()) {
+            char c = pattern.charAt(pos);
+            if (c == '*') {
+                node = new Repeat(node, 0, -1);
+            } else if (c == '+') {
+                node = new Repeat(node, 1, -1);
+            } else if (c == '?') {
+                node = new Repeat(node, 0, 1);
+            } else if (c == '{') {
+                int open = pos++;
+                int min = number();
+                int max = min;
+                if (peek(',')) {
+                    pos++;
+                    max = peek('}') ? -1 : number();
+                }
+                if (!peek('}')) {
+                    throw error("Expected }");
+                }
+                if (max != -1 && max < min) {
+                    pos = open;
+                    throw error("Repetition {" + min + "," + max + "} has max < min");
+                }
+                node = new Repeat(node, min, max);
+            } else {
+                break;
+            }
+            pos++;
+        }
+        return node;
+    }
+
+    private int number() {
+        int start = pos;
+        while (pos < pattern.length() && Character.isDigit(pattern.charAt(pos)) && pos - start < 4) {
+            pos++;
+        }
+        if (start == pos) {
+            throw error("Expected a number");
+        }
+        int n = Integer.parseInt(pattern.substring(start, pos));
+        if (n > MAX_REPEAT) {
+            pos = start;
+            throw error("Repetition count above " + MAX_REPEAT);
+        }
+        return n;
+    }
+
+    private Node atom() {
+        char c = pattern.charAt(pos);
+        if (c == '(') {
+            pos++;
+            Node inner = alternation();
+            if (!peek(')')) {
+                throw error("Unmatched (");
+            }
+            pos++;
+            return inner;
+        }
+        if (c == '[') {
+            return characterClass();
+        }
+        if (c == '.') {
+            pos++;
+            needsSigma = true;
+            return new Symbols(new char[0], true);
+        }
+        if (c == '*' || c == '+' || c == '?' || c == '{') {
+            throw error("Nothing to repeat");
+        }
+        if (c == ']' || c == '}') {
+            throw error("Unescaped " + c);
+        }
+        return new Symbols(name(escapeOrLiteral()), false);
+    }
+
+    private Node characterClass() {
+        int open = pos++;
+        boolean negated = peek('^');
+        if (negated) {
+            pos++;
+            needsSigma = true;
+        }
+        StringBuilder ranges = new StringBuilder();
+        while (!peek(']')) {
+            if (pos >= pattern.length()) {
+                pos = open;
+                throw error("Unmatched [");
+            }
+            char[] item = escapeOrLiteral();
+            if (item.length == 2 && peek('-') && pos + 1 < pattern.length() && pattern.charAt(pos + 1) != ']') {
+                pos++;
+                char[] to = escapeOrLiteral();
+                if (to.length != 2 || to[0] != to[1]) {
+                    throw error("Invalid range end");
+                }
+                if (to[0] < item[0]) {
+                    throw error("Range out of order");
+                }
+                item[1] = to[0];
+            }
+            ranges.append(name(item));
+        }
+        pos++;
+        if (ranges.length() == 0) {
+            throw error("Empty class");
+        }
+        return new Symbols(ranges.toString().toCharArray(), negated);
+    }
+
+    /**
+     * Reads a literal or an escape, as ranges of chars: pairs of the first
+     * and the last char of each range. A single char is a range of one.
+     */
+    private char[] escapeOrLiteral() {
+        char c = pattern.charAt(pos++);
+        char[] ranges;
+        if (c != '\\') {
+            ranges = new char[] {c, c};
+        } else {
+            if (pos >= pattern.length()) {
+                throw error("Trailing \\");
+            }
+            char e = pattern.charAt(pos++);
+            switch (e) {
+            case 'n':
+                ranges = new char[] {'\n', '\n'};
+                break;
+            case 't':
+                ranges = new char[] {'\t', '\t'};
+                break;
+            case 'r':
+                ranges = new char[] {'\r', '\r'};
+                break;
+            case 'd':
+                ranges = new char[] {'0', '9'};
+                break;
+            case 'w':
+                ranges = new char[] {'0', '9', 'A', 'Z', '_', '_', 'a', 'z'};
+                break;
+            case 's':
+                ranges = new char[] {'\t', '\r', ' ', ' '};
+                break;
+            default:
+                if (Character.isLetterOrDigit(e)) {
+                    pos--;
+                    throw error("Unknown escape \\" + e);
+                }
+                ranges = new char[] {e, e};
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Adds the chars of ranges to the symbols named in the pattern.
+     */
+    private char[] name(char[] ranges) {
+        for (int i = 0; i < ranges.length; i += 2) {
+            for (int s = ranges[i]; s <= ranges[i + 1]; s++) {
+                named.add((char) s);
+            }
+        }
+        return ranges;
+    }
+
+    private boolean peek(char c) {
+        return pos < pattern.length() && pattern.charAt(pos) == c;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at index " + pos + " of " + pattern);
+    }
+
+    /**
+     * Determines if a char must be escaped to be read as a literal.
+     */
+    static boolean isSpecial(char c) {
+        return SPECIAL.indexOf(c) >= 0;
+    }
+
+    /**
+     * A node of the tree of a regular expression.
+     */
+    abstract static class Node {
+        /**
+         * Adds the states of this node to an NFA.
+         *
+         * @param nfa the NFA to add to.
+         * @param sigma the alphabet of the NFA.
+         * @param next the state to go to after this node has matched.
+         * @return the state that starts matching this node.
+         */
+        abstract int emit(NFABuilder nfa, char[] sigma, int next);
+
+        /**
+         * Adds a state that goes to both a and b without reading anything.
+         */
+        static int split(NFABuilder nfa, int a, int b) {
+            int state = nfa.addState();
+            nfa.addEpsilon(state, a);
+            nfa.addEpsilon(state, b);
+            return state;
+        }
+    }
+
+    /**
+     * Matches one symbol of a set.
+     */
+    static final class Symbols extends Node {
+        /** Pairs of the first and last char of each range. */
+        private final char[] ranges;
+        private final boolean negated;
+
+        Symbols(char[] ranges, boolean negated) {
+            this.ranges = ranges;
+            this.negated = negated;
+        }
+
+        @Override
+        int emit(NFABuilder nfa, char[] sigma, int next) {
+            int state = nfa.addState();
+            for (char symbol : sigma) {
+                if (contains(symbol) != negated) {
+                    nfa.addTransition(state, next, symbol);
+                }
+            }
+            return state;
+        }
+
+        private boolean contains(char c) {
+            for (int i = 0; i < ranges.length; i += 2) {
+                if (c >= ranges[i] && c <= ranges[i + 1]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Matches its parts one after the other.
+     */
+    static final class Concatenation extends Node {
+        private final List<Node> parts;
+
+        Concatenation(List<Node> parts) {
+            this.parts = parts;
+        }
+
+        @Override
+        int emit(NFABuilder nfa, char[] sigma, int next) {
+            for (int i = parts.size() - 1; i >= 0; i--) {
+                next = parts.get(i).emit(nfa, sigma, next);
+            }
+            return next;
+        }
+    }
+
+    /**
+     * Matches any one of its parts.
+     */
+    static final class Alternation extends Node {
+        private final List<Node> parts;
+
+        Alternation(List<Node> parts) {
+            this.parts = parts;
+        }
+
+        @Override
+        int emit(NFABuilder nfa, char[] sigma, int next) {
+            int start = parts.get(parts.size() - 1).emit(nfa, sigma, next);
+            for (int i = parts.size() - 2; i >= 0; i--) {
+                start = split(nfa, parts.get(i).emit(nfa, sigma, next), start);
+            }
+            return start;
+        }
+    }
+
+    /**
+     * Matches its body from min to max times, or at least min times if
+     * max is -1.
+     */
+    static final class Repeat extends Node {
+        private final Node body;
+        private final int min;
+        private final int max;
+
+        Repeat(Node body, int min, int max) {
+            this.body = body;
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        int emit(NFABuilder nfa, char[] sigma, int next) {
+            if (max == -1) {
+                // A loop that may be left before each pass through the body
+                int loop = nfa.addState();
+                nfa.addEpsilon(loop, next);
+                nfa.addEpsilon(loop, body.emit(nfa, sigma, loop));
+                next = loop;
+            } else {
+                // Optional copies, each of which may end the match early
+                for (int i = min; i < max; i++) {
+                    next = split(nfa, body.emit(nfa, sigma, next), next);
+                }
+            }
+            for (int i = 0; i < min; i++) {
+                next = body.emit(nfa, sigma, next);
+            }
+            return next;
+        }
+    }
+}
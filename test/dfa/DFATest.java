@@ -2,11 +2,48 @@ package test.dfa;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 import org.junit.Test;
 
+import fa.dfa.ByteDFA;
 import fa.dfa.DFA;
+import fa.dfa.DFABuilder;
+import fa.dfa.DFAFormat;
+import fa.dfa.DFAMatcher;
+import fa.dfa.DFAMetrics;
+import fa.dfa.DFAParser;
+import fa.dfa.DFASearcher;
+import fa.dfa.DFAState;
+import fa.dfa.FrozenDFA;
+import fa.dfa.IncrementalMatcher;
+import fa.dfa.InstrumentedDFA;
+import fa.dfa.LineScanner;
+import fa.dfa.MappedDFA;
+import fa.dfa.SpecializedDFA;
+import fa.dfa.TaggedDFA;
 
 public class DFATest {
 	
@@ -619,5 +656,1365 @@ public class DFATest {
 
 		System.out.println("dfa5Swap accept pass");
 	}
+
+//------------------- compiled engine tests ----------------------//
+	@Test
+	public void testCompiled_1() {
+		DFA dfa = dfa1();
+		assertTrue(dfa.accepts("1"));
+		assertFalse(dfa.accepts("10"));
+
+		// mutating the DFA after it has been simulated must be seen by accepts
+		dfa.addSigma('2');
+		assertFalse(dfa.accepts("12"));
+		assertTrue(dfa.addTransition("b", "b", '2'));
+		assertTrue(dfa.accepts("12"));
+		assertTrue(dfa.setFinal("a"));
+		assertTrue(dfa.accepts("10"));
+		assertTrue(dfa.addState("c"));
+		assertTrue(dfa.setStart("c"));
+		assertFalse(dfa.accepts("1"));
+		assertFalse(dfa.accepts(""));
+
+		System.out.println("compiled mutation pass");
+	}
+
+	@Test
+	public void testCompiled_2() {
+		DFA dfa = dfa1();
+		assertTrue(dfa.accepts("01"));
+
+		// changes made through a state object are seen as well
+		((DFAState) dfa.getState("a")).setTransition((DFAState) dfa.getState("a"), '1');
+		assertFalse(dfa.accepts("01"));
+		assertFalse(dfa.accepts(null));
+		assertFalse(dfa.accepts("￿"));
+
+		System.out.println("compiled state mutation pass");
+	}
+
+//------------------- builder tests ----------------------//
+	private DFA builtDfa1() {
+		DFABuilder builder = new DFABuilder('0', '1');
+		int a = builder.addStates("a", "b");
+		int b = a + 1;
+		builder.setStart(a).setFinal(b);
+		builder.setRow(a, a, b);
+		builder.setColumn('0', a, a);
+		builder.addTransition(b, b, '1');
+		return builder.build();
+	}
+
+	@Test
+	public void testBuilder_1() {
+		DFA dfa = builtDfa1();
+
+		assertTrue(dfa.isStart("a"));
+		assertTrue(dfa.isFinal("b"));
+		assertEquals(dfa.getSigma(), Set.of('0','1'));
+		assertEquals(dfa1().toString(), dfa.toString());
+
+		assertFalse(dfa.accepts("0"));
+		assertTrue(dfa.accepts("1"));
+		assertTrue(dfa.accepts("101"));
+		assertFalse(dfa.accepts("e"));
+
+		// a built DFA can still be changed afterwards
+		assertTrue(dfa.addState("c"));
+		assertTrue(dfa.addTransition("b", "c", '1'));
+		assertFalse(dfa.accepts("11"));
+
+		System.out.println("builder pass");
+	}
+
+	@Test
+	public void testBuilder_2() {
+		DFABuilder builder = new DFABuilder('0');
+		int a = builder.addState("a");
+		assertThrows(IllegalArgumentException.class, () -> builder.addTransition(a, a, '1'));
+		assertThrows(IllegalArgumentException.class, () -> builder.setStart(1));
+		assertThrows(IllegalArgumentException.class, () -> builder.setRow(a, a, a));
+
+		builder.addTransition(a, 5, '0');
+		assertThrows(IllegalStateException.class, builder::build);
+		builder.addTransition(a, DFABuilder.NONE, '0');
+		builder.addState("a");
+		assertThrows(IllegalStateException.class, builder::build);
+
+		System.out.println("builder validation pass");
+	}
+
+//------------------- frozen tests ----------------------//
+	@Test
+	public void testFrozen_1() {
+		DFA dfa = dfa1();
+		FrozenDFA frozen = dfa.freeze();
+
+		assertEquals(dfa.toString(), frozen.toString());
+		assertEquals(dfa.getSigma(), frozen.getSigma());
+		assertTrue(frozen.isStart("a"));
+		assertTrue(frozen.isFinal("b"));
+		assertFalse(frozen.isFinal("c"));
+		assertEquals("a", frozen.getState("a").getName());
+		assertNull(frozen.getState("c"));
+
+		// the snapshot does not see later changes to the DFA
+		dfa.setFinal("a");
+		assertTrue(dfa.accepts("0"));
+		assertFalse(frozen.accepts("0"));
+		assertTrue(frozen.accepts("101"));
+		assertFalse(frozen.accepts(null));
+
+		assertThrows(UnsupportedOperationException.class, () -> frozen.addState("c"));
+		assertThrows(UnsupportedOperationException.class, () -> frozen.addSigma('2'));
+
+		DFA thawed = frozen.thaw();
+		assertEquals(frozen.toString(), thawed.toString());
+		assertTrue(thawed.addTransition("b", "b", '0'));
+		assertTrue(thawed.accepts("10"));
+		assertFalse(frozen.accepts("10"));
+
+		System.out.println("frozen pass");
+	}
+
+	@Test
+	public void testFrozen_2() throws InterruptedException {
+		FrozenDFA frozen = dfa2().freeze();
+		boolean[] failed = new boolean[1];
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 10_000; i++) {
+					if (!frozen.accepts("00") || frozen.accepts("010")) {
+						failed[0] = true;
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertFalse(failed[0]);
+
+		System.out.println("frozen threads pass");
+	}
+
+//------------------- batch tests ----------------------//
+	@Test
+	public void testBatch_1() {
+		DFA dfa = dfa1();
+		List<String> inputs = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			inputs.add(Integer.toBinaryString(i));
+		}
+		inputs.add("e");
+		inputs.add(null);
+		inputs.add("");
+
+		boolean[] results = dfa.acceptsAll(inputs);
+		BitSet bits = dfa.acceptsAllBits(inputs);
+		assertEquals(inputs.size(), results.length);
+		for (int i = 0; i < inputs.size(); i++) {
+			assertEquals(dfa.accepts(inputs.get(i)), results[i]);
+			assertEquals(dfa.accepts(inputs.get(i)), bits.get(i));
+		}
+
+		List<String> accepted = dfa.filter(inputs.parallelStream()).collect(Collectors.toList());
+		assertEquals(bits.cardinality(), accepted.size());
+		assertTrue(accepted.contains("101"));
+		assertFalse(accepted.contains("100"));
+
+		System.out.println("batch pass");
+	}
+
+//------------------- matcher tests ----------------------//
+	@Test
+	public void testMatcher_1() {
+		DFA dfa = dfa1();
+		DFAMatcher matcher = dfa.matcher();
+
+		assertFalse(matcher.isAccepting());
+		char[] buf = "x101x".toCharArray();
+		assertTrue(matcher.feed(buf, 1, 2));
+		assertFalse(matcher.isAccepting());
+		assertTrue(matcher.feed(CharBuffer.wrap("1")));
+		assertTrue(matcher.isAccepting());
+		assertTrue(matcher.feed('0'));
+		assertFalse(matcher.isAccepting());
+		assertFalse(matcher.isDead());
+
+		assertFalse(matcher.feed('e'));
+		assertTrue(matcher.isDead());
+		assertFalse(matcher.feed("1"));
+		assertFalse(matcher.isAccepting());
+
+		matcher.reset();
+		assertFalse(matcher.isDead());
+		assertTrue(matcher.feed("101"));
+		assertTrue(matcher.isAccepting());
+
+		CharBuffer direct = ByteBuffer.allocateDirect(8).asCharBuffer();
+		direct.put("11").flip();
+		assertTrue(matcher.reset().feed(direct));
+		assertTrue(matcher.isAccepting());
+		assertFalse(direct.hasRemaining());
+
+		System.out.println("matcher pass");
+	}
+
+//------------------- line scanner tests ----------------------//
+	@Test
+	public void testLineScanner_1() throws IOException {
+		DFA dfa = dfa1();
+		Path file = Files.createTempFile("dfa", ".txt");
+		try {
+			Files.writeString(file, "1\n0\r\n101\n\n1e\n11");
+			LineScanner scanner = new LineScanner(dfa);
+			LineScanner.Result result = scanner.scanLines(file);
+
+			assertEquals(6, result.lineCount());
+			assertArrayEquals(new long[] {0, 5, 13}, result.acceptedOffsets());
+			assertArrayEquals(new long[] {2, 9, 10}, result.rejectedOffsets());
+			assertFalse(result.allAccepted());
+
+			// the whole file is one input, so the newlines are rejected
+			assertFalse(scanner.acceptsFile(file));
+			Files.writeString(file, "1101");
+			assertTrue(scanner.acceptsFile(file));
+			Files.writeString(file, "1\n");
+			assertFalse(scanner.acceptsFile(file));
+
+			// a larger file is split into several regions
+			StringBuilder sb = new StringBuilder();
+			int lines = 0;
+			while (sb.length() < 3 << 20) {
+				sb.append(lines % 3 == 0 ? "10\n" : "1101\n");
+				lines++;
+			}
+			Files.writeString(file, sb);
+			result = scanner.scanLines(file, 4);
+			assertEquals(lines, result.lineCount());
+			assertEquals(lines / 3 + (lines % 3 == 0 ? 0 : 1), result.rejectedOffsets().length);
+			assertEquals(5, result.acceptedOffsets()[1] - result.acceptedOffsets()[0]);
+		} finally {
+			Files.delete(file);
+		}
+
+		System.out.println("line scanner pass");
+	}
+
+//------------------- minimize tests ----------------------//
+	@Test
+	public void testMinimize_1() {
+		DFA dfa = new DFA();
+		dfa.addSigma('0');
+		dfa.addSigma('1');
+		// even number of 1s, with redundant, unreachable and dead states
+		for (String name : new String[] {"e1", "o1", "e2", "o2", "u", "d"}) {
+			assertTrue(dfa.addState(name));
+		}
+		dfa.setStart("e1");
+		dfa.setFinal("e2");
+		dfa.setFinal("e1");
+		dfa.addTransition("e1", "e2", '0');
+		dfa.addTransition("e1", "o1", '1');
+		dfa.addTransition("e2", "e1", '0');
+		dfa.addTransition("e2", "o2", '1');
+		dfa.addTransition("o1", "o2", '0');
+		dfa.addTransition("o1", "e2", '1');
+		dfa.addTransition("o2", "o1", '0');
+		dfa.addTransition("o2", "e1", '1');
+		dfa.addTransition("u", "e1", '0');
+		dfa.addTransition("u", "d", '1');
+		dfa.addTransition("d", "d", '1');
+
+		DFA min = dfa.minimize();
+		String expStr = "Q = { e1 o1 }\n"
+				+ "Sigma = { 0 1 }\n"
+				+ "delta =\n"
+				+ "		0	1\n"
+				+ "	e1	e1	o1\n"
+				+ "	o1	o1	e1\n"
+				+ "q0 = e1\n"
+				+ "F = { e1 }";
+		assertEquals(expStr.replaceAll("\\s", ""), min.toString().replaceAll("\\s", ""));
+		for (String s : new String[] {"", "0", "1", "11", "101", "1001", "0110", "10"}) {
+			assertEquals(dfa.accepts(s), min.accepts(s));
+		}
+		assertEquals(min.toString(), dfa.freeze().minimize().toString());
+
+		System.out.println("minimize pass");
+	}
+
+	@Test
+	public void testMinimize_2() {
+		DFA dfa = dfa1();
+		assertEquals(dfa.toString(), dfa.minimize().toString());
+
+		dfa = new DFA();
+		dfa.addSigma('a');
+		dfa.addState("s");
+		dfa.addState("t");
+		dfa.setStart("s");
+		dfa.addTransition("s", "t", 'a');
+		DFA min = dfa.minimize();
+		assertTrue(min.isStart("s"));
+		assertNull(min.getState("t"));
+		assertFalse(min.accepts(""));
+		assertFalse(min.accepts("a"));
+
+		assertNull(new DFA().minimize().getState("s"));
+
+		System.out.println("minimize empty pass");
+	}
+
+//------------------- product tests ----------------------//
+	@Test
+	public void testProduct_1() {
+		DFA endsWith1 = dfa1();
+		DFA dfa = dfa2();
+		String[] inputs = {"", "0", "1", "00", "01", "10", "11", "010", "101", "0011", "1100", "2", "01e"};
+
+		DFA intersection = endsWith1.intersect(dfa);
+		DFA union = endsWith1.union(dfa);
+		DFA difference = endsWith1.difference(dfa);
+		for (String s : inputs) {
+			assertEquals(s, endsWith1.accepts(s) && dfa.accepts(s), intersection.accepts(s));
+			assertEquals(s, endsWith1.accepts(s) || dfa.accepts(s), union.accepts(s));
+			assertEquals(s, endsWith1.accepts(s) && !dfa.accepts(s), difference.accepts(s));
+		}
+		assertTrue(intersection.isStart("(a,0)"));
+
+		System.out.println("product pass");
+	}
+
+	@Test
+	public void testProduct_2() {
+		DFA dfa = new DFA();
+		dfa.addSigma('x');
+		dfa.addState("s");
+		dfa.setStart("s");
+		dfa.setFinal("s");
+		dfa.addTransition("s", "s", 'x');
+		DFA other = dfa1();
+
+		// the product runs over both alphabets
+		DFA union = dfa.union(other);
+		assertEquals(Set.of('x', '0', '1'), union.getSigma());
+		assertTrue(union.accepts("xx"));
+		assertTrue(union.accepts("01"));
+		assertFalse(union.accepts("x1"));
+
+		DFA complement = dfa2().complement();
+		for (String s : new String[] {"", "0", "00", "010", "111011111111110", "1110111111111010"}) {
+			assertEquals(s, !dfa2().accepts(s), complement.accepts(s));
+		}
+		assertFalse(complement.accepts("2"));
+
+		DFA partial = new DFA();
+		partial.addSigma('a');
+		partial.addState("p");
+		partial.setStart("p");
+		complement = partial.complement();
+		assertTrue(complement.accepts(""));
+		assertTrue(complement.accepts("a"));
+		assertTrue(complement.accepts("aaa"));
+		assertTrue(complement.isFinal("sink"));
+
+		System.out.println("product alphabet pass");
+	}
+
+//------------------- equivalence tests ----------------------//
+	@Test
+	public void testEquivalence_1() {
+		DFA dfa = dfa1();
+		assertTrue(dfa.isEquivalent(dfa.minimize()));
+		assertTrue(dfa.isEquivalent(dfa.freeze()));
+		assertNull(dfa.distinguishingString(dfa.swap('0', '1').swap('0', '1')));
+		assertEquals("0", dfa.distinguishingString(dfa.swap('0', '1')));
+
+		// ending in 1 is a subset of containing a 1
+		DFA hasOne = new DFA();
+		hasOne.addSigma('0');
+		hasOne.addSigma('1');
+		hasOne.addState("n");
+		hasOne.addState("y");
+		hasOne.setStart("n");
+		hasOne.setFinal("y");
+		hasOne.addTransition("n", "n", '0');
+		hasOne.addTransition("n", "y", '1');
+		hasOne.addTransition("y", "y", '0');
+		hasOne.addTransition("y", "y", '1');
+		assertTrue(dfa.isSubsetOf(hasOne));
+		assertFalse(hasOne.isSubsetOf(dfa));
+		assertEquals("10", hasOne.inclusionCounterexample(dfa));
+		assertEquals("10", dfa.distinguishingString(hasOne));
+		assertFalse(dfa.isEquivalent(hasOne));
+
+		System.out.println("equivalence pass");
+	}
+
+	@Test
+	public void testEquivalence_2() {
+		DFA dfa = dfa1();
+		DFA wider = dfa1();
+		wider.addSigma('2');
+		// the extra symbol has no transitions, so the languages are the same
+		assertTrue(dfa.isEquivalent(wider));
+		wider.addTransition("b", "b", '2');
+		assertEquals("12", dfa.distinguishingString(wider));
+		assertTrue(dfa.isSubsetOf(wider));
+		assertTrue(new DFA().isSubsetOf(dfa));
+		assertEquals("1", dfa.distinguishingString(new DFA()));
+
+		System.out.println("equivalence alphabet pass");
+	}
+
+//------------------- permute tests ----------------------//
+	@Test
+	public void testPermute_1() {
+		DFA dfa = dfa1();
+		DFA dfaSwap = dfa.swap('1', '0');
+		DFA twice = dfaSwap.swap('0', '1');
+
+		// the views share the table but not the states of the original
+		assertEquals(dfa.toString(), twice.toString());
+		assertTrue(dfaSwap.isStart("a"));
+		assertEquals(Set.of('0', '1'), dfaSwap.getSigma());
+
+		// changing the original does not change the copies
+		dfa.addTransition("b", "b", '0');
+		assertTrue(dfa.accepts("10"));
+		assertFalse(twice.accepts("10"));
+		assertTrue(dfaSwap.accepts("010"));
+
+		// changing a copy makes it a regular DFA
+		assertTrue(twice.addState("c"));
+		assertTrue(twice.addTransition("b", "c", '1'));
+		assertFalse(twice.accepts("11"));
+		assertTrue(twice.accepts("101"));
+		assertTrue(twice.getState("a") != dfa.getState("a"));
+
+		System.out.println("swap view pass");
+	}
+
+	@Test
+	public void testPermute_2() {
+		DFA dfa = dfa1();
+		Map<Character, Character> mapping = new HashMap<>();
+		mapping.put('0', '1');
+		// every symbol is read as a 1
+		DFA ones = dfa.permute(mapping);
+		assertTrue(ones.accepts("0"));
+		assertTrue(ones.accepts("1010"));
+		assertFalse(ones.accepts(""));
+		mapping.put('2', '1');
+		assertNull(dfa.permute(mapping));
+
+		// materializing a remapped copy spells out its transitions
+		ones.setFinal("a");
+		String expStr = "Q = { a b }\n"
+				+ "Sigma = { 0 1 }\n"
+				+ "delta =\n"
+				+ "		0	1\n"
+				+ "	a	b	b\n"
+				+ "	b	b	b\n"
+				+ "q0 = a\n"
+				+ "F = { b a }";
+		assertEquals(expStr.replaceAll("\\s", ""), ones.toString().replaceAll("\\s", ""));
+		assertTrue(ones.isEquivalent(ones.freeze().thaw()));
+
+		System.out.println("permute pass");
+	}
+
+	@Test
+	public void testPermute_3() {
+		// reading b as a leaves the column of b unused, so q is no longer reachable
+		DFA dfa = new DFA();
+		dfa.addSigma('a');
+		dfa.addSigma('b');
+		dfa.addState("s");
+		dfa.addState("p");
+		dfa.addState("q");
+		dfa.setStart("s");
+		dfa.setFinal("p");
+		dfa.setFinal("q");
+		dfa.addTransition("s", "p", 'a');
+		dfa.addTransition("s", "q", 'b');
+		dfa.addTransition("p", "p", 'a');
+		dfa.addTransition("q", "s", 'b');
+		Map<Character, Character> mapping = new HashMap<>();
+		mapping.put('b', 'a');
+
+		DFA permuted = dfa.permute(mapping);
+		DFA min = permuted.minimize();
+		assertTrue(min.toString().startsWith("Q = { s p }"));
+		assertTrue(min.isEquivalent(permuted));
+		assertTrue(permuted.freeze().minimize().toString().startsWith("Q = { s p }"));
+
+		permuted.getState("s");
+		assertTrue(permuted.minimize().toString().startsWith("Q = { s p }"));
+
+		System.out.println("permute minimize pass");
+	}
+
+	//------------------- symbol class tests ----------------------//
+	/**
+	 * Identifiers: a letter followed by letters and digits. Every letter
+	 * behaves the same, and so does every digit.
+	 */
+	private DFA identifierDfa() {
+		DFA dfa = new DFA();
+		for (char c = 'a'; c <= 'z'; c++) {
+			dfa.addSigma(c);
+		}
+		for (char c = '0'; c <= '9'; c++) {
+			dfa.addSigma(c);
+		}
+		dfa.addSigma('_');
+		dfa.addState("s");
+		dfa.addState("id");
+		dfa.setStart("s");
+		dfa.setFinal("id");
+		for (char c = 'a'; c <= 'z'; c++) {
+			dfa.addTransition("s", "id", c);
+			dfa.addTransition("id", "id", c);
+		}
+		for (char c = '0'; c <= '9'; c++) {
+			dfa.addTransition("id", "id", c);
+		}
+		return dfa;
+	}
+
+	@Test
+	public void testSymbolClasses_1() {
+		DFA dfa = identifierDfa();
+		assertTrue(dfa.accepts("x"));
+		assertTrue(dfa.accepts("abc123"));
+		assertFalse(dfa.accepts("1abc"));
+		assertFalse(dfa.accepts("a_b"));
+		assertFalse(dfa.accepts("aB"));
+		assertFalse(dfa.accepts(""));
+
+		// '_' has no transitions but is still part of Sigma
+		DFA swapped = dfa.swap('_', 'a');
+		assertTrue(swapped.accepts("_b"));
+		assertFalse(swapped.accepts("ab"));
+		assertNull(dfa.swap('_', 'B'));
+		assertTrue(dfa.toString().contains("_"));
+
+		System.out.println("symbol classes pass");
+	}
+
+	@Test
+	public void testSymbolClasses_2() {
+		DFA dfa = identifierDfa();
+		DFA other = identifierDfa();
+		other.addTransition("id", "id", '_');
+		assertEquals("a_", dfa.distinguishingString(other));
+		assertTrue(dfa.isSubsetOf(other));
+		assertTrue(dfa.minimize().toString().startsWith("Q = { s id }"));
+		assertTrue(dfa.minimize().isEquivalent(dfa));
+
+		System.out.println("symbol classes minimize pass");
+	}
+
+	//------------------- byte DFA tests ----------------------//
+	/**
+	 * (a | \u00E9\u20AC | U+1F600)*, where U+1F600 is read as a surrogate pair.
+	 */
+	private DFA unicodeDfa() {
+		DFA dfa = new DFA();
+		dfa.addSigma('a');
+		dfa.addSigma('\u00E9');
+		dfa.addSigma('\u20AC');
+		dfa.addSigma('\uD83D');
+		dfa.addSigma('\uDE00');
+		dfa.addState("s");
+		dfa.addState("t");
+		dfa.addState("u");
+		dfa.setStart("s");
+		dfa.setFinal("s");
+		dfa.addTransition("s", "s", 'a');
+		dfa.addTransition("s", "t", '\u00E9');
+		dfa.addTransition("t", "s", '\u20AC');
+		dfa.addTransition("s", "u", '\uD83D');
+		dfa.addTransition("u", "s", '\uDE00');
+		return dfa;
+	}
+
+	@Test
+	public void testByteDFA_1() {
+		DFA dfa = unicodeDfa();
+		ByteDFA bytes = dfa.toByteDFA();
+		String[] inputs = {"", "a", "aaa", "\u00E9", "\u00E9\u20AC", "a\u00E9\u20ACa",
+				"\uD83D\uDE00", "a\uD83D\uDE00\u00E9\u20AC", "\uD83D", "\uD83D\uDE01",
+				"\u20AC\u00E9", "b", "\u00E8\u20AC"};
+		for (String input : inputs) {
+			assertEquals(input, dfa.accepts(input),
+					bytes.accepts(input.getBytes(StandardCharsets.UTF_8)));
+		}
+		assertFalse(bytes.accepts((byte[]) null));
+
+		System.out.println("byte dfa accepts pass");
+	}
+
+	@Test
+	public void testByteDFA_2() {
+		ByteDFA bytes = unicodeDfa().toByteDFA();
+		// a truncated \u00E9, an overlong a, and an encoded surrogate
+		assertFalse(bytes.accepts(new byte[] {(byte) 0xC3}));
+		assertFalse(bytes.accepts(new byte[] {(byte) 0xC1, (byte) 0xA1}));
+		assertFalse(bytes.accepts(new byte[] {(byte) 0xED, (byte) 0xA0, (byte) 0xBD,
+				(byte) 0xED, (byte) 0xB8, (byte) 0x80}));
+		assertFalse(bytes.accepts(new byte[] {(byte) 0x80}));
+
+		byte[] utf8 = "xa\u00E9\u20AC\uD83D\uDE00".getBytes(StandardCharsets.UTF_8);
+		assertFalse(bytes.accepts(utf8));
+		assertTrue(bytes.accepts(utf8, 1, utf8.length - 1));
+		assertFalse(bytes.accepts(utf8, 1, utf8.length - 2));
+
+		ByteBuffer heap = ByteBuffer.wrap(utf8);
+		heap.position(1);
+		assertTrue(bytes.accepts(heap));
+		assertEquals(1, heap.position());
+		ByteBuffer direct = ByteBuffer.allocateDirect(utf8.length);
+		direct.put(utf8).flip();
+		assertFalse(bytes.accepts(direct));
+		direct.position(1);
+		assertTrue(bytes.accepts(direct));
+		assertEquals(1, direct.position());
+		assertTrue(bytes.accepts(heap.slice()));
+
+		System.out.println("byte dfa buffers pass");
+	}
+
+	//------------------- early termination tests ----------------------//
+	/**
+	 * Over {0, 1}: strings starting with 1 are accepted, strings
+	 * starting with 0 are rejected, and every state has all transitions.
+	 */
+	private DFA prefixDfa() {
+		DFA dfa = new DFA();
+		dfa.addSigma('0');
+		dfa.addSigma('1');
+		dfa.addState("s");
+		dfa.addState("yes");
+		dfa.addState("no");
+		dfa.setStart("s");
+		dfa.setFinal("yes");
+		dfa.addTransition("s", "no", '0');
+		dfa.addTransition("s", "yes", '1');
+		dfa.addTransition("yes", "yes", '0');
+		dfa.addTransition("yes", "yes", '1');
+		dfa.addTransition("no", "no", '0');
+		dfa.addTransition("no", "no", '1');
+		return dfa;
+	}
+
+	/**
+	 * A sequence of a given length that fails the test if it is read
+	 * past a given index.
+	 */
+	private static CharSequence guarded(char first, int readable, int length) {
+		return new CharSequence() {
+			@Override
+			public int length() {
+				return length;
+			}
+
+			@Override
+			public char charAt(int index) {
+				assertTrue("read past index " + readable, index < readable);
+				return index == 0 ? first : '0';
+			}
+
+			@Override
+			public CharSequence subSequence(int start, int end) {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Test
+	public void testEarlyTermination_1() {
+		DFA dfa = prefixDfa();
+		assertTrue(dfa.accepts("1"));
+		assertTrue(dfa.accepts("10101"));
+		assertFalse(dfa.accepts("01"));
+		assertFalse(dfa.accepts(""));
+		// a universal state still rejects symbols outside of Sigma
+		assertFalse(dfa.accepts("1012"));
+		assertFalse(dfa.freeze().accepts("10001x"));
+
+		// a dead state stops the simulation right away
+		List<CharSequence> inputs = new ArrayList<>();
+		inputs.add(guarded('0', 1, 1 << 20));
+		inputs.add("1");
+		assertArrayEquals(new boolean[] {false, true}, dfa.acceptsAll(inputs));
+
+		System.out.println("early termination pass");
+	}
+
+	@Test
+	public void testEarlyTermination_2() {
+		DFAMatcher matcher = prefixDfa().matcher();
+		assertFalse(matcher.isDead());
+		assertFalse(matcher.feed('0'));
+		assertTrue(matcher.isDead());
+		assertFalse(matcher.feed(guarded('0', 0, 1 << 20)));
+
+		matcher.reset();
+		assertTrue(matcher.feed("1000"));
+		assertTrue(matcher.isAccepting());
+		assertTrue(matcher.feed("1".toCharArray(), 0, 1));
+		assertFalse(matcher.feed("01a1"));
+		assertFalse(matcher.isAccepting());
+
+		// the start state itself can be dead
+		DFA empty = prefixDfa();
+		empty.setStart("no");
+		assertTrue(empty.matcher().isDead());
+		assertFalse(empty.matcher().feed(""));
+
+		System.out.println("early termination matcher pass");
+	}
+
+	//------------------- searcher tests ----------------------//
+	@Test
+	public void testSearcher_1() {
+		// ab+ over {a, b}
+		DFABuilder builder = new DFABuilder('a', 'b');
+		int s = builder.addStates("s", "a", "ab");
+		builder.setStart(s).setFinal(s + 2);
+		builder.addTransition(s, s + 1, 'a');
+		builder.addTransition(s + 1, s + 2, 'b');
+		builder.addTransition(s + 2, s + 2, 'b');
+		DFASearcher searcher = builder.build().searcher();
+
+		String text = "xxabbby aab ba";
+		assertEquals("[2, 6)", searcher.find(text).toString());
+		assertEquals("[9, 11)", searcher.find(text, 3).toString());
+		assertNull(searcher.find(text, 11));
+		assertEquals("[[2, 6), [9, 11)]", searcher.findAll(text).toString());
+		assertEquals("[[2, 4), [2, 5), [2, 6), [9, 11)]", searcher.findAllSpans(text).toString());
+		assertTrue(searcher.findAll("").isEmpty());
+
+		System.out.println("searcher pass");
+	}
+
+	@Test
+	public void testSearcher_2() {
+		// {abcd, bc}: the leftmost match ends after the first match found
+		DFA dfa = new DFA();
+		for (char c = 'a'; c <= 'd'; c++) {
+			dfa.addSigma(c);
+		}
+		for (String name : new String[] {"s", "a", "ab", "abc", "abcd", "b", "bc"}) {
+			dfa.addState(name);
+		}
+		dfa.setStart("s");
+		dfa.setFinal("abcd");
+		dfa.setFinal("bc");
+		dfa.addTransition("s", "a", 'a');
+		dfa.addTransition("a", "ab", 'b');
+		dfa.addTransition("ab", "abc", 'c');
+		dfa.addTransition("abc", "abcd", 'd');
+		dfa.addTransition("s", "b", 'b');
+		dfa.addTransition("b", "bc", 'c');
+		DFASearcher searcher = dfa.searcher();
+		assertEquals("[[0, 4), [5, 7)]", searcher.findAll("abcdabc").toString());
+		assertEquals("[[1, 3)]", searcher.findAll("abce").toString());
+		assertEquals("[[0, 4), [1, 3), [5, 7)]", searcher.findAllSpans("abcdabc").toString());
+
+		// a DFA that accepts the empty string matches between every symbol
+		DFA any = new DFA();
+		any.addSigma('a');
+		any.addState("s");
+		any.setStart("s");
+		any.setFinal("s");
+		any.addTransition("s", "s", 'a');
+		assertEquals("[[0, 2), [2, 2), [3, 3)]", any.freeze().searcher().findAll("aab").toString());
+
+		System.out.println("searcher leftmost-longest pass");
+	}
+
+	//------------------- tagged DFA tests ----------------------//
+	/**
+	 * Accepts exactly one word over the lowercase letters.
+	 */
+	private DFA keywordDfa(String word) {
+		DFABuilder builder = new DFABuilder("abcdefghijklmnopqrstuvwxyz".toCharArray());
+		builder.addState("q0");
+		for (int i = 0; i < word.length(); i++) {
+			builder.addState("q" + (i + 1));
+			builder.addTransition(i, i + 1, word.charAt(i));
+		}
+		return builder.setStart(0).setFinal(word.length()).build();
+	}
+
+	@Test
+	public void testTagged_1() {
+		DFA space = new DFA();
+		space.addSigma(' ');
+		space.addState("s");
+		space.addState("t");
+		space.setStart("s");
+		space.setFinal("t");
+		space.addTransition("s", "t", ' ');
+		space.addTransition("t", "t", ' ');
+		TaggedDFA lexer = TaggedDFA.of(keywordDfa("if"), identifierDfa(), space);
+		assertEquals(3, lexer.patternCount());
+		assertEquals(0, lexer.match("if"));
+		assertEquals(1, lexer.match("iffy"));
+		assertEquals(1, lexer.match("i"));
+		assertEquals(2, lexer.match("   "));
+		assertEquals(TaggedDFA.NO_TOKEN, lexer.match("9"));
+		assertEquals(TaggedDFA.NO_TOKEN, lexer.match(""));
+
+		StringBuilder tokens = new StringBuilder();
+		String text = "if iffy  x1 if";
+		int end = lexer.tokenize(text, (id, start, stop) ->
+				tokens.append(id).append(':').append(text, start, stop).append('|'));
+		assertEquals(text.length(), end);
+		assertEquals("0:if|2: |1:iffy|2:  |1:x1|2: |0:if|", tokens.toString());
+
+		System.out.println("tagged dfa pass");
+	}
+
+	@Test
+	public void testTagged_2() {
+		TaggedDFA lexer = TaggedDFA.of(identifierDfa(), keywordDfa("if"));
+		// the identifier DFA comes first, so it wins every tie
+		assertEquals(0, lexer.match("if"));
+		int[] count = new int[1];
+		assertEquals(3, lexer.tokenize("abc-def", (id, start, stop) -> count[0]++));
+		assertEquals(1, count[0]);
+		assertEquals(0, lexer.tokenize("", (id, start, stop) -> fail()));
+		assertEquals(0, lexer.tokenize("9a", (id, start, stop) -> fail()));
+
+		try {
+			TaggedDFA.of();
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		System.out.println("tagged dfa priority pass");
+	}
+
+	//------------------- binary format tests ----------------------//
+	@Test
+	public void testFormat_1() throws IOException {
+		DFA dfa = dfa2();
+		Path file = Files.createTempFile("dfa", ".bin");
+		try {
+			DFAFormat.write(dfa, file);
+			FrozenDFA loaded = DFAFormat.read(file);
+			assertEquals(dfa.toString(), loaded.toString());
+			assertTrue(loaded.thaw().isEquivalent(dfa));
+
+			MappedDFA mapped = DFAFormat.map(file);
+			assertEquals(dfa.getSigma(), mapped.getSigma());
+			assertEquals(dfa.freeze().toString(), mapped.freeze().toString());
+			for (String s : new String[] {"", "0", "1", "10", "0110", "1112", "x"}) {
+				assertEquals(s, dfa.accepts(s), mapped.accepts(s));
+			}
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			DFAFormat.write(identifierDfa().freeze(), out);
+			FrozenDFA copy = DFAFormat.read(new ByteArrayInputStream(out.toByteArray()));
+			assertTrue(copy.accepts("abc123"));
+			assertFalse(copy.accepts("1abc"));
+			assertEquals(identifierDfa().toString(), copy.toString());
+		} finally {
+			Files.delete(file);
+		}
+
+		System.out.println("binary format pass");
+	}
+
+	@Test
+	public void testFormat_2() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DFAFormat.write(prefixDfa(), out);
+		byte[] bytes = out.toByteArray();
+		assertFalse(DFAFormat.read(new ByteArrayInputStream(bytes)).accepts("01"));
+
+		// a wrong version, a wrong magic number and a truncated file are rejected
+		byte[] changed = bytes.clone();
+		changed[7] = 2;
+		try {
+			DFAFormat.read(new ByteArrayInputStream(changed));
+			fail();
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("version"));
+		}
+		changed = bytes.clone();
+		changed[0] = 'X';
+		try {
+			DFAFormat.read(new ByteArrayInputStream(changed));
+			fail();
+		} catch (IOException e) {
+			// expected
+		}
+		try {
+			DFAFormat.read(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 1)));
+			fail();
+		} catch (IOException e) {
+			// expected
+		}
+
+		// symbols out of range or repeated, a sink that leads elsewhere and
+		// final states that disagree with their order are rejected
+		ByteBuffer original = ByteBuffer.wrap(bytes);
+		int symbols = 32;
+		int table = symbols + 8 * original.getInt(8);
+		int tableLength = (original.getInt(12) + 1) * original.getInt(16);
+		int finals = table + 4 * tableLength;
+		int kinds = finals + 8 * ((original.getInt(12) + 64) / 64) + 4 * original.getInt(24);
+		ByteBuffer[] corrupt = new ByteBuffer[4];
+		for (int i = 0; i < corrupt.length; i++) {
+			corrupt[i] = ByteBuffer.wrap(bytes.clone());
+		}
+		corrupt[0].putInt(symbols, 0x10000);
+		corrupt[1].putInt(symbols + 4, original.getInt(symbols));
+		corrupt[2].putInt(table + 4 * (tableLength - 1), 0);
+		corrupt[3].putLong(finals, original.getLong(finals) | 1);
+		for (ByteBuffer broken : corrupt) {
+			try {
+				DFAFormat.read(new ByteArrayInputStream(broken.array()));
+				fail();
+			} catch (IOException e) {
+				assertTrue(e.getMessage().startsWith("Invalid DFA file"));
+			}
+		}
+
+		// the kinds of the states are worked out again rather than trusted
+		changed = bytes.clone();
+		changed[kinds] = 2;
+		FrozenDFA restored = DFAFormat.read(new ByteArrayInputStream(changed));
+		assertFalse(restored.accepts("01"));
+		assertFalse(restored.accepts(""));
+		assertTrue(restored.accepts("10"));
+
+
+		// a table that cannot fit in one buffer is rejected before anything is mapped
+		ByteBuffer header = ByteBuffer.allocate(32);
+		header.putInt(0x44464131).putInt(1).putInt(1).putInt(1 << 28).putInt(2).putInt(0).putInt(0).putInt(0);
+		try {
+			DFAFormat.read(new ByteArrayInputStream(header.array()));
+			fail();
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("too large"));
+		}
+		Path file = Files.createTempFile("huge", ".dfa");
+		try {
+			Files.write(file, header.array());
+			DFAFormat.map(file);
+			fail();
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("too large"));
+		} finally {
+			Files.delete(file);
+		}
+
+		System.out.println("binary format errors pass");
+	}
+
+	//------------------- parser tests ----------------------//
+	/**
+	 * A reader that hands out at most three chars at a time, so that
+	 * tokens are split between reads.
+	 */
+	private static Reader trickle(String text) {
+		return new FilterReader(new StringReader(text)) {
+			@Override
+			public int read(char[] cbuf, int off, int len) throws IOException {
+				return super.read(cbuf, off, Math.min(len, 3));
+			}
+		};
+	}
+
+	@Test
+	public void testParser_1() throws IOException {
+		for (DFA dfa : new DFA[] {dfa1(), dfa2(), dfa3(), identifierDfa(), unicodeDfa()}) {
+			DFA parsed = DFAParser.parse(new StringReader(dfa.toString()));
+			assertEquals(dfa.toString(), parsed.toString());
+			assertTrue(parsed.isEquivalent(dfa));
+			assertEquals(dfa.toString(), DFAParser.parse(trickle(dfa.toString())).toString());
+		}
+
+		// rows and the header row of delta in another order, with other spacing
+		DFA dfa = DFAParser.parse(new StringReader(
+				"Q = { a b }\nSigma = { 0 1 }\ndelta = 1 0\nb b a\na b a\nq0 = a F = { b }\n"));
+		assertEquals(dfa1().toString(), dfa.toString());
+		dfa = DFAParser.parse(new StringReader(
+				"Q = { a b } Sigma = { 0 1 } delta = 0 1 a - b b - - q0 = a F = { b }"));
+		assertTrue(dfa.accepts("1"));
+		assertFalse(dfa.accepts("10"));
+
+		// a state name longer than the read buffer
+		StringBuilder name = new StringBuilder();
+		for (int i = 0; i < 100000; i++) {
+			name.append((char) ('a' + i % 26));
+		}
+		DFA longName = new DFA();
+		longName.addSigma('0');
+		longName.addState(name.toString());
+		longName.setStart(name.toString());
+		longName.setFinal(name.toString());
+		longName.addTransition(name.toString(), name.toString(), '0');
+		assertEquals(longName.toString(), DFAParser.parse(new StringReader(longName.toString())).toString());
+
+		Path file = Files.createTempFile("dfa", ".txt");
+		try {
+			DFA accented = new DFA();
+			accented.addSigma('\u00E9');
+			accented.addSigma('\u20AC');
+			accented.addState("d\u00E9but");
+			accented.addState("fin");
+			accented.setStart("d\u00E9but");
+			accented.setFinal("fin");
+			accented.addTransition("d\u00E9but", "fin", '\u20AC');
+			accented.addTransition("fin", "d\u00E9but", '\u00E9');
+			Files.write(file, accented.toString().getBytes(StandardCharsets.UTF_8));
+			DFA parsed = DFAParser.parse(file);
+			assertEquals(accented.toString(), parsed.toString());
+			assertTrue(parsed.accepts("\u20AC\u00E9\u20AC"));
+		} finally {
+			Files.delete(file);
+		}
+
+		System.out.println("parser pass");
+	}
+
+	@Test
+	public void testParser_2() {
+		String text = dfa1().toString();
+		String[] broken = {
+				"",
+				text.replace("Q =", "R ="),
+				text.replace("Sigma = { 0 1 }", "Sigma = { 0 11 }"),
+				text.replace("q0 = a", "q0 = c"),
+				text.replace("F = { b }", "F = { b c }"),
+				text.substring(0, text.indexOf("q0")),
+				text + " extra",
+				"Q = { a a }" + text.substring(text.indexOf('\n')),
+				text.replace("delta =\n\t0\t1", "delta =\n\t0\t0"),
+		};
+		for (String s : broken) {
+			try {
+				DFAParser.parse(new StringReader(s));
+				fail(s);
+			} catch (IOException e) {
+				assertTrue(e.getMessage().startsWith("Line "));
+			}
+		}
+
+		System.out.println("parser errors pass");
+	}
+
+	//------------------- instrumentation tests ----------------------//
+	@Test
+	public void testInstrument_1() {
+		DFA dfa = dfa1();
+		InstrumentedDFA probe = dfa.instrument();
+		assertTrue(probe.accepts("01"));
+		assertTrue(probe.accepts("1"));
+		assertFalse(probe.accepts("10"));
+		assertFalse(probe.accepts("0x1"));
+		assertFalse(probe.accepts(null));
+
+		DFAMetrics metrics = probe.metrics();
+		assertEquals(2, metrics.acceptedCount());
+		assertEquals(3, metrics.rejectedCount());
+		assertEquals(1, metrics.rejectedCount(DFAMetrics.RejectReason.SYMBOL_NOT_IN_SIGMA));
+		assertEquals(0, metrics.rejectedCount(DFAMetrics.RejectReason.MISSING_TRANSITION));
+		assertEquals(1, metrics.rejectedCount(DFAMetrics.RejectReason.NOT_FINAL));
+		assertEquals(1, metrics.rejectedCount(DFAMetrics.RejectReason.NULL_INPUT));
+		// "01" visits a a b, "1" a b, "10" a b a, "0x1" a a
+		assertEquals(Long.valueOf(7), metrics.stateVisits().get("a"));
+		assertEquals(Long.valueOf(3), metrics.stateVisits().get("b"));
+		assertEquals(Long.valueOf(3), metrics.symbolCounts().get('0'));
+		assertEquals(Long.valueOf(3), metrics.symbolCounts().get('1'));
+		assertEquals(5, Arrays.stream(metrics.latencyHistogram()).sum());
+
+		// the snapshot does not change, and reset starts over
+		probe.reset();
+		assertEquals(2, metrics.acceptedCount());
+		assertEquals(0, probe.metrics().acceptedCount());
+		assertEquals(Long.valueOf(0), probe.metrics().stateVisits().get("a"));
+
+		System.out.println("instrumentation pass");
+	}
+
+	@Test
+	public void testInstrument_2() {
+		DFA dfa = new DFA();
+		dfa.addSigma('0');
+		dfa.addSigma('1');
+		dfa.addState("a");
+		dfa.addState("b");
+		dfa.setStart("a");
+		dfa.setFinal("b");
+		dfa.addTransition("a", "b", '1');
+		InstrumentedDFA probe = dfa.freeze().instrument();
+		for (String s : new String[] {"", "1", "0", "11", "2"}) {
+			assertEquals(s, dfa.accepts(s), probe.accepts(s));
+		}
+		DFAMetrics metrics = probe.metrics();
+		assertEquals(1, metrics.acceptedCount());
+		assertEquals(2, metrics.rejectedCount(DFAMetrics.RejectReason.MISSING_TRANSITION));
+		assertEquals(1, metrics.rejectedCount(DFAMetrics.RejectReason.NOT_FINAL));
+		assertEquals(1, metrics.rejectedCount(DFAMetrics.RejectReason.SYMBOL_NOT_IN_SIGMA));
+		// missing transitions are still counted per symbol
+		assertEquals(Long.valueOf(1), metrics.symbolCounts().get('0'));
+		assertEquals(Long.valueOf(3), metrics.symbolCounts().get('1'));
+		assertEquals(Long.valueOf(2), metrics.stateVisits().get("b"));
+
+		System.out.println("instrumentation reasons pass");
+	}
+
+	@Test
+	public void testInstrument_3() throws Exception {
+		// calls from several threads add up to the same counts as calls from one
+		InstrumentedDFA probe = dfa1().instrument();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			List<Callable<Boolean>> calls = new ArrayList<>();
+			for (int i = 0; i < 1000; i++) {
+				calls.add(() -> probe.accepts("0101") && probe.accepts("1") && !probe.accepts("0x1"));
+			}
+			for (Future<Boolean> result : pool.invokeAll(calls)) {
+				assertTrue(result.get());
+			}
+		} finally {
+			pool.shutdown();
+		}
+		DFAMetrics metrics = probe.metrics();
+		assertEquals(2000, metrics.acceptedCount());
+		assertEquals(1000, metrics.rejectedCount(DFAMetrics.RejectReason.SYMBOL_NOT_IN_SIGMA));
+		// "0101" visits a a b a b, "1" a b, "0x1" a a
+		assertEquals(Long.valueOf(6000), metrics.stateVisits().get("a"));
+		assertEquals(Long.valueOf(3000), metrics.stateVisits().get("b"));
+		assertEquals(Long.valueOf(3000), metrics.symbolCounts().get('0'));
+		assertEquals(Long.valueOf(3000), metrics.symbolCounts().get('1'));
+		assertEquals(3000, Arrays.stream(metrics.latencyHistogram()).sum());
+
+		System.out.println("instrumentation threads pass");
+	}
+
+	//------------------- parallel acceptance tests ----------------------//
+	@Test
+	public void testParallel_1() {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			Random random = new Random(361);
+			char[] text = new char[3 << 20];
+			for (DFA dfa : new DFA[] {dfa1(), dfa2(), dfa3(), identifierDfa(), prefixDfa()}) {
+				Character[] sigma = dfa.getSigma().toArray(new Character[0]);
+				for (int i = 0; i < text.length; i++) {
+					text[i] = sigma[random.nextInt(sigma.length)];
+				}
+				for (int last = 0; last < sigma.length; last++) {
+					text[text.length - 1] = sigma[last];
+					String s = new String(text);
+					assertEquals(dfa.accepts(s), dfa.acceptsParallel(s, pool));
+					assertEquals(dfa.accepts(s), dfa.freeze().acceptsParallel(s, pool));
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+
+		System.out.println("parallel acceptance pass");
+	}
+
+	@Test
+	public void testParallel_2() {
+		// a counter modulo 7 never forgets its state, so it falls back to reading sequentially
+		DFABuilder builder = new DFABuilder('a', 'b');
+		for (int i = 0; i < 7; i++) {
+			builder.addState("m" + i);
+		}
+		for (int i = 0; i < 7; i++) {
+			builder.setRow(i, (i + 1) % 7, i);
+		}
+		DFA counter = builder.setStart(0).setFinal(0).build();
+		char[] text = new char[2 << 20];
+		Arrays.fill(text, 'b');
+		for (int i = 0; i < 7 * 1000; i++) {
+			text[i * 31] = 'a';
+		}
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			assertTrue(counter.acceptsParallel(new String(text), pool));
+			text[5] = 'a';
+			assertFalse(counter.acceptsParallel(new String(text), pool));
+			text[6] = 'c';
+			assertFalse(dfa1().acceptsParallel(new String(text), pool));
+			assertFalse(dfa1().acceptsParallel(null));
+			assertTrue(dfa1().acceptsParallel("01"));
+		} finally {
+			pool.shutdown();
+		}
+
+		System.out.println("parallel fallback pass");
+	}
+
+	//------------------- incremental tests ----------------------//
+	@Test
+	public void testIncremental_1() {
+		DFA dfa = dfa1();
+		IncrementalMatcher doc = dfa.incremental("");
+		assertFalse(doc.accepts());
+		doc.insert(0, "0");
+		assertFalse(doc.accepts());
+		doc.insert(1, "1");
+		assertTrue(doc.accepts());
+		doc.insert(1, "10");
+		assertEquals("0101", doc.toString());
+		assertTrue(doc.accepts());
+		doc.delete(3, 4);
+		assertFalse(doc.accepts());
+		doc.replace(0, 3, "1");
+		assertEquals("1", doc.toString());
+		assertTrue(doc.accepts());
+		doc.insert(1, "x");
+		assertFalse(doc.accepts());
+		doc.delete(0, doc.length());
+		assertEquals(0, doc.length());
+		assertFalse(doc.accepts());
+		try {
+			doc.insert(1, "0");
+			fail();
+		} catch (IndexOutOfBoundsException e) {
+			// expected
+		}
+
+		System.out.println("incremental pass");
+	}
+
+	@Test
+	public void testIncremental_2() {
+		Random random = new Random(22);
+		for (DFA dfa : new DFA[] {dfa2(), dfa3(), identifierDfa(), prefixDfa()}) {
+			Character[] sigma = dfa.getSigma().toArray(new Character[0]);
+			StringBuilder text = new StringBuilder();
+			for (int i = 0; i < 5000; i++) {
+				text.append(sigma[random.nextInt(sigma.length)]);
+			}
+			IncrementalMatcher doc = dfa.freeze().incremental(text);
+			for (int edit = 0; edit < 500; edit++) {
+				int from = random.nextInt(text.length() + 1);
+				if (random.nextInt(3) == 0) {
+					int to = Math.min(text.length(), from + random.nextInt(600));
+					text.delete(from, to);
+					doc.delete(from, to);
+				} else {
+					StringBuilder inserted = new StringBuilder();
+					for (int i = random.nextInt(edit % 50 == 0 ? 700 : 3); i >= 0; i--) {
+						inserted.append(sigma[random.nextInt(sigma.length)]);
+					}
+					text.insert(from, inserted);
+					doc.insert(from, inserted);
+				}
+				assertEquals(dfa.accepts(text.toString()), doc.accepts());
+				assertEquals(text.length(), doc.length());
+			}
+			assertEquals(text.toString(), doc.toString());
+		}
+
+		System.out.println("incremental edits pass");
+	}
+
+	//------------------- specialized DFA tests ----------------------//
+	@Test
+	public void testSpecialize_1() {
+		Random random = new Random(25);
+		for (DFA dfa : new DFA[] {dfa1(), dfa2(), dfa3(), dfa4(), dfa5(), identifierDfa(), prefixDfa(), unicodeDfa()}) {
+			SpecializedDFA specialized = dfa.specialize();
+			assertTrue(specialized.isGenerated());
+			assertTrue(dfa.freeze().specialize().isGenerated());
+			Character[] sigma = dfa.getSigma().toArray(new Character[0]);
+			for (int i = 0; i < 2000; i++) {
+				StringBuilder sb = new StringBuilder();
+				for (int j = random.nextInt(12); j > 0; j--) {
+					sb.append(random.nextInt(20) == 0 ? '#' : sigma[random.nextInt(sigma.length)]);
+				}
+				String s = sb.toString();
+				assertEquals(s, dfa.accepts(s), specialized.accepts(s));
+				assertEquals(s, dfa.accepts(s), specialized.accepts(new StringBuilder(s)));
+			}
+			assertFalse(specialized.accepts(null));
+		}
+
+		// later changes are not seen
+		DFA dfa = dfa1();
+		SpecializedDFA specialized = dfa.specialize();
+		dfa.setFinal("a");
+		assertTrue(dfa.accepts("0"));
+		assertFalse(specialized.accepts("0"));
+
+		// no start state, or a dead one, rejects everything
+		DFA empty = new DFA();
+		empty.addSigma('a');
+		empty.addState("p");
+		assertFalse(empty.specialize().accepts(""));
+		assertFalse(empty.specialize().accepts("a"));
+
+		System.out.println("specialized DFA pass");
+	}
+
+	@Test
+	public void testSpecialize_2() {
+		DFABuilder builder = new DFABuilder('a', 'b');
+		for (int i = 0; i < 100; i++) {
+			builder.addState("m" + i);
+		}
+		for (int i = 0; i < 100; i++) {
+			builder.setRow(i, (i + 1) % 100, i);
+		}
+		DFA counter = builder.setStart(0).setFinal(0).build();
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 100 * 1000; i++) {
+			text.append(i % 3 == 0 ? "ab" : "a");
+		}
+		String s = text.toString();
+
+		SpecializedDFA table = counter.specialize();
+		assertFalse(table.isGenerated());
+		SpecializedDFA generated = counter.specialize(100);
+		assertTrue(generated.isGenerated());
+		assertFalse(counter.specialize(99).isGenerated());
+		assertFalse(counter.specialize(0).isGenerated());
+		assertTrue(table.accepts(s));
+		assertTrue(generated.accepts(s));
+		assertFalse(generated.accepts(s + "a"));
+		assertFalse(generated.accepts(s + "c"));
+
+		// too much code for the JIT
+		DFABuilder wide = new DFABuilder("abcdefghijklmnopqrstuvwxyz".toCharArray());
+		for (int i = 0; i < 60; i++) {
+			wide.addState("w" + i);
+		}
+		int[] row = new int[26];
+		for (int i = 0; i < 60; i++) {
+			Arrays.fill(row, (i + 1) % 60);
+			wide.setRow(i, row);
+		}
+		assertFalse(wide.setStart(0).setFinal(0).build().specialize().isGenerated());
+
+		try {
+			counter.specialize(-1);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		System.out.println("specialized DFA fallback pass");
+	}
 	
 }
@@ -0,0 +1,337 @@
+package test.nfa;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import fa.dfa.DFA;
+import fa.nfa.FrozenNFA;
+import fa.nfa.LazyDFA;
+import fa.nfa.NFA;
+import fa.nfa.NFABuilder;
+import fa.nfa.NFAState;
+
+public class NFATest {
+
+	private static Set<String> set(String... names) {
+		return new HashSet<>(Arrays.asList(names));
+	}
+
+	private static Set<String> names(Set<NFAState> states) {
+		Set<String> names = new HashSet<>();
+		for (NFAState state : states) {
+			names.add(state.getName());
+		}
+		return names;
+	}
+
+	private static String randomString(Random random, String symbols, int maxLength) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = random.nextInt(maxLength + 1); i > 0; i--) {
+			sb.append(symbols.charAt(random.nextInt(symbols.length())));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * The NFA of the strings over {a, b} whose k-th symbol from the end
+	 * is a, whose DFA has 2^k states.
+	 */
+	private static NFA kFromEnd(int k) {
+		NFA nfa = new NFA();
+		nfa.addSigma('a');
+		nfa.addSigma('b');
+		for (int i = 0; i <= k; i++) {
+			nfa.addState("s" + i);
+		}
+		nfa.setStart("s0");
+		nfa.setFinal("s" + k);
+		nfa.addTransition("s0", set("s0"), 'a');
+		nfa.addTransition("s0", set("s0"), 'b');
+		nfa.addTransition("s0", set("s1"), 'a');
+		for (int i = 1; i < k; i++) {
+			nfa.addTransition("s" + i, set("s" + (i + 1)), 'a');
+			nfa.addTransition("s" + i, set("s" + (i + 1)), 'b');
+		}
+		return nfa;
+	}
+
+	//------------------- nfa1 tests ----------------------//
+	/**
+	 * The strings over {0, 1} that are empty or end in 01, with an
+	 * epsilon transition from the start.
+	 */
+	private NFA nfa1() {
+		NFA nfa = new NFA();
+		nfa.addSigma('0');
+		nfa.addSigma('1');
+		nfa.addSigma(NFA.EPSILON);
+		assertEquals(2, nfa.getSigma().size());
+
+		assertTrue(nfa.addState("a"));
+		assertTrue(nfa.addState("b"));
+		assertTrue(nfa.addState("c"));
+		assertTrue(nfa.addState("d"));
+		assertFalse(nfa.addState("a"));
+		assertTrue(nfa.setStart("a"));
+		assertTrue(nfa.setFinal("d"));
+		assertTrue(nfa.setFinal("a"));
+		assertFalse(nfa.setStart("x"));
+		assertFalse(nfa.setFinal("x"));
+
+		assertTrue(nfa.addTransition("a", set("b"), NFA.EPSILON));
+		assertTrue(nfa.addTransition("b", set("b", "c"), '0'));
+		assertTrue(nfa.addTransition("b", set("b"), '1'));
+		assertTrue(nfa.addTransition("c", set("d"), '1'));
+
+		assertFalse(nfa.addTransition("x", set("b"), '0'));
+		assertFalse(nfa.addTransition("a", set("b", "x"), '0'));
+		assertFalse(nfa.addTransition("a", set("b"), '2'));
+		return nfa;
+	}
+
+	@Test
+	public void testNFA_1() {
+		NFA nfa = nfa1();
+		assertTrue(nfa.isStart("a"));
+		assertFalse(nfa.isStart("b"));
+		assertTrue(nfa.isFinal("d"));
+		assertFalse(nfa.isFinal("c"));
+		assertFalse(nfa.isFinal("x"));
+
+		assertTrue(nfa.accepts(""));
+		assertTrue(nfa.accepts("01"));
+		assertTrue(nfa.accepts("1101"));
+		assertFalse(nfa.accepts("0"));
+		assertFalse(nfa.accepts("10"));
+		assertFalse(nfa.accepts("012"));
+		assertFalse(nfa.accepts(null));
+
+		assertEquals(set("a", "b"), names(nfa.eClosure(nfa.getState("a"))));
+		assertEquals(set("b"), names(nfa.eClosure(nfa.getState("b"))));
+		assertEquals(set("b", "c"), names(nfa.getToState(nfa.getState("b"), '0')));
+		assertTrue(nfa.getToState(nfa.getState("d"), '0').isEmpty());
+
+		assertEquals(2, nfa.maxCopies(""));
+		assertEquals(2, nfa.maxCopies("0101"));
+		assertFalse(nfa.isDFA());
+
+		System.out.println("nfa1 pass");
+	}
+
+	@Test
+	public void testNFA_2() {
+		NFA nfa = nfa1();
+		DFA dfa = nfa.toDFA();
+		assertEquals(nfa.getSigma(), dfa.getSigma());
+		assertTrue(dfa.isStart("q0"));
+		assertTrue(dfa.accepts(""));
+		assertTrue(dfa.accepts("1101"));
+		assertFalse(dfa.accepts("10"));
+
+		// changes to the NFA are seen by the next run
+		assertTrue(nfa.addTransition("d", set("d"), '1'));
+		assertTrue(nfa.addTransition("d", set("a"), NFA.EPSILON));
+		assertEquals(3, nfa.maxCopies("01"));
+		assertTrue(nfa.accepts("011"));
+		assertTrue(nfa.toDFA().accepts("011"));
+		assertFalse(dfa.accepts("011"));
+
+		NFA deterministic = new NFA();
+		deterministic.addSigma('a');
+		deterministic.addState("p");
+		deterministic.setStart("p");
+		deterministic.setFinal("p");
+		deterministic.addTransition("p", set("p"), 'a');
+		assertTrue(deterministic.isDFA());
+		assertTrue(deterministic.accepts("aaa"));
+
+		// targets outside of the NFA are never reached
+		NFA other = nfa1();
+		deterministic.getState("p").addTransition(new NFAState("x"), 'a');
+		deterministic.getState("p").addTransition(other.getState("d"), NFA.EPSILON);
+		assertTrue(deterministic.accepts(""));
+		assertTrue(deterministic.accepts("aa"));
+		assertEquals(1, deterministic.maxCopies("aa"));
+		assertTrue(deterministic.toDFA().accepts("a"));
+
+		System.out.println("nfa1 toDFA pass");
+	}
+
+	//------------------- subset construction tests ----------------------//
+	@Test
+	public void testSubset_1() {
+		// random NFAs of every size up to and past one word of states
+		Random random = new Random(361);
+		int[] sizes = {1, 2, 5, 17, 63, 64, 65, 130};
+		for (int n : sizes) {
+			NFA nfa = new NFA();
+			nfa.addSigma('a');
+			nfa.addSigma('b');
+			for (int i = 0; i < n; i++) {
+				nfa.addState("s" + i);
+				if (random.nextInt(4) == 0) {
+					nfa.setFinal("s" + i);
+				}
+			}
+			nfa.setStart("s0");
+			for (int i = 0; i < 2 * n; i++) {
+				char symbol = "abe".charAt(random.nextInt(3));
+				nfa.addTransition("s" + random.nextInt(n), set("s" + random.nextInt(n)), symbol);
+			}
+			DFA dfa = nfa.toDFA(100000);
+			for (int i = 0; i < 300; i++) {
+				String s = randomString(random, i % 10 == 0 ? "abc" : "ab", 12);
+				assertEquals(n + " states on " + s, dfa.accepts(s), nfa.accepts(s));
+			}
+		}
+
+		System.out.println("subset construction pass");
+	}
+
+	@Test
+	public void testSubset_2() {
+		NFA nfa = kFromEnd(10);
+		DFA dfa = nfa.toDFA();
+		assertEquals(1 << 10, dfa.minimize().toString().split("\n")[0].split(" ").length - 4);
+		try {
+			nfa.toDFA(1000);
+			fail();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+
+		// simulation needs no DFA at all
+		NFA large = kFromEnd(200);
+		Random random = new Random(25);
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			text.append(random.nextBoolean() ? 'a' : 'b');
+		}
+		String s = text.toString();
+		assertEquals(s.charAt(s.length() - 200) == 'a', large.accepts(s));
+		assertEquals(201, large.maxCopies("a".repeat(300)));
+		assertEquals(s.charAt(s.length() - 10) == 'a', dfa.accepts(s));
+
+		System.out.println("subset construction limit pass");
+	}
+
+	//------------------- builder tests ----------------------//
+	@Test
+	public void testBuilder_1() {
+		// 'e' is an ordinary symbol, epsilon transitions are added apart
+		NFABuilder builder = new NFABuilder('e', 'x');
+		int a = builder.addState();
+		int b = builder.addState();
+		int c = builder.addState();
+		builder.setStart(a).setFinal(c);
+		builder.addTransition(a, b, 'e');
+		builder.addEpsilon(b, c);
+		builder.addTransition(c, b, 'x');
+		builder.addEpsilon(a, c);
+		FrozenNFA nfa = builder.freeze();
+
+		assertEquals(new HashSet<>(Arrays.asList('e', 'x')), nfa.getSigma());
+		assertTrue(nfa.accepts(""));
+		assertTrue(nfa.accepts("e"));
+		assertTrue(nfa.accepts("exxx"));
+		assertTrue(nfa.accepts("xx"));
+		assertFalse(nfa.accepts("ee"));
+		assertFalse(nfa.accepts("y"));
+		assertFalse(nfa.accepts(null));
+
+		DFA dfa = nfa.toDFA();
+		LazyDFA lazy = nfa.lazy(2);
+		for (String s : new String[] {"", "e", "ex", "exe", "xe", "x", "xxx", "ee"}) {
+			assertEquals(s, nfa.accepts(s), dfa.accepts(s));
+			assertEquals(s, nfa.accepts(s), lazy.accepts(s));
+		}
+
+		// the builder can keep being used without changing the snapshot
+		builder.addTransition(c, c, 'e');
+		assertFalse(nfa.accepts("ee"));
+		assertTrue(builder.freeze().accepts("ee"));
+
+		System.out.println("builder pass");
+	}
+
+	@Test
+	public void testBuilder_2() {
+		try {
+			new NFABuilder('a', 'a');
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		NFABuilder builder = new NFABuilder('a');
+		int a = builder.addState();
+		try {
+			builder.addTransition(a, a, 'b');
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			builder.addEpsilon(a, a + 1);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			builder.setStart(-1);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		// no start state accepts nothing
+		assertFalse(builder.setFinal(a).freeze().accepts(""));
+
+		// a chain too long for word-wide rows, with a shortcut half way
+		int n = 20000;
+		builder = new NFABuilder('a', 'b');
+		for (int i = 0; i < n; i++) {
+			builder.addState();
+		}
+		for (int i = 0; i + 1 < n; i++) {
+			builder.addTransition(i, i + 1, 'a');
+		}
+		builder.addEpsilon(0, n / 2);
+		builder.setStart(0).setFinal(n - 1);
+		FrozenNFA chain = builder.freeze();
+		assertTrue(chain.accepts("a".repeat(n - 1)));
+		assertTrue(chain.accepts("a".repeat(n / 2 - 1)));
+		assertFalse(chain.accepts("a".repeat(n / 2)));
+		DFA dfa = chain.toDFA();
+		assertTrue(dfa.accepts("a".repeat(n - 1)));
+		assertTrue(dfa.accepts("a".repeat(n / 2 - 1)));
+		assertFalse(dfa.accepts("a".repeat(n / 2)));
+		assertFalse(dfa.accepts("b"));
+
+		System.out.println("builder errors and large NFA pass");
+	}
+
+	@Test
+	public void testFreeze_1() {
+		NFA nfa = kFromEnd(4);
+		FrozenNFA frozen = nfa.freeze();
+		Random random = new Random(7);
+		for (int i = 0; i < 200; i++) {
+			String s = randomString(random, "ab", 10);
+			assertEquals(s, nfa.accepts(s), frozen.accepts(s));
+		}
+		assertEquals(nfa.getSigma(), frozen.getSigma());
+		assertEquals(16, frozen.toDFA().minimize().toString().split("\n")[0].split(" ").length - 4);
+
+		// later changes to the NFA do not reach the snapshot
+		nfa.addTransition("s0", set("s4"), 'b');
+		assertTrue(nfa.accepts("b"));
+		assertFalse(frozen.accepts("b"));
+
+		System.out.println("freeze pass");
+	}
+}
@@ -0,0 +1,149 @@
+package test.regex;
+
+import static org.junit.Assert.*;
+
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import fa.dfa.DFA;
+import fa.nfa.LazyDFA;
+import fa.regex.Regex;
+
+public class RegexTest {
+
+	private static Set<Character> sigma(String symbols) {
+		Set<Character> sigma = new LinkedHashSet<>();
+		for (char c : symbols.toCharArray()) {
+			sigma.add(c);
+		}
+		return sigma;
+	}
+
+	private static String randomString(Random random, String symbols, int maxLength) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = random.nextInt(maxLength + 1); i > 0; i--) {
+			sb.append(symbols.charAt(random.nextInt(symbols.length())));
+		}
+		return sb.toString();
+	}
+
+	//------------------- regex tests ----------------------//
+	@Test
+	public void testRegex_1() {
+		Regex regex = Regex.compile("(0|1)*1");
+		assertEquals(sigma("01"), regex.getSigma());
+		DFA dfa = regex.toDFA();
+		assertTrue(dfa.accepts("1"));
+		assertTrue(dfa.accepts("0101"));
+		assertFalse(dfa.accepts(""));
+		assertFalse(dfa.accepts("10"));
+		assertFalse(dfa.accepts("12"));
+		assertEquals(2, dfa.minimize().toString().split("\n")[0].split(" ").length - 4);
+
+		LazyDFA lazy = regex.lazy();
+		assertTrue(lazy.accepts("0101"));
+		assertFalse(lazy.accepts("10"));
+		assertFalse(lazy.accepts(null));
+
+		assertTrue(Regex.compile(Regex.quote("a.b*(c)")).toDFA().accepts("a.b*(c)"));
+		assertFalse(Regex.compile(Regex.quote("a.b*")).toDFA().accepts("axbb"));
+
+		System.out.println("regex pass");
+	}
+
+	@Test
+	public void testRegex_2() {
+		// every construct, checked against java.util.regex on random strings
+		String symbols = "abc01_-";
+		String[] patterns = {
+				"", "a", "ab|c", "(a|b)*c", "a+b?", "(ab){2,3}", "a{2,}", "[a-c]+", "[^a]*",
+				"\\d\\w*", "(a|)(b|)", "((a*)*b)*", ".a.", "[-a]{0,2}|_", "(a|b)*a(a|b){3}",
+		};
+		Random random = new Random(23);
+		for (String pattern : patterns) {
+			Regex regex = Regex.compile(pattern, sigma(symbols));
+			DFA dfa = regex.toDFA();
+			LazyDFA lazy = regex.lazy(2);
+			Pattern expected = Pattern.compile(pattern, Pattern.DOTALL);
+			for (int i = 0; i < 500; i++) {
+				String s = randomString(random, i % 2 == 0 ? "ab" : symbols, 8);
+				boolean matches = expected.matcher(s).matches();
+				assertEquals(pattern + " on " + s, matches, dfa.accepts(s));
+				assertEquals(pattern + " on " + s, matches, lazy.accepts(s));
+			}
+			assertFalse(lazy.accepts("x"));
+		}
+
+		System.out.println("regex constructs pass");
+	}
+
+	@Test
+	public void testRegex_3() {
+		// the full DFA has 2^21 states, but the lazy one only builds those the input visits
+		Regex regex = Regex.compile("(a|b)*a(a|b){20}");
+		try {
+			regex.toDFA(10000);
+			fail();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+
+		LazyDFA lazy = regex.lazy(1000);
+		Random random = new Random(361);
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 200000; i++) {
+			text.append(random.nextBoolean() ? 'a' : 'b');
+		}
+		String s = text.toString();
+		assertEquals(s.charAt(s.length() - 21) == 'a', lazy.accepts(s));
+		assertTrue(lazy.cachedStates() <= 1000);
+		assertTrue(lazy.cacheResets() > 0);
+		assertTrue(lazy.accepts(s.substring(0, s.length() - 21) + "a" + s.substring(s.length() - 20)));
+		assertFalse(lazy.accepts(s.substring(0, s.length() - 21) + "b" + s.substring(s.length() - 20)));
+
+		System.out.println("lazy regex pass");
+	}
+
+	@Test
+	public void testRegex_4() {
+		String[] invalid = {"(a", "a)", "*a", "a{3,2}", "[a", "[]", "a\\", "\\q", "[b-a]", "a{1001}"};
+		for (String pattern : invalid) {
+			try {
+				Regex.compile(pattern);
+				fail(pattern);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+		try {
+			Regex.compile("a.");
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("Sigma"));
+		}
+		try {
+			Regex.compile("a").lazy(1);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		// symbols outside the given Sigma never match
+		DFA dfa = Regex.compile("[a-z]+", sigma("ab")).toDFA();
+		assertEquals(sigma("ab"), dfa.getSigma());
+		assertTrue(dfa.accepts("abba"));
+		assertFalse(dfa.accepts("abc"));
+
+		// \s is [ \t\n\x0B\f\r], as in java.util.regex
+		Regex space = Regex.compile("\\s+");
+		assertEquals(sigma("\t\n\u000B\f\r "), space.getSigma());
+		assertTrue(space.toDFA().accepts("\u000B \t\n\f\r"));
+		assertTrue(Pattern.matches("\\s+", "\u000B \t\n\f\r"));
+
+		System.out.println("regex errors pass");
+	}
+}